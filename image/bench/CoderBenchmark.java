@@ -0,0 +1,90 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how {@link ImageCoder#encrypt(Image, String, RowBands)} and
+ * {@link ImageCoder#decrypt(Image, String, RowBands)} scale with the number of threads, on a
+ * 4K image.
+ * <p>
+ * Every thread count runs on its own {@code ForkJoinPool}. The sequential column is the
+ * one-pixel-at-a-time algorithm; each parallel result is checked against it before the
+ * throughput is printed, in megapixels per second.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/CoderBenchmark.java
+ * java -Xmx2g --add-modules jdk.incubator.vector -cp bin:bench-bin CoderBenchmark [size]
+ * </pre>
+ */
+public class CoderBenchmark {
+
+    private static final String KEY = "The quick brown fox jumps over the lazy dog";
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        Image image = new Image(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, x * 31 + y * 17);
+            }
+        }
+
+        Image expected = new ImagePipeline(image).toImage();
+        ImageCoder.encrypt(expected, KEY);
+
+        System.out.printf("%-8s %14s %14s %8s%n", "threads", "encrypt MPix/s", "decrypt MPix/s", "speedup");
+        double sequential = 0;
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads = threads * 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            RowBands bands = threads == 1 ? RowBands.SEQUENTIAL : RowBands.parallel(pool, RowBands.DEFAULT_GRAIN);
+
+            Image work = new ImagePipeline(image).toImage();
+            ImageCoder.encrypt(work, KEY, bands);
+            check(work, expected, "encrypt", threads);
+            ImageCoder.decrypt(work, KEY, bands);
+            check(work, image, "decrypt", threads);
+
+            double encrypt = measure(size, () -> ImageCoder.encrypt(work, KEY, bands));
+            double decrypt = measure(size, () -> ImageCoder.decrypt(work, KEY, bands));
+            if (threads == 1) {
+                sequential = encrypt;
+            }
+            System.out.printf("%-8d %14.1f %14.1f %7.2fx%n", threads, encrypt, decrypt, encrypt / sequential);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks that two images hold the same pixels.
+     */
+    private static void check(Image actual, Image expected, String operation, int threads) {
+        for (int y = 0; y < expected.height(); y++) {
+            for (int x = 0; x < expected.width(); x++) {
+                if (actual.getRGB(x, y) != expected.getRGB(x, y)) {
+                    throw new AssertionError(operation + " with " + threads + " threads differs at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an operation a few times to warm up, then returns its best throughput.
+     *
+     * @param size the width and height of the image
+     * @param operation the operation to measure
+     * @return the throughput in megapixels per second
+     */
+    private static double measure(int size, Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return (double)size * size / best * 1e3;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Measures the throughput of the filters built on {@link Convolution}: a Gaussian blur, run both
+ * as two separable passes and as one two-dimensional pass, the sharpen kernel and the Sobel
+ * operator, sequentially and on the common {@code ForkJoinPool}.
+ * <p>
+ * Results are printed in megapixels per second.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/ConvolutionBenchmark.java
+ * java --add-modules jdk.incubator.vector -cp bin:bench-bin ConvolutionBenchmark [size] [sigma]
+ * </pre>
+ */
+public class ConvolutionBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+        double sigma = args.length > 1 ? Double.parseDouble(args[1]) : 3.0;
+        Image image = new Image(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, x * 31 + y * 17);
+            }
+        }
+
+        ConvolutionKernel gaussian = ConvolutionKernel.gaussian(sigma);
+        ConvolutionKernel dense = gaussian.dense();
+        RowBands parallel = RowBands.parallel();
+
+        System.out.printf("%-24s %16s %16s%n", "filter", "sequential MPix/s", "parallel MPix/s");
+        report("gaussian " + gaussian.width() + "x" + gaussian.height() + " separable", size,
+            () -> Convolution.convolve(image, gaussian, EdgePolicy.CLAMP, RowBands.SEQUENTIAL),
+            () -> Convolution.convolve(image, gaussian, EdgePolicy.CLAMP, parallel));
+        report("gaussian " + dense.width() + "x" + dense.height() + " dense", size,
+            () -> Convolution.convolve(image, dense, EdgePolicy.CLAMP, RowBands.SEQUENTIAL),
+            () -> Convolution.convolve(image, dense, EdgePolicy.CLAMP, parallel));
+        report("sharpen 3x3", size,
+            () -> ImageUtils.sharpen(image, RowBands.SEQUENTIAL),
+            () -> ImageUtils.sharpen(image, parallel));
+        report("sobel 3x3", size,
+            () -> ImageUtils.sobel(image, RowBands.SEQUENTIAL),
+            () -> ImageUtils.sobel(image, parallel));
+    }
+
+    /**
+     * Measures a filter sequentially and in parallel, and prints both throughputs.
+     */
+    private static void report(String name, int size, Runnable sequential, Runnable parallel) {
+        System.out.printf("%-24s %16.1f %16.1f%n", name, measure(size, sequential), measure(size, parallel));
+    }
+
+    /**
+     * Runs an operation a few times to warm up, then returns its best throughput.
+     *
+     * @param size the width and height of the image
+     * @param operation the operation to measure
+     * @return the throughput in megapixels per second
+     */
+    private static double measure(int size, Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return (double)size * size / best * 1e3;
+    }
+}
@@ -0,0 +1,171 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Measures the throughput and the allocation rate of every {@link ImageUtils}, {@link ImageUtilsSE}
+ * and {@link ImageCoder} operation on square images from 256 to 8192 pixels wide, so that the
+ * effect of a change on any operation can be measured rather than guessed.
+ * <p>
+ * Each operation is first run for at least {@link #WARMUP_NANOS} nanoseconds and {@link #WARMUP}
+ * times, so that the JIT compiler has compiled it; until then, the Vector API kernels allocate
+ * their vectors. It is then run until it has run for at least {@link #MIN_NANOS} nanoseconds and
+ * {@link #MIN_ITERATIONS} times. The table gives the mean
+ * time of one run, the throughput in megapixels per second, and the bytes allocated per run and
+ * per second, as counted for the running thread by {@code com.sun.management.ThreadMXBean}.
+ * Operations run sequentially, so that all their allocations happen on the measuring thread.
+ * In-place operations run again on the image they changed, which does not change their cost.
+ * </p>
+ * <p>
+ * This is a harness like the other benchmarks here rather than a JMH module: the image classes
+ * live in the default package, which classes in a named package, such as the ones JMH generates,
+ * cannot import. An 8K image takes 256 MB and up to three images are alive at once, so run with
+ * a large heap; sizes that do not fit are skipped. The second argument only runs the operations
+ * whose name contains it.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/OperationBenchmark.java
+ * java -Xmx3g --add-modules jdk.incubator.vector -cp bin:bench-bin OperationBenchmark [256,1024,4096,8192] [filter]
+ * </pre>
+ */
+public class OperationBenchmark {
+
+    private static final int WARMUP = 2;
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final int MIN_ITERATIONS = 3;
+    private static final long MIN_NANOS = 1_000_000_000L;
+    private static final String KEY = "benchmark";
+
+    // Results are stored here so that the JIT compiler can not drop the operations
+    private static volatile Object sink;
+
+    /**
+     * An operation under measurement.
+     */
+    private interface Operation {
+        Object apply(Image image);
+    }
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "256,1024,4096,8192").split(",");
+        String filter = args.length > 1 ? args[1] : "";
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+        System.out.println("vectorized: " + PixelKernels.isVectorized());
+        System.out.printf("%-34s %6s %12s %10s %12s %12s%n",
+                          "operation", "size", "ms/op", "MPix/s", "alloc MB/op", "alloc MB/s");
+        int size;
+        for (String sizeArgument : sizes) {
+            size = Integer.parseInt(sizeArgument.trim());
+            long bytes = 3L * size * size * Integer.BYTES;
+            if (bytes > Runtime.getRuntime().maxMemory()) {
+                System.out.printf("%-34s %6d skipped, needs a heap of at least %d MB%n", "", size, bytes >> 20);
+                continue;
+            }
+
+            Image image = new Image(size, size);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    image.setRGB(x, y, x * 31 + y * 17);
+                }
+            }
+
+            for (Map.Entry<String, Operation> operation : operations(size).entrySet()) {
+                if (operation.getKey().contains(filter)) {
+                    measure(operation.getKey(), size, image, operation.getValue(), threads);
+                }
+            }
+            sink = null;
+        }
+    }
+
+    /**
+     * Returns the operations to measure on images of the given size, by name.
+     */
+    private static Map<String, Operation> operations(int size) {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("ImageUtils.flipHorizontal", ImageUtils::flipHorizontal);
+        operations.put("ImageUtils.flipVirtical", ImageUtils::flipVirtical);
+        operations.put("ImageUtils.rotateLeft", ImageUtils::rotateLeft);
+        operations.put("ImageUtils.rotateRight", ImageUtils::rotateRight);
+        operations.put("ImageUtils.rotateHalf", ImageUtils::rotateHalf);
+        operations.put("ImageUtils.strechHorizontal", ImageUtils::strechHorizontal);
+        operations.put("ImageUtils.strechVertical", ImageUtils::strechVertical);
+        operations.put("ImageUtils.crop", image -> ImageUtils.crop(image, size / 4, size / 4, size / 2, size / 2));
+        operations.put("ImageUtils.switchRedGreen", ImageUtils::switchRedGreen);
+        operations.put("ImageUtils.switchRedBlue", ImageUtils::switchRedBlue);
+        operations.put("ImageUtils.switchGreenBlue", ImageUtils::switchGreenBlue);
+        operations.put("ImageUtils.grayscaleAverage", ImageUtils::grayscaleAverage);
+        operations.put("ImageUtils.grayscaleLightness", ImageUtils::grayscaleLightness);
+        operations.put("ImageUtils.grayscaleLuminosity", ImageUtils::grayscaleLuminosity);
+        operations.put("ImageUtils.averageColor", ImageUtils::averageColor);
+        operations.put("ImageUtils.resample", ImageUtils::resample);
+        operations.put("ImageUtils.boxBlur(4)", image -> ImageUtils.boxBlur(image, 4));
+        operations.put("ImageUtils.gaussianBlur(2.0)", image -> ImageUtils.gaussianBlur(image, 2.0));
+        operations.put("ImageUtils.sharpen", ImageUtils::sharpen);
+        operations.put("ImageUtils.sobel", ImageUtils::sobel);
+        operations.put("ImageUtils.resize(half, LANCZOS3)", image -> ImageUtils.resize(image, size / 2, size / 2, ResizeFilter.LANCZOS3));
+        operations.put("ImageUtils.equalize", ImageUtils::equalize);
+        operations.put("ImageUtils.autoLevels", ImageUtils::autoLevels);
+        operations.put("ImageUtils.gamma(2.2)", image -> ImageUtils.gamma(image, 2.2));
+        operations.put("ImageUtils.contrast(1.5)", image -> ImageUtils.contrast(image, 1.5));
+        operations.put("ImageUtilsSE.flipHorizontal", inPlace(ImageUtilsSE::flipHorizontal));
+        operations.put("ImageUtilsSE.flipVirtical", inPlace(ImageUtilsSE::flipVirtical));
+        operations.put("ImageUtilsSE.rotateLeft", inPlace(ImageUtilsSE::rotateLeft));
+        operations.put("ImageUtilsSE.rotateRight", inPlace(ImageUtilsSE::rotateRight));
+        operations.put("ImageUtilsSE.rotateHalf", inPlace(ImageUtilsSE::rotateHalf));
+        operations.put("ImageUtilsSE.switchRedGreen", inPlace(ImageUtilsSE::switchRedGreen));
+        operations.put("ImageUtilsSE.switchRedBlue", inPlace(ImageUtilsSE::switchRedBlue));
+        operations.put("ImageUtilsSE.switchGreenBlue", inPlace(ImageUtilsSE::switchGreenBlue));
+        operations.put("ImageUtilsSE.grayscaleAverage", inPlace(ImageUtilsSE::grayscaleAverage));
+        operations.put("ImageUtilsSE.grayscaleLightness", inPlace(ImageUtilsSE::grayscaleLightness));
+        operations.put("ImageUtilsSE.grayscaleLuminosity", inPlace(ImageUtilsSE::grayscaleLuminosity));
+        operations.put("ImageUtilsSE.applyCurve(gamma)", inPlace(image -> ImageUtilsSE.applyCurve(image, ToneCurve.gamma(2.2))));
+        operations.put("ImageUtilsSE.addRectangle", inPlace(image -> ImageUtilsSE.addRectangle(image, 0, 0, size - 2, size - 2, new Color(1, 2, 3))));
+        operations.put("ImageUtilsSE.addCircle", inPlace(image -> ImageUtilsSE.addCircle(image, size / 2, size / 2, size / 2 - 1, new Color(1, 2, 3))));
+        operations.put("ImageCoder.encrypt", inPlace(image -> ImageCoder.encrypt(image, KEY)));
+        operations.put("ImageCoder.decrypt", inPlace(image -> ImageCoder.decrypt(image, KEY)));
+        return operations;
+    }
+
+    private static Operation inPlace(Consumer<Image> operation) {
+        return image -> {
+            operation.accept(image);
+            return image;
+        };
+    }
+
+    /**
+     * Measures an operation and prints its line of the table.
+     */
+    private static void measure(String name, int size, Image image, Operation operation,
+                                com.sun.management.ThreadMXBean threads) {
+        int iterations = 0;
+        long start = System.nanoTime();
+        do {
+            sink = operation.apply(image);
+            iterations++;
+        } while (System.nanoTime() - start < WARMUP_NANOS || iterations < WARMUP);
+        sink = null;
+
+        iterations = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        long elapsed;
+        do {
+            sink = operation.apply(image);
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MIN_NANOS || iterations < MIN_ITERATIONS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-34s %6d %12.3f %10.1f %12.2f %12.1f%n", name, size,
+                          seconds * 1e3 / iterations,
+                          (double)size * size * iterations / seconds / 1e6,
+                          allocated / 1e6 / iterations,
+                          allocated / 1e6 / seconds);
+    }
+}
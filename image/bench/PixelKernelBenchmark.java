@@ -0,0 +1,92 @@
+import java.util.Random;
+
+/**
+ * Measures the throughput of the {@link PixelKernels} color kernels against the scalar loop over
+ * {@link PixelOps} they replace, on a 4K image.
+ * <p>
+ * Results are printed in megapixels per second. The kernels only use vector instructions when the
+ * {@code jdk.incubator.vector} module is added; without it both columns measure the scalar loop.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/PixelKernelBenchmark.java
+ * java --add-modules jdk.incubator.vector -cp bin:bench-bin PixelKernelBenchmark [size]
+ * </pre>
+ */
+public class PixelKernelBenchmark {
+
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 20;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int[] src = new int[size * size];
+        int[] dst = new int[size * size];
+        Random random = new Random(42);
+        for (int i = 0; i < src.length; i++) {
+            src[i] = random.nextInt() & 0xffffff;
+        }
+
+        System.out.println("vectorized: " + PixelKernels.isVectorized());
+        System.out.printf("%-20s %14s %14s %8s%n", "operation", "scalar MPix/s", "kernel MPix/s", "speedup");
+
+        compare("switchRedGreen", src, dst,
+            () -> { for (int i = 0; i < src.length; i++) dst[i] = PixelOps.switchRedGreen(src[i]); },
+            () -> PixelKernels.switchRedGreen(src, dst, 0, src.length));
+        compare("switchRedBlue", src, dst,
+            () -> { for (int i = 0; i < src.length; i++) dst[i] = PixelOps.switchRedBlue(src[i]); },
+            () -> PixelKernels.switchRedBlue(src, dst, 0, src.length));
+        compare("switchGreenBlue", src, dst,
+            () -> { for (int i = 0; i < src.length; i++) dst[i] = PixelOps.switchGreenBlue(src[i]); },
+            () -> PixelKernels.switchGreenBlue(src, dst, 0, src.length));
+        compare("grayscaleAverage", src, dst,
+            () -> { for (int i = 0; i < src.length; i++) dst[i] = PixelOps.grayscaleAverage(src[i]); },
+            () -> PixelKernels.grayscaleAverage(src, dst, 0, src.length));
+        compare("grayscaleLightness", src, dst,
+            () -> { for (int i = 0; i < src.length; i++) dst[i] = PixelOps.grayscaleLightness(src[i]); },
+            () -> PixelKernels.grayscaleLightness(src, dst, 0, src.length));
+        compare("grayscaleLuminosity", src, dst,
+            () -> { for (int i = 0; i < src.length; i++) dst[i] = PixelOps.grayscaleLuminosity(src[i]); },
+            () -> PixelKernels.grayscaleLuminosity(src, dst, 0, src.length));
+    }
+
+    /**
+     * Measures the scalar loop and the kernel of one operation, checks that they give the same
+     * pixels, and prints both throughputs.
+     *
+     * @param name the name of the operation
+     * @param src the source pixels
+     * @param dst the result pixels, written by both loops
+     * @param scalar the scalar loop
+     * @param kernel the kernel call
+     */
+    private static void compare(String name, int[] src, int[] dst, Runnable scalar, Runnable kernel) {
+        double scalarRate = measure(src.length, scalar);
+        int[] expected = dst.clone();
+        double kernelRate = measure(src.length, kernel);
+        if (!java.util.Arrays.equals(expected, dst)) {
+            throw new AssertionError(name + " kernel does not match the scalar loop");
+        }
+        System.out.printf("%-20s %14.1f %14.1f %7.2fx%n", name, scalarRate, kernelRate, kernelRate / scalarRate);
+    }
+
+    /**
+     * Runs an operation a few times to warm up, then returns its best throughput.
+     *
+     * @param pixels the number of pixels processed by one run
+     * @param operation the operation to measure
+     * @return the throughput in megapixels per second
+     */
+    private static double measure(int pixels, Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return (double)pixels / best * 1e3;
+    }
+}
@@ -0,0 +1,72 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures the time to make a thumbnail with {@link ImageUtils#resize(Image, int, int, ResizeFilter)}
+ * for every filter, against the AWT round trip it replaces: converting to a {@code BufferedImage},
+ * drawing it scaled with {@code Graphics2D}, and converting back.
+ * <p>
+ * Results are printed in milliseconds per thumbnail.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/ResizeBenchmark.java
+ * java --add-modules jdk.incubator.vector -cp bin:bench-bin ResizeBenchmark [size] [thumbnailSize]
+ * </pre>
+ */
+public class ResizeBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+        int thumbnail = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        Image image = new Image(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, x * 31 + y * 17);
+            }
+        }
+
+        System.out.printf("%dx%d to %dx%d%n", size, size, thumbnail, thumbnail);
+        System.out.printf("%-20s %14s %14s%n", "filter", "sequential ms", "parallel ms");
+        for (ResizeFilter filter : ResizeFilter.values()) {
+            System.out.printf("%-20s %14.1f %14.1f%n", filter,
+                measure(() -> ImageUtils.resize(image, thumbnail, thumbnail, filter, RowBands.SEQUENTIAL)),
+                measure(() -> ImageUtils.resize(image, thumbnail, thumbnail, filter, RowBands.parallel())));
+        }
+        System.out.printf("%-20s %14.1f%n", "AWT bilinear", measure(() -> awt(image, thumbnail, RenderingHints.VALUE_INTERPOLATION_BILINEAR)));
+        System.out.printf("%-20s %14.1f%n", "AWT bicubic", measure(() -> awt(image, thumbnail, RenderingHints.VALUE_INTERPOLATION_BICUBIC)));
+    }
+
+    /** The AWT round trip used to make thumbnails before {@code ImageUtils.resize}. */
+    private static Image awt(Image image, int thumbnail, Object interpolation) {
+        BufferedImage scaled = new BufferedImage(thumbnail, thumbnail, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        graphics.drawImage(image.toBufferedImage(), 0, 0, thumbnail, thumbnail, null);
+        graphics.dispose();
+        return Image.fromBufferedImage(scaled);
+    }
+
+    /**
+     * Runs an operation a few times to warm up, then returns its best time.
+     *
+     * @param operation the operation to measure
+     * @return the time of one run in milliseconds
+     */
+    private static double measure(Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best / 1e6;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Measures the throughput of {@link ImageUtils#rotateLeft(Image)} and
+ * {@link ImageUtils#rotateRight(Image)} against the previous row-by-row implementation,
+ * on square images from 1K to 16K pixels wide.
+ * <p>
+ * Results are printed in megapixels per second. A 16K image takes 1 GB, and up to three
+ * images are alive at once, so run with a large heap; sizes that do not fit are skipped.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/RotateBenchmark.java
+ * java -Xmx5g --add-modules jdk.incubator.vector -cp bin:bench-bin RotateBenchmark [tileSize]
+ * </pre>
+ */
+public class RotateBenchmark {
+
+    private static final int[] SIZES = {1024, 2048, 4096, 8192, 16384};
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int tileSize = args.length > 0 ? Integer.parseInt(args[0]) : ImageUtils.DEFAULT_TILE_SIZE;
+        System.out.printf("%-8s %-12s %12s %12s%n", "size", "operation", "row MPix/s", "tiled MPix/s");
+
+        for (int size : SIZES) {
+            // The source, the result being built and the previous result may be alive at once
+            long bytes = 3L * size * size * Integer.BYTES;
+            if (bytes > Runtime.getRuntime().maxMemory()) {
+                System.out.printf("%-8d skipped, needs a heap of at least %d MB%n", size, bytes >> 20);
+                continue;
+            }
+
+            Image image = new Image(size, size);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    image.setRGB(x, y, x * 31 + y * 17);
+                }
+            }
+
+            double rowLeft = measure(size, () -> rotateLeftByRows(image));
+            double tiledLeft = measure(size, () -> ImageUtils.rotateLeft(image, tileSize, RowBands.SEQUENTIAL));
+            System.out.printf("%-8d %-12s %12.1f %12.1f%n", size, "rotateLeft", rowLeft, tiledLeft);
+
+            double rowRight = measure(size, () -> rotateRightByRows(image));
+            double tiledRight = measure(size, () -> ImageUtils.rotateRight(image, tileSize, RowBands.SEQUENTIAL));
+            System.out.printf("%-8d %-12s %12.1f %12.1f%n", size, "rotateRight", rowRight, tiledRight);
+        }
+    }
+
+    /**
+     * Runs an operation a few times to warm up, then returns its best throughput.
+     *
+     * @param size the width and height of the image
+     * @param operation the operation to measure
+     * @return the throughput in megapixels per second
+     */
+    private static double measure(int size, Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return (double)size * size / best * 1e3;
+    }
+
+    /** The row-by-row rotation that {@code ImageUtils.rotateLeft} used before tiling. */
+    private static Image rotateLeftByRows(Image image) {
+        int width = image.width();
+        int height = image.height();
+        Image newImage = new Image(height, width);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                newImage.setRGB(height-1 - y, x, image.getRGB(x, y));
+            }
+        }
+        return newImage;
+    }
+
+    /** The row-by-row rotation that {@code ImageUtils.rotateRight} used before tiling. */
+    private static Image rotateRightByRows(Image image) {
+        int width = image.width();
+        int height = image.height();
+        Image newImage = new Image(height, width);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                newImage.setRGB(y, width-1 - x, image.getRGB(x, y));
+            }
+        }
+        return newImage;
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.Random;
+
+/**
+ * Measures the time to draw 100 000 shapes of each kind onto a 4K canvas with {@link Shapes},
+ * and, for rectangles and circles, with the per-pixel {@code setRGB} loops that
+ * {@link ImageUtilsSE#addRectangle} and {@link ImageUtilsSE#addCircle} used before, the circle
+ * loop overdrawing the same rows several times.
+ * <p>
+ * Shapes have random positions, partly outside the canvas, and random sizes up to
+ * {@code maxSize} pixels across. Results are printed in milliseconds for all the shapes. A 4K
+ * canvas does not fit in the processor caches, so the time there is mostly spent waiting for
+ * memory; a smaller canvas shows the cost of the drawing itself.
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d bin src/*.java
+ * javac -cp bin -d bench-bin bench/ShapeBenchmark.java
+ * java --add-modules jdk.incubator.vector -cp bin:bench-bin ShapeBenchmark [shapes] [maxSize] [width height]
+ * </pre>
+ */
+public class ShapeBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int shapes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int maxSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int width = args.length > 3 ? Integer.parseInt(args[2]) : 3840;
+        int height = args.length > 3 ? Integer.parseInt(args[3]) : 2160;
+        Image canvas = new Image(width, height);
+
+        // The same shapes are drawn on every run
+        Random random = new Random(42);
+        int[] xs = new int[shapes];
+        int[] ys = new int[shapes];
+        int[] sizes = new int[shapes];
+        Color[] colors = new Color[shapes];
+        for (int i = 0; i < shapes; i++) {
+            xs[i] = random.nextInt(width + maxSize) - maxSize / 2;
+            ys[i] = random.nextInt(height + maxSize) - maxSize / 2;
+            sizes[i] = 2 + random.nextInt(maxSize - 1);
+            colors[i] = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        }
+
+        System.out.printf("%d shapes up to %d pixels on %dx%d%n", shapes, maxSize, width, height);
+        System.out.printf("%-20s %12s %12s%n", "shape", "spans ms", "per pixel ms");
+        System.out.printf("%-20s %12.1f %12.1f%n", "filled rectangle",
+            measure(() -> {
+                for (int i = 0; i < shapes; i++) {
+                    Shapes.fillRectangle(canvas, xs[i], ys[i], sizes[i], sizes[i] / 2 + 1, colors[i]);
+                }
+            }),
+            measure(() -> {
+                for (int i = 0; i < shapes; i++) {
+                    perPixelRectangle(canvas, xs[i], ys[i], sizes[i], sizes[i] / 2 + 1, colors[i].rgb());
+                }
+            }));
+        System.out.printf("%-20s %12.1f %12.1f%n", "filled circle",
+            measure(() -> {
+                for (int i = 0; i < shapes; i++) {
+                    Shapes.fillCircle(canvas, xs[i], ys[i], sizes[i] / 2, colors[i]);
+                }
+            }),
+            measure(() -> {
+                for (int i = 0; i < shapes; i++) {
+                    perPixelCircle(canvas, xs[i], ys[i], sizes[i] / 2, colors[i].rgb());
+                }
+            }));
+        System.out.printf("%-20s %12.1f%n", "filled ellipse", measure(() -> {
+            for (int i = 0; i < shapes; i++) {
+                Shapes.fillEllipse(canvas, xs[i], ys[i], sizes[i] / 2, sizes[i] / 4 + 1, colors[i]);
+            }
+        }));
+        System.out.printf("%-20s %12.1f%n", "filled triangle", measure(() -> {
+            for (int i = 0; i < shapes; i++) {
+                Shapes.fillPolygon(canvas, triangleXs(xs[i], sizes[i]), triangleYs(ys[i], sizes[i]), colors[i]);
+            }
+        }));
+        System.out.printf("%-20s %12.1f%n", "outlined rectangle", measure(() -> {
+            for (int i = 0; i < shapes; i++) {
+                Shapes.drawRectangle(canvas, xs[i], ys[i], sizes[i], sizes[i] / 2 + 1, colors[i]);
+            }
+        }));
+        System.out.printf("%-20s %12.1f%n", "outlined circle", measure(() -> {
+            for (int i = 0; i < shapes; i++) {
+                Shapes.drawCircle(canvas, xs[i], ys[i], sizes[i] / 2, colors[i]);
+            }
+        }));
+        System.out.printf("%-20s %12.1f%n", "outlined ellipse", measure(() -> {
+            for (int i = 0; i < shapes; i++) {
+                Shapes.drawEllipse(canvas, xs[i], ys[i], sizes[i] / 2, sizes[i] / 4 + 1, colors[i]);
+            }
+        }));
+        System.out.printf("%-20s %12.1f%n", "outlined triangle", measure(() -> {
+            for (int i = 0; i < shapes; i++) {
+                Shapes.drawPolygon(canvas, triangleXs(xs[i], sizes[i]), triangleYs(ys[i], sizes[i]), colors[i]);
+            }
+        }));
+    }
+
+    private static int[] triangleXs(int x, int size) {
+        return new int[] {x, x + size, x + size / 3};
+    }
+
+    private static int[] triangleYs(int y, int size) {
+        return new int[] {y, y + size / 3, y + size};
+    }
+
+    /** The per-pixel rectangle loop, clipped to the canvas. */
+    private static void perPixelRectangle(Image image, int x, int y, int width, int height, int rgb) {
+        for (int i = Math.max(0, y); i < Math.min(image.height(), y + height); i++) {
+            for (int j = Math.max(0, x); j < Math.min(image.width(), x + width); j++) {
+                image.setRGB(j, i, rgb);
+            }
+        }
+    }
+
+    /** The midpoint circle loop of the former {@code addCircle}, clipped to the canvas. */
+    private static void perPixelCircle(Image image, int centerX, int centerY, int radius, int rgb) {
+        int x = radius;
+        int y = 0;
+        int t = 1 - radius;
+        while (x >= y) {
+            perPixelRow(image, centerX - x, centerX + x, centerY + y, rgb);
+            perPixelRow(image, centerX - x, centerX + x, centerY - y, rgb);
+            if (y != x) {
+                perPixelRow(image, centerX - y, centerX + y, centerY + x, rgb);
+                perPixelRow(image, centerX - y, centerX + y, centerY - x, rgb);
+            }
+            y++;
+
+            if (t < 0) {
+                t = t + 2 * y + 1;
+            } else {
+                x--;
+                t = t + 2 * (y - x) + 1;
+            }
+        }
+    }
+
+    private static void perPixelRow(Image image, int fromX, int toX, int y, int rgb) {
+        if (y < 0 || y >= image.height()) {
+            return;
+        }
+        for (int i = Math.max(0, fromX); i <= Math.min(image.width() - 1, toX); i++) {
+            image.setRGB(i, y, rgb);
+        }
+    }
+
+    /**
+     * Runs an operation a few times to warm up, then returns its best time.
+     *
+     * @param operation the operation to measure
+     * @return the time of one run in milliseconds
+     */
+    private static double measure(Runnable operation) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best / 1e6;
+    }
+}
@@ -0,0 +1,347 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * The {@code BatchProcessor} class applies the same transformation to every image file of a
+ * directory tree, writing the results to a second directory tree with the same layout.
+ * <p>
+ * Each file is handled by a virtual thread of its own, which reads it, has it decoded,
+ * transformed and encoded again, and writes the result. Reading and writing only block the
+ * virtual thread, so many files are read and written at once. Decoding, the transformation and
+ * encoding keep a processor busy, so they run on a fixed pool of platform threads, one per
+ * processor by default, and the virtual threads wait for them.
+ * </p>
+ * <p>
+ * Decoded images take far more memory than their files. Before reading a file, its virtual
+ * thread reads the dimensions of the image from its header and reserves the memory the image
+ * will take, {@link #RASTERS_PER_FILE} rasters of 4 bytes per pixel plus the file itself, from
+ * a memory budget, and it gives the memory back once the result is written. When the budget is
+ * used up, further files wait, so the images in flight never take more than the budget. An image
+ * larger than the whole budget reserves the whole budget, and is processed alone.
+ * </p>
+ * <p>
+ * Files are found by the suffixes of the formats {@code ImageIO} can read, and written in the
+ * format of their suffix. A file that can not be read, decoded, transformed or written is
+ * reported as failed and does not stop the others.
+ * </p>
+ */
+public class BatchProcessor {
+
+    /** The default amount of memory the images in flight may take, in bytes. */
+    public static final long DEFAULT_MEMORY_BUDGET = 1L << 30;
+
+    /** The largest number of files read or written at the same time. */
+    public static final int MAX_OPEN_FILES = 256;
+
+    /**
+     * The number of rasters reserved for each file: the decoded image, the transformed image,
+     * and a copy made by the decoder or the encoder.
+     */
+    public static final int RASTERS_PER_FILE = 3;
+
+    // The budget is counted in units of this many bytes, so that it fits in the permits of a semaphore
+    private static final int BUDGET_UNIT = 1024;
+
+    private final UnaryOperator<Image> transform;
+    private final int cpuThreads;
+    private final long memoryBudget;
+
+    /**
+     * The outcome of a batch: how many files were processed and how fast.
+     */
+    public static class Report {
+        private final long files;
+        private final List<Path> failures;
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long nanos;
+
+        private Report(long files, List<Path> failures, long bytesRead, long bytesWritten, long nanos) {
+            this.files = files;
+            this.failures = failures;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the number of files processed successfully.
+         *
+         * @return the number of files written
+         */
+        public long files() {
+            return files;
+        }
+
+        /**
+         * Returns the files that could not be processed.
+         *
+         * @return an unmodifiable list of the failed source files, in no particular order
+         */
+        public List<Path> failures() {
+            return failures;
+        }
+
+        /**
+         * Returns the number of bytes read from the files processed successfully.
+         *
+         * @return the size of the source files
+         */
+        public long bytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Returns the number of bytes written.
+         *
+         * @return the size of the result files
+         */
+        public long bytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * Returns the time the whole batch took.
+         *
+         * @return the elapsed time in seconds
+         */
+        public double seconds() {
+            return nanos / 1e9;
+        }
+
+        /**
+         * Returns the number of files processed per second.
+         *
+         * @return the throughput in files per second
+         */
+        public double filesPerSecond() {
+            return files / seconds();
+        }
+
+        /**
+         * Returns the number of source bytes processed per second.
+         *
+         * @return the throughput in bytes read per second
+         */
+        public double bytesPerSecond() {
+            return bytesRead / seconds();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d files (%d failed) in %.2f s: %.1f files/s, %.1f MB/s read, %.1f MB/s written",
+                                 files, failures.size(), seconds(), filesPerSecond(),
+                                 bytesPerSecond() / 1e6, bytesWritten / seconds() / 1e6);
+        }
+    }
+
+    /**
+     * Constructs a {@code BatchProcessor} object with one platform thread per processor and the
+     * default memory budget.
+     *
+     * @param transform the transformation applied to every image, which must be safe to call
+     *        from several threads at once
+     */
+    public BatchProcessor(UnaryOperator<Image> transform) {
+        this(transform, Runtime.getRuntime().availableProcessors(), DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Constructs a {@code BatchProcessor} object.
+     *
+     * @param transform the transformation applied to every image, which must be safe to call
+     *        from several threads at once
+     * @param cpuThreads the number of platform threads decoding, transforming and encoding
+     * @param memoryBudget the largest amount of memory the images in flight may take, in bytes
+     * @throws IllegalArgumentException if the number of threads or the budget is not positive,
+     *         or the budget is too large
+     */
+    public BatchProcessor(UnaryOperator<Image> transform, int cpuThreads, long memoryBudget) {
+        assert cpuThreads > 0;
+        assert memoryBudget >= BUDGET_UNIT && memoryBudget / BUDGET_UNIT <= Integer.MAX_VALUE;
+
+        this.transform = transform;
+        this.cpuThreads = cpuThreads;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Processes every image file found under a directory, writing each result to the same
+     * relative path under the output directory, and returns once every file is done.
+     * <p>
+     * The output directory may be inside the input directory: the files under it are skipped,
+     * so the results written while the input is walked are not processed again. A file whose
+     * processing fails, even with an {@code Error} such as an {@code OutOfMemoryError}, is
+     * listed in the failures of the report.
+     * </p>
+     *
+     * @param input the directory to walk
+     * @param output the directory to write the results to, created if needed
+     * @return the number of files processed, the failures and the throughput
+     * @throws IllegalArgumentException if the output directory is the input directory
+     * @throws IOException if the input directory can not be walked
+     */
+    public Report process(Path input, Path output) throws IOException {
+        Path inputRoot = input.toAbsolutePath().normalize();
+        Path outputRoot = output.toAbsolutePath().normalize();
+        assert !outputRoot.equals(inputRoot);
+
+        Set<String> suffixes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Collections.addAll(suffixes, ImageIO.getReaderFileSuffixes());
+
+        Semaphore budget = new Semaphore((int)(memoryBudget / BUDGET_UNIT), true);
+        Semaphore openFiles = new Semaphore(MAX_OPEN_FILES);
+        AtomicLong files = new AtomicLong();
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicLong bytesWritten = new AtomicLong();
+        ConcurrentLinkedQueue<Path> failures = new ConcurrentLinkedQueue<>();
+
+        long start = System.nanoTime();
+        try (Stream<Path> paths = Files.walk(input);
+             ExecutorService cpu = Executors.newFixedThreadPool(cpuThreads);
+             ExecutorService virtual = Executors.newVirtualThreadPerTaskExecutor()) {
+            Iterator<Path> iterator = paths.filter(Files::isRegularFile)
+                                           .filter(path -> suffixes.contains(suffix(path)))
+                                           .filter(path -> !path.toAbsolutePath().normalize().startsWith(outputRoot))
+                                           .iterator();
+            Path file;
+            while (iterator.hasNext()) {
+                file = iterator.next();
+                Path source = file;
+                Path target = output.resolve(input.relativize(file).toString());
+                virtual.submit(() -> {
+                    try {
+                        long[] sizes = processFile(source, target, cpu, budget, openFiles);
+                        files.incrementAndGet();
+                        bytesRead.addAndGet(sizes[0]);
+                        bytesWritten.addAndGet(sizes[1]);
+                    } catch (IOException | RuntimeException | Error | ExecutionException e) {
+                        failures.add(source);
+                    } catch (InterruptedException e) {
+                        failures.add(source);
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            // Thrown by the iterator when a directory can not be read
+            throw e.getCause();
+        }
+        // Closing the executors waited for every file
+        long nanos = System.nanoTime() - start;
+        return new Report(files.get(), Collections.unmodifiableList(new ArrayList<>(failures)),
+                          bytesRead.get(), bytesWritten.get(), nanos);
+    }
+
+    /**
+     * Processes one file, on the virtual thread of the file.
+     *
+     * @return the number of bytes read and the number of bytes written
+     */
+    private long[] processFile(Path source, Path target, ExecutorService cpu, Semaphore budget, Semaphore openFiles)
+            throws IOException, InterruptedException, ExecutionException {
+        long pixels;
+        openFiles.acquire();
+        try {
+            pixels = pixelCount(source);
+        } finally {
+            openFiles.release();
+        }
+
+        long bytes = RASTERS_PER_FILE * Integer.BYTES * pixels + Files.size(source);
+        int units = (int)Math.min(memoryBudget / BUDGET_UNIT, (bytes + BUDGET_UNIT - 1) / BUDGET_UNIT);
+        budget.acquire(units);
+        try {
+            byte[] data;
+            openFiles.acquire();
+            try {
+                data = Files.readAllBytes(source);
+            } finally {
+                openFiles.release();
+            }
+
+            String format = suffix(source);
+            byte[] result = cpu.submit(() -> encode(transform.apply(decode(data)), format)).get();
+
+            openFiles.acquire();
+            try {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+                Files.write(target, result);
+            } finally {
+                openFiles.release();
+            }
+            return new long[] {data.length, result.length};
+        } finally {
+            budget.release(units);
+        }
+    }
+
+    /**
+     * Reads the dimensions of an image from the header of its file, without decoding it.
+     *
+     * @return the number of pixels of the image
+     * @throws IOException if the file can not be read or no reader understands it
+     */
+    private static long pixelCount(Path file) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("No reader for " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                return (long)reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static Image decode(byte[] data) throws IOException {
+        BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(data));
+        if (bufferedImage == null) {
+            throw new IOException("Not a readable image");
+        }
+        return Image.fromDecoded(bufferedImage);
+    }
+
+    private static byte[] encode(Image image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (image) {
+            if (!ImageIO.write(image.toBufferedImage(), format, bytes)) {
+                throw new IOException("No writer for " + format);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String suffix(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
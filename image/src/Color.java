@@ -6,8 +6,15 @@
  * (ranging from 0 to 255) or by providing a single RGB integer value. It also includes 
  * predefined constants for several common colors.
  * </p>
+ * <p>
+ * Colors are immutable and value-based: two colors are equal when their RGB values are, and
+ * the identity of a {@code Color} object should not be relied on. {@link #of(int)} returns
+ * shared instances for the predefined colors and the 256 grays, so that code handing out colors
+ * for common values does not allocate; code going through many pixels should use the packed RGB
+ * values and the static methods of this class, which never create a {@code Color} object.
+ * </p>
  */
-public class Color {
+public final class Color {
 
     /** Constant color for black (RGB: 0,0,0 - hex: 0x000000) */
     public static final int BLACK = 0x000000;
@@ -36,7 +43,24 @@ public class Color {
     /** Constant color for orange (RGB: 255,165,0 - hex: 0xffa500) */
     public static final int ORANGE = 0xffa500;
 
-    private int rgb;
+    private static final int[] NAMED = {
+        BLACK, WHITE, GRAY, RED, MAROON, LIME, GREEN, NAVY, YELLOW, MAGENTA, CYAN, PINK, ORANGE
+    };
+
+    // The shared instances: the grays by level, and the other predefined colors in the order of NAMED
+    private static final Color[] GRAYS = new Color[256];
+    private static final Color[] NAMED_COLORS = new Color[NAMED.length];
+
+    static {
+        for (int level = 0; level < GRAYS.length; level++) {
+            GRAYS[level] = new Color(level * 0x010101);
+        }
+        for (int i = 0; i < NAMED.length; i++) {
+            NAMED_COLORS[i] = isGray(NAMED[i]) ? GRAYS[NAMED[i] & 0xff] : new Color(NAMED[i]);
+        }
+    }
+
+    private final int rgb;
 
     /**
      * Constructs a new {@code Color} object using the specified red, green, and blue 
@@ -59,10 +83,51 @@ public class Color {
     /**
      * Constructs a new {@code Color} object using the specified RGB value.
      * 
-     * @param rgb the combined RGB value of the color (a 24-bit integer)
+     * @param rgb the combined RGB value of the color (a 24-bit integer); the bits above the
+     *            lowest 24 are ignored
      */
     public Color(int rgb) {
-        this.rgb = rgb;
+        this.rgb = rgb & 0xffffff;
+    }
+
+    /**
+     * Returns a {@code Color} object for the specified RGB value. The predefined colors and the
+     * grays, whose three components are equal, are returned from a cache without allocating;
+     * other values get a new object.
+     *
+     * @param rgb the combined RGB value of the color (a 24-bit integer); the bits above the
+     *            lowest 24 are ignored
+     * @return a color whose {@link #rgb()} is the lowest 24 bits of {@code rgb}
+     */
+    public static Color of(int rgb) {
+        rgb = rgb & 0xffffff;
+        if (isGray(rgb)) {
+            return GRAYS[rgb & 0xff];
+        }
+        for (int i = 0; i < NAMED.length; i++) {
+            if (NAMED[i] == rgb) {
+                return NAMED_COLORS[i];
+            }
+        }
+        return new Color(rgb);
+    }
+
+    /**
+     * Returns a {@code Color} object for the specified red, green, and blue components, from the
+     * cache of {@link #of(int)} when possible.
+     *
+     * @param red the red component of the color (0-255)
+     * @param green the green component of the color (0-255)
+     * @param blue the blue component of the color (0-255)
+     * @return a color with the given components
+     * @throws IllegalArgumentException if any component is out of the valid range [0, 255]
+     */
+    public static Color of(int red, int green, int blue) {
+        assert red <= 0xff && red >= 0x00;
+        assert green <= 0xff && green >= 0x00;
+        assert blue <= 0xff && blue >= 0x00;
+
+        return of(pack(red, green, blue));
     }
 
     /**
@@ -100,4 +165,83 @@ public class Color {
     public int rgb() {
         return rgb;
     }
+
+    /**
+     * Compares this color to another object. They are equal if the other object is a
+     * {@code Color} with the same RGB value.
+     *
+     * @param other the object to compare to
+     * @return {@code true} if the other object is the same color
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Color && ((Color)other).rgb == rgb;
+    }
+
+    /**
+     * Returns a hash code for the color, consistent with {@link #equals(Object)}.
+     *
+     * @return the RGB value
+     */
+    @Override
+    public int hashCode() {
+        return rgb;
+    }
+
+    /**
+     * Returns the color as a hexadecimal string such as {@code #ffa500}.
+     *
+     * @return the string
+     */
+    @Override
+    public String toString() {
+        return String.format("#%06x", rgb);
+    }
+
+    /**
+     * Packs the specified red, green, and blue components into a single RGB value,
+     * without creating a {@code Color} object.
+     * 
+     * @param red the red component (0-255)
+     * @param green the green component (0-255)
+     * @param blue the blue component (0-255)
+     * @return the combined RGB value (a 24-bit integer)
+     */
+    public static int pack(int red, int green, int blue) {
+        return ((red&0x0ff)<<16) | ((green&0x0ff)<<8) | (blue&0x0ff);
+    }
+
+    /**
+     * Returns the red component of a packed RGB value.
+     * 
+     * @param rgb the combined RGB value
+     * @return The red component (0-255)
+     */
+    public static int red(int rgb) {
+        return (rgb >> 16) & 0xff;
+    }
+
+    /**
+     * Returns the green component of a packed RGB value.
+     * 
+     * @param rgb the combined RGB value
+     * @return The green component (0-255)
+     */
+    public static int green(int rgb) {
+        return (rgb >> 8) & 0xff;
+    }
+
+    /**
+     * Returns the blue component of a packed RGB value.
+     * 
+     * @param rgb the combined RGB value
+     * @return The blue component (0-255)
+     */
+    public static int blue(int rgb) {
+        return rgb & 0xff;
+    }
+
+    private static boolean isGray(int rgb) {
+        return rgb == (rgb & 0xff) * 0x010101;
+    }
 }
@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * The {@code Convolution} class applies {@link ConvolutionKernel} filters to images.
+ * <p>
+ * Every result pixel is the sum of the pixels around it, each multiplied by the matching weight
+ * of the kernel, computed separately for each color channel. Sums are rounded to the nearest
+ * integer and clamped to the range 0 to 255. Where the kernel reaches past the edge of the
+ * image, the {@link EdgePolicy} decides which pixels are read.
+ * </p>
+ * <p>
+ * The rows of the result are processed in bands as decided by a {@link RowBands} argument.
+ * Each band works through blocks of {@link #BLOCK_ROWS} rows: it unpacks the source rows the
+ * block needs, padded as required by the edge policy, into one {@code float} plane per channel,
+ * and then filters them. Separable kernels are run as a pass along the rows followed by a pass
+ * along the columns. Blocks keep the temporary memory small and independent of the image size.
+ * </p>
+ */
+public class Convolution {
+
+    /** The number of result rows a band computes at a time. */
+    public static final int BLOCK_ROWS = 64;
+
+    private static final int CHANNELS = 3;
+
+    /**
+     * Convolves an image with a kernel.
+     *
+     * @param image the {@code Image} object to filter
+     * @param kernel the weights to apply
+     * @param edges decides which pixels are read past the edges of the image
+     * @return a new {@code Image} object holding the filtered image
+     */
+    public static Image convolve(Image image, ConvolutionKernel kernel, EdgePolicy edges) {
+        return convolve(image, kernel, edges, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Convolves an image with a kernel, processing its rows as decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to filter
+     * @param kernel the weights to apply
+     * @param edges decides which pixels are read past the edges of the image
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the filtered image
+     */
+    public static Image convolve(Image image, ConvolutionKernel kernel, EdgePolicy edges, RowBands bands) {
+        int width = image.width();
+        int height = image.height();
+        Image newImage = image.createCompatible(width, height);
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            float[][] result;
+            for (int block = fromRow; block < toRow; block = block + BLOCK_ROWS) {
+                result = filterBlock(image, kernel, edges, block, Math.min(toRow, block + BLOCK_ROWS));
+                for (int y = block; y < Math.min(toRow, block + BLOCK_ROWS); y++) {
+                    for (int x = 0; x < width; x++) {
+                        newImage.setRGB(x, y, Color.pack(clamp(result[0][(y - block)*width + x]),
+                                                         clamp(result[1][(y - block)*width + x]),
+                                                         clamp(result[2][(y - block)*width + x])));
+                    }
+                }
+            }
+        });
+        return newImage;
+    }
+
+    /**
+     * Convolves an image with two kernels, usually a horizontal and a vertical gradient such as
+     * {@link ConvolutionKernel#SOBEL_X} and {@link ConvolutionKernel#SOBEL_Y}, and stores the
+     * magnitude {@code sqrt(gx*gx + gy*gy)} of the two results, for each channel.
+     *
+     * @param image the {@code Image} object to filter
+     * @param kernelX the first kernel
+     * @param kernelY the second kernel
+     * @param edges decides which pixels are read past the edges of the image
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the gradient magnitude
+     */
+    public static Image gradientMagnitude(Image image, ConvolutionKernel kernelX, ConvolutionKernel kernelY,
+                                         EdgePolicy edges, RowBands bands) {
+        int width = image.width();
+        int height = image.height();
+        Image newImage = image.createCompatible(width, height);
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            float[][] gx, gy;
+            int[] channels = new int[CHANNELS];
+            int index;
+            for (int block = fromRow; block < toRow; block = block + BLOCK_ROWS) {
+                gx = filterBlock(image, kernelX, edges, block, Math.min(toRow, block + BLOCK_ROWS));
+                gy = filterBlock(image, kernelY, edges, block, Math.min(toRow, block + BLOCK_ROWS));
+                for (int y = block; y < Math.min(toRow, block + BLOCK_ROWS); y++) {
+                    for (int x = 0; x < width; x++) {
+                        index = (y - block)*width + x;
+                        for (int c = 0; c < CHANNELS; c++) {
+                            channels[c] = clamp((float)Math.sqrt(gx[c][index]*gx[c][index] + gy[c][index]*gy[c][index]));
+                        }
+                        newImage.setRGB(x, y, Color.pack(channels[0], channels[1], channels[2]));
+                    }
+                }
+            }
+        });
+        return newImage;
+    }
+
+    /**
+     * Computes the unrounded sums of a block of result rows.
+     *
+     * @param image the source image
+     * @param kernel the weights to apply
+     * @param edges decides which pixels are read past the edges of the image
+     * @param fromRow the first result row of the block
+     * @param toRow the row after the last result row of the block
+     * @return one plane per channel holding the sums, row by row, {@code width} values per row
+     */
+    private static float[][] filterBlock(Image image, ConvolutionKernel kernel, EdgePolicy edges, int fromRow, int toRow) {
+        int width = image.width();
+        int radiusX = kernel.width() / 2;
+        int radiusY = kernel.height() / 2;
+        int rows = toRow - fromRow;
+        int paddedWidth = width + 2*radiusX;
+        float[][] source = unpack(image, edges, fromRow - radiusY, rows + 2*radiusY, radiusX);
+        float[][] result = new float[CHANNELS][rows * width];
+
+        // The loops over x are innermost so that they run over contiguous memory; each sum still
+        // adds up its terms in kernel order
+        float weight;
+        float[] plane, sums;
+        if (kernel.isSeparable()) {
+            float[] rowWeights = kernel.rowWeights();
+            float[] columnWeights = kernel.columnWeights();
+            float[] horizontal = new float[(rows + 2*radiusY) * width];
+            for (int c = 0; c < CHANNELS; c++) {
+                plane = source[c];
+                sums = result[c];
+                Arrays.fill(horizontal, 0);
+
+                // Pass along the rows, over every unpacked row
+                for (int y = 0; y < rows + 2*radiusY; y++) {
+                    for (int k = 0; k < rowWeights.length; k++) {
+                        weight = rowWeights[k];
+                        for (int x = 0; x < width; x++) {
+                            horizontal[y*width + x] += weight * plane[y*paddedWidth + x + k];
+                        }
+                    }
+                }
+                // Pass along the columns, over the result rows only
+                for (int y = 0; y < rows; y++) {
+                    for (int k = 0; k < columnWeights.length; k++) {
+                        weight = columnWeights[k];
+                        for (int x = 0; x < width; x++) {
+                            sums[y*width + x] += weight * horizontal[(y + k)*width + x];
+                        }
+                    }
+                }
+            }
+        } else {
+            float[] weights = kernel.weights();
+            int kernelWidth = kernel.width();
+            int kernelHeight = kernel.height();
+            for (int c = 0; c < CHANNELS; c++) {
+                plane = source[c];
+                sums = result[c];
+                for (int y = 0; y < rows; y++) {
+                    for (int j = 0; j < kernelHeight; j++) {
+                        for (int i = 0; i < kernelWidth; i++) {
+                            weight = weights[j*kernelWidth + i];
+                            for (int x = 0; x < width; x++) {
+                                sums[y*width + x] += weight * plane[(y + j)*paddedWidth + x + i];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Unpacks source rows into one plane per channel, with {@code padding} extra columns on each
+     * side. Rows and columns outside the image are filled as decided by the edge policy.
+     *
+     * @param image the source image
+     * @param edges decides which pixels are read past the edges of the image
+     * @param fromRow the first row to unpack, which may be negative
+     * @param rows the number of rows to unpack
+     * @param padding the number of extra columns on each side
+     * @return the planes, row by row, {@code width + 2*padding} values per row
+     */
+    private static float[][] unpack(Image image, EdgePolicy edges, int fromRow, int rows, int padding) {
+        int width = image.width();
+        int height = image.height();
+        int paddedWidth = width + 2*padding;
+        float[][] planes = new float[CHANNELS][rows * paddedWidth];
+
+        int[] columns = new int[paddedWidth];
+        for (int x = 0; x < paddedWidth; x++) {
+            columns[x] = edges.index(x - padding, width);
+        }
+
+        int sourceRow, pixel;
+        for (int y = 0; y < rows; y++) {
+            sourceRow = edges.index(fromRow + y, height);
+            if (sourceRow < 0) {
+                continue;
+            }
+            for (int x = 0; x < paddedWidth; x++) {
+                if (columns[x] < 0) {
+                    continue;
+                }
+                pixel = image.getRGB(columns[x], sourceRow);
+                planes[0][y*paddedWidth + x] = Color.red(pixel);
+                planes[1][y*paddedWidth + x] = Color.green(pixel);
+                planes[2][y*paddedWidth + x] = Color.blue(pixel);
+            }
+        }
+        return planes;
+    }
+
+    /**
+     * Rounds a sum to the nearest channel value between 0 and 255.
+     */
+    private static int clamp(float value) {
+        return Math.max(0, Math.min(255, Math.round(value)));
+    }
+}
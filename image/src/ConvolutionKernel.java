@@ -0,0 +1,233 @@
+/**
+ * The {@code ConvolutionKernel} class holds the weights of a convolution, a rectangle of odd
+ * width and height centered on the pixel being computed.
+ * <p>
+ * A kernel is separable when its weights are the product of one column and one row of weights,
+ * as for a Gaussian blur or a Sobel operator. The constructor detects this, and {@link Convolution}
+ * then runs the kernel as two one-dimensional passes, which costs {@code width + height} instead of
+ * {@code width * height} multiplications per pixel.
+ * </p>
+ * <p>
+ * Kernels are immutable.
+ * </p>
+ */
+public class ConvolutionKernel {
+
+    /** Sharpens an image by subtracting the four neighbors of each pixel from five times its value. */
+    public static final ConvolutionKernel SHARPEN = new ConvolutionKernel(3, 3,
+         0, -1,  0,
+        -1,  5, -1,
+         0, -1,  0);
+
+    /** The horizontal Sobel operator, which responds to vertical edges. */
+    public static final ConvolutionKernel SOBEL_X = new ConvolutionKernel(3, 3,
+        -1, 0, 1,
+        -2, 0, 2,
+        -1, 0, 1);
+
+    /** The vertical Sobel operator, which responds to horizontal edges. */
+    public static final ConvolutionKernel SOBEL_Y = new ConvolutionKernel(3, 3,
+        -1, -2, -1,
+         0,  0,  0,
+         1,  2,  1);
+
+    // Relative tolerance when checking whether the weights are a product of a column and a row
+    private static final double SEPARABLE_TOLERANCE = 1e-6;
+
+    private final int width;
+    private final int height;
+    private final float[] weights;
+    private final float[] rowWeights;
+    private final float[] columnWeights;
+
+    /**
+     * Constructs a {@code ConvolutionKernel} object from its weights, row by row.
+     *
+     * @param width the width of the kernel, which must be odd
+     * @param height the height of the kernel, which must be odd
+     * @param weights the {@code width * height} weights, row by row
+     * @throws IllegalArgumentException if a dimension is not odd or the number of weights does not match
+     */
+    public ConvolutionKernel(int width, int height, double... weights) {
+        assert width > 0 && width % 2 == 1;
+        assert height > 0 && height % 2 == 1;
+        assert weights.length == width * height;
+
+        this.width = width;
+        this.height = height;
+        this.weights = new float[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            this.weights[i] = (float)weights[i];
+        }
+
+        // The row and column through the largest weight are the only candidates for the factors
+        int pivot = 0;
+        for (int i = 1; i < weights.length; i++) {
+            if (Math.abs(weights[i]) > Math.abs(weights[pivot])) {
+                pivot = i;
+            }
+        }
+        int pivotX = pivot % width;
+        int pivotY = pivot / width;
+        double largest = Math.abs(weights[pivot]);
+
+        double[] row = new double[width];
+        double[] column = new double[height];
+        for (int x = 0; x < width; x++) {
+            row[x] = largest == 0 ? 0 : weights[pivotY*width + x] / weights[pivot];
+        }
+        for (int y = 0; y < height; y++) {
+            column[y] = weights[y*width + pivotX];
+        }
+
+        boolean separable = true;
+        for (int y = 0; y < height && separable; y++) {
+            for (int x = 0; x < width && separable; x++) {
+                separable = Math.abs(weights[y*width + x] - column[y]*row[x]) <= SEPARABLE_TOLERANCE * largest;
+            }
+        }
+        this.rowWeights = separable ? toFloats(row) : null;
+        this.columnWeights = separable ? toFloats(column) : null;
+    }
+
+    /**
+     * Constructs a separable {@code ConvolutionKernel} object from its two factors.
+     */
+    private ConvolutionKernel(double[] row, double[] column) {
+        this.width = row.length;
+        this.height = column.length;
+        this.weights = new float[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                this.weights[y*width + x] = (float)(column[y] * row[x]);
+            }
+        }
+        this.rowWeights = toFloats(row);
+        this.columnWeights = toFloats(column);
+    }
+
+    /**
+     * Constructs a copy of a kernel that is never run as two passes.
+     */
+    private ConvolutionKernel(ConvolutionKernel kernel) {
+        this.width = kernel.width;
+        this.height = kernel.height;
+        this.weights = kernel.weights;
+        this.rowWeights = null;
+        this.columnWeights = null;
+    }
+
+    /**
+     * Returns a separable kernel whose weights are the products of a row and a column of weights.
+     *
+     * @param row the weights along a row, an odd number of them
+     * @param column the weights along a column, an odd number of them
+     * @return the separable kernel
+     * @throws IllegalArgumentException if the row or the column does not have an odd length
+     */
+    public static ConvolutionKernel separable(double[] row, double[] column) {
+        assert row.length % 2 == 1;
+        assert column.length % 2 == 1;
+
+        return new ConvolutionKernel(row, column);
+    }
+
+    /**
+     * Returns a Gaussian blur kernel. The kernel reaches three standard deviations away from the
+     * center, and its weights add up to one.
+     *
+     * @param sigma the standard deviation of the Gaussian, in pixels
+     * @return the separable Gaussian kernel
+     * @throws IllegalArgumentException if sigma is not positive
+     */
+    public static ConvolutionKernel gaussian(double sigma) {
+        assert sigma > 0;
+
+        int radius = (int)Math.ceil(3*sigma);
+        double[] weights = new double[2*radius + 1];
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            weights[i + radius] = Math.exp(-(i*i) / (2*sigma*sigma));
+            total = total + weights[i + radius];
+        }
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weights[i] / total;
+        }
+        return new ConvolutionKernel(weights, weights);
+    }
+
+    /**
+     * Returns the width of the kernel.
+     *
+     * @return the width, an odd number
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the kernel.
+     *
+     * @return the height, an odd number
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns a weight of the kernel.
+     *
+     * @param x the column of the weight, from {@code 0} to {@code width()-1}
+     * @param y the row of the weight, from {@code 0} to {@code height()-1}
+     * @return the weight
+     * @throws IllegalArgumentException if the position is outside the kernel
+     */
+    public double weight(int x, int y) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+
+        return weights[y*width + x];
+    }
+
+    /**
+     * Returns whether the kernel is run as two one-dimensional passes.
+     *
+     * @return {@code true} if the kernel is separable
+     */
+    public boolean isSeparable() {
+        return rowWeights != null;
+    }
+
+    /**
+     * Returns a copy of this kernel that is always run as one two-dimensional pass, used to
+     * measure what separation saves.
+     *
+     * @return the non-separated kernel
+     */
+    ConvolutionKernel dense() {
+        return new ConvolutionKernel(this);
+    }
+
+    /** Returns the weights row by row; the array must not be modified. */
+    float[] weights() {
+        return weights;
+    }
+
+    /** Returns the weights along a row of a separable kernel; the array must not be modified. */
+    float[] rowWeights() {
+        return rowWeights;
+    }
+
+    /** Returns the weights along a column of a separable kernel; the array must not be modified. */
+    float[] columnWeights() {
+        return columnWeights;
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float)values[i];
+        }
+        return floats;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * The {@code EdgePolicy} enum decides which pixel a neighborhood operation such as
+ * {@link Convolution} reads when it reaches past the edge of the image.
+ */
+public enum EdgePolicy {
+
+    /** Repeats the pixels on the edge: {@code a a a | a b c d | d d d}. */
+    CLAMP,
+
+    /** Reflects the image around the pixels on the edge: {@code d c b | a b c d | c b a}. */
+    MIRROR,
+
+    /** Continues with the opposite side of the image: {@code b c d | a b c d | a b c}. */
+    WRAP,
+
+    /** Treats every pixel outside the image as black. */
+    ZERO;
+
+    /**
+     * Returns the coordinate read in place of the given one.
+     *
+     * @param i the coordinate, which may lie outside the image
+     * @param length the width or height of the image along that axis
+     * @return the coordinate to read, between {@code 0} and {@code length-1}, or {@code -1}
+     *         if black is read instead
+     */
+    public int index(int i, int length) {
+        if (i >= 0 && i < length) {
+            return i;
+        }
+
+        switch (this) {
+            case CLAMP:
+                return i < 0 ? 0 : length-1;
+            case MIRROR:
+                if (length == 1) {
+                    return 0;
+                }
+                int period = 2*(length-1);
+                int j = Math.floorMod(i, period);
+                return j < length ? j : period - j;
+            case WRAP:
+                return Math.floorMod(i, length);
+            default:
+                return -1;
+        }
+    }
+}
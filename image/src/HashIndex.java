@@ -0,0 +1,348 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code HashIndex} class stores 64-bit {@link PerceptualHash perceptual hashes} with the id
+ * of the image each one was computed from, and finds the stored hashes within a Hamming distance
+ * of a hash without comparing it to every stored hash.
+ * <p>
+ * The index is a multi-index hash table. Each hash is split into {@link #CHUNKS} chunks of 16
+ * bits, and each chunk has a table listing, for each of its 65536 values, the hashes whose chunk
+ * has that value. If two hashes are within a distance {@code r}, at least one of their chunks is
+ * within {@code r / CHUNKS}, since the differing bits can not all fall in the other chunks. A
+ * search therefore only checks the full distance of the hashes listed under the values close to
+ * a chunk of the query.
+ * </p>
+ * <p>
+ * A search with a distance of {@code 4k} to {@code 4k+3} looks at the values within {@code k} of
+ * each chunk: 1 value for k = 0, 17 for k = 1, 137 for k = 2. For hashes spread evenly, it
+ * checks about 0.006%, 0.1% and 0.8% of them, so near-duplicate searches, up to a distance of
+ * about 10, take a small fraction of the time of a comparison with every hash; from a distance
+ * of 12 on, a search costs about as much. Each stored hash takes 32 bytes of memory: its hash,
+ * its id and its place in the four tables.
+ * </p>
+ * <p>
+ * The index can be saved to a file of {@link #HEADER_SIZE} bytes of little-endian {@code int}
+ * values:
+ * </p>
+ * <ul>
+ *     <li>the magic number {@link #MAGIC}, the characters {@code PHIX}</li>
+ *     <li>the format version, {@link #VERSION}</li>
+ *     <li>the number of hashes</li>
+ *     <li>zero</li>
+ * </ul>
+ * <p>
+ * followed by one record of {@link #RECORD_SIZE} bytes per hash, in the order they were added:
+ * the hash and the id as little-endian {@code long} values. The tables are not saved; loading a
+ * file rebuilds them in one pass over the hashes, without computing any distance.
+ * </p>
+ * <p>
+ * An index is not safe to change from several threads at once, but any number of threads may
+ * search it while it is not changed.
+ * </p>
+ */
+public class HashIndex {
+
+    /** The magic number an index file starts with. */
+    public static final int MAGIC = 0x50484958;
+
+    /** The version of the format written by this class. */
+    public static final int VERSION = 1;
+
+    /** The size of the header of an index file in bytes. */
+    public static final int HEADER_SIZE = 16;
+
+    /** The size of the record of each hash in an index file in bytes. */
+    public static final int RECORD_SIZE = 16;
+
+    /** The number of chunks a hash is split into, each with its own table. */
+    public static final int CHUNKS = 4;
+
+    private static final int CHUNK_BITS = Long.SIZE / CHUNKS;
+    private static final int VALUES = 1 << CHUNK_BITS;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Records are read and written in chunks of this many records
+    private static final int BLOCK = 4096;
+
+    private long[] hashes;
+    private long[] ids;
+    private int size;
+
+    // buckets[c][v] lists the positions of the hashes whose chunk c has the value v, in its
+    // first counts[c][v] entries; a bucket is only allocated when a hash is listed in it
+    private final int[][][] buckets = new int[CHUNKS][VALUES][];
+    private final int[][] counts = new int[CHUNKS][VALUES];
+
+    /**
+     * A stored hash found by a search.
+     */
+    public static final class Match {
+        private final long id;
+        private final long hash;
+        private final int distance;
+
+        private Match(long id, long hash, int distance) {
+            this.id = id;
+            this.hash = hash;
+            this.distance = distance;
+        }
+
+        /**
+         * Returns the id the hash was added with.
+         *
+         * @return the id of the image
+         */
+        public long id() {
+            return id;
+        }
+
+        /**
+         * Returns the stored hash.
+         *
+         * @return the hash of the image
+         */
+        public long hash() {
+            return hash;
+        }
+
+        /**
+         * Returns the distance between the stored hash and the hash searched for.
+         *
+         * @return the number of bits in which the hashes differ
+         */
+        public int distance() {
+            return distance;
+        }
+    }
+
+    /**
+     * Constructs an empty {@code HashIndex} object.
+     */
+    public HashIndex() {
+        hashes = new long[INITIAL_CAPACITY];
+        ids = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the number of hashes in the index.
+     *
+     * @return the number of hashes added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a hash to the index. The same hash may be added several times, with the same or with
+     * different ids.
+     *
+     * @param hash the hash of an image
+     * @param id the id of the image, returned by the searches that find the hash
+     */
+    public void add(long hash, long id) {
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, 2 * size);
+            ids = Arrays.copyOf(ids, 2 * size);
+        }
+        hashes[size] = hash;
+        ids[size] = id;
+
+        int value;
+        int[] bucket;
+        for (int c = 0; c < CHUNKS; c++) {
+            value = chunk(hash, c);
+            bucket = buckets[c][value];
+            if (bucket == null) {
+                bucket = new int[4];
+            } else if (counts[c][value] == bucket.length) {
+                bucket = Arrays.copyOf(bucket, 2 * bucket.length);
+            }
+            buckets[c][value] = bucket;
+            bucket[counts[c][value]++] = size;
+        }
+        size++;
+    }
+
+    /**
+     * Finds the stored hashes within a distance of a hash.
+     *
+     * @param hash the hash to search for
+     * @param maxDistance the largest distance of the hashes found, from 0 to 64
+     * @return the hashes found with their ids and distances, in no particular order
+     * @throws IllegalArgumentException if the distance is out of range
+     */
+    public List<Match> search(long hash, int maxDistance) {
+        assert maxDistance >= 0 && maxDistance <= Long.SIZE;
+
+        List<Match> matches = new ArrayList<>();
+        int radius = maxDistance / CHUNKS;
+        int query, mask, limit;
+        for (int c = 0; c < CHUNKS; c++) {
+            query = chunk(hash, c);
+            // Goes through the masks of 0 to radius bits among the bits of a chunk, each number
+            // of bits in increasing order
+            for (int bits = 0; bits <= Math.min(radius, CHUNK_BITS); bits++) {
+                mask = (1 << bits) - 1;
+                limit = bits == 0 ? 1 : VALUES;
+                while (mask < limit) {
+                    collect(hash, maxDistance, radius, c, query ^ mask, matches);
+                    mask = bits == 0 ? limit : nextMask(mask);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Saves the index to a file, replacing the file if it already exists.
+     *
+     * @param path the index file to write
+     * @throws IOException if the file can not be written
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0);
+            for (int i = 0; i < size; i++) {
+                if (buffer.remaining() < RECORD_SIZE) {
+                    write(channel, buffer);
+                }
+                buffer.putLong(hashes[i]).putLong(ids[i]);
+            }
+            write(channel, buffer);
+        }
+    }
+
+    /**
+     * Loads an index saved by {@link #save(Path)}.
+     *
+     * @param path the index file to read
+     * @return the index, as it was saved
+     * @throws IOException if the file can not be read or is not a valid index file
+     */
+    public static HashIndex load(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        HashIndex index = new HashIndex();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            read(channel, buffer.limit(HEADER_SIZE), path);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a hash index file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported hash index version " + version);
+            }
+            int size = buffer.getInt();
+            if (size < 0 || channel.size() != HEADER_SIZE + (long)size * RECORD_SIZE) {
+                throw new IOException(path + " has the wrong size for " + size + " hashes");
+            }
+            // The rest of the header is zero
+            buffer.position(HEADER_SIZE);
+
+            index.hashes = new long[Math.max(size, INITIAL_CAPACITY)];
+            index.ids = new long[index.hashes.length];
+            for (int i = 0; i < size; i++) {
+                if (!buffer.hasRemaining()) {
+                    read(channel, buffer.clear().limit(Math.min(BLOCK, size - i) * RECORD_SIZE), path);
+                }
+                index.hashes[i] = buffer.getLong();
+                index.ids[i] = buffer.getLong();
+            }
+            index.size = size;
+        }
+        index.buildTables();
+        return index;
+    }
+
+    /**
+     * Adds the hashes listed under one value of one chunk to the matches, if they are within
+     * the distance and were not found under an earlier chunk.
+     */
+    private void collect(long hash, int maxDistance, int radius, int chunk, int value, List<Match> matches) {
+        int[] bucket = buckets[chunk][value];
+        int count = counts[chunk][value];
+        int position, distance;
+        long stored;
+        boolean earlier;
+        for (int i = 0; i < count; i++) {
+            position = bucket[i];
+            stored = hashes[position];
+            distance = PerceptualHash.distance(hash, stored);
+            if (distance > maxDistance) {
+                continue;
+            }
+            // A hash close enough in several chunks is only reported under the first of them
+            earlier = false;
+            for (int c = 0; c < chunk && !earlier; c++) {
+                earlier = Integer.bitCount(chunk(hash, c) ^ chunk(stored, c)) <= radius;
+            }
+            if (!earlier) {
+                matches.add(new Match(ids[position], stored, distance));
+            }
+        }
+    }
+
+    /**
+     * Fills the tables from the hashes, giving every bucket its exact size.
+     */
+    private void buildTables() {
+        int value;
+        for (int c = 0; c < CHUNKS; c++) {
+            for (int i = 0; i < size; i++) {
+                counts[c][chunk(hashes[i], c)]++;
+            }
+            for (int v = 0; v < VALUES; v++) {
+                if (counts[c][v] > 0) {
+                    buckets[c][v] = new int[counts[c][v]];
+                    counts[c][v] = 0;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                value = chunk(hashes[i], c);
+                buckets[c][value][counts[c][value]++] = i;
+            }
+        }
+    }
+
+    private static int chunk(long hash, int chunk) {
+        return (int)(hash >>> (chunk * CHUNK_BITS)) & (VALUES - 1);
+    }
+
+    /**
+     * Returns the next larger number with as many bits set as a mask.
+     */
+    private static int nextMask(int mask) {
+        int lowest = mask & -mask;
+        int carried = mask + lowest;
+        return carried | (((mask ^ carried) >>> 2) / lowest);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Fills the buffer up to its limit from the channel, and flips it for reading.
+     */
+    private static void read(FileChannel channel, ByteBuffer buffer, Path path) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException(path + " is truncated");
+            }
+        }
+        buffer.flip();
+    }
+}
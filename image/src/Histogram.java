@@ -0,0 +1,173 @@
+/**
+ * The {@code Histogram} class counts how many pixels of an image have each value, from 0 to 255,
+ * in each color channel and in luminance.
+ * <p>
+ * The luminance of a pixel is the gray level {@link ImageUtils#grayscaleLuminosity(Image)} gives
+ * it. The rows of the image are counted as decided by a {@link RowBands} argument: each band
+ * counts its rows into a partial histogram of its own, without sharing anything with the other
+ * bands, and the partial histograms are added together as the bands finish. The counts are the
+ * same whichever way the rows are split.
+ * </p>
+ * <p>
+ * Histograms are immutable, and are used to build {@link ToneCurve} objects.
+ * </p>
+ */
+public class Histogram {
+
+    /** The index of the red channel. */
+    public static final int RED = 0;
+
+    /** The index of the green channel. */
+    public static final int GREEN = 1;
+
+    /** The index of the blue channel. */
+    public static final int BLUE = 2;
+
+    /** The index of the luminance of the pixels. */
+    public static final int LUMINANCE = 3;
+
+    /** The number of values counted in each channel. */
+    public static final int BINS = 256;
+
+    private static final int CHANNELS = 4;
+
+    private final long[][] counts = new long[CHANNELS][BINS];
+    private final long total;
+
+    /**
+     * Constructs the histogram of an image, counting its rows sequentially.
+     *
+     * @param image the image whose pixels to count
+     */
+    public Histogram(Image image) {
+        this(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Constructs the histogram of an image, counting its rows as decided by {@code bands}.
+     *
+     * @param image the image whose pixels to count
+     * @param bands decides how the rows are counted
+     */
+    public Histogram(Image image, RowBands bands) {
+        int width = image.width();
+        int height = image.height();
+        int[] pixels = image.raster();
+        this.total = (long)width * height;
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            long[][] partial = new long[CHANNELS][BINS];
+            long[] red = partial[RED];
+            long[] green = partial[GREEN];
+            long[] blue = partial[BLUE];
+            long[] luminance = partial[LUMINANCE];
+            int pixel, r, g, b;
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    pixel = pixels != null ? pixels[y*width + x] : image.getRGB(x, y);
+                    r = Color.red(pixel);
+                    g = Color.green(pixel);
+                    b = Color.blue(pixel);
+                    red[r]++;
+                    green[g]++;
+                    blue[b]++;
+                    luminance[(int)((double)r*0.3 + (double)g*0.59 + (double)b*0.11)]++;
+                }
+            }
+            merge(partial);
+        });
+    }
+
+    /**
+     * Adds the counts of a band to the histogram.
+     *
+     * @param partial the counts of the band
+     */
+    private synchronized void merge(long[][] partial) {
+        for (int c = 0; c < CHANNELS; c++) {
+            for (int v = 0; v < BINS; v++) {
+                counts[c][v] += partial[c][v];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pixels counted, the width times the height of the image.
+     *
+     * @return the number of pixels
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the number of pixels with a value in a channel.
+     *
+     * @param channel {@link #RED}, {@link #GREEN}, {@link #BLUE} or {@link #LUMINANCE}
+     * @param value the value, from 0 to 255
+     * @return the number of pixels with the value
+     * @throws IllegalArgumentException if the channel or the value does not exist
+     */
+    public long count(int channel, int value) {
+        assert channel >= 0 && channel < CHANNELS;
+        assert value >= 0 && value < BINS;
+
+        return counts[channel][value];
+    }
+
+    /**
+     * Returns the counts of all the values of a channel.
+     *
+     * @param channel {@link #RED}, {@link #GREEN}, {@link #BLUE} or {@link #LUMINANCE}
+     * @return a new array of {@link #BINS} counts, indexed by value
+     * @throws IllegalArgumentException if the channel does not exist
+     */
+    public long[] counts(int channel) {
+        assert channel >= 0 && channel < CHANNELS;
+
+        return counts[channel].clone();
+    }
+
+    /**
+     * Returns the smallest value of a channel such that at least the given fraction of the pixels
+     * have that value or a smaller one. A fraction of 0 gives the smallest value present, and a
+     * fraction of 1 the largest.
+     *
+     * @param channel {@link #RED}, {@link #GREEN}, {@link #BLUE} or {@link #LUMINANCE}
+     * @param fraction the fraction of the pixels, from 0 to 1
+     * @return the value, from 0 to 255
+     * @throws IllegalArgumentException if the channel does not exist or the fraction is out of range
+     */
+    public int quantile(int channel, double fraction) {
+        assert channel >= 0 && channel < CHANNELS;
+        assert fraction >= 0 && fraction <= 1;
+
+        // At least one pixel is needed, so that a fraction of 0 gives the smallest value present
+        long needed = Math.max(1, (long)Math.ceil(fraction * total));
+        long cumulative = 0;
+        for (int v = 0; v < BINS; v++) {
+            cumulative = cumulative + counts[channel][v];
+            if (cumulative >= needed) {
+                return v;
+            }
+        }
+        return BINS - 1;
+    }
+
+    /**
+     * Returns the mean value of a channel.
+     *
+     * @param channel {@link #RED}, {@link #GREEN}, {@link #BLUE} or {@link #LUMINANCE}
+     * @return the mean value, from 0 to 255
+     * @throws IllegalArgumentException if the channel does not exist
+     */
+    public double mean(int channel) {
+        assert channel >= 0 && channel < CHANNELS;
+
+        long sum = 0;
+        for (int v = 0; v < BINS; v++) {
+            sum = sum + counts[channel][v] * v;
+        }
+        return (double)sum / total;
+    }
+}
@@ -3,27 +3,97 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * The {@code Image} class represents an image with a 2D array of {@code Color} objects.
- * It allows for creating an image, manipulating its pixels, loading an image from a file, 
+ * The {@code Image} class represents an image as a grid of packed RGB pixels.
+ * It allows for creating an image, manipulating its pixels, loading an image from a file,
  * and displaying the image in a window.
  * <p>
- * The image is represented by a 2D array of pixels, each of which is a {@code Color} object.
- * The class provides functionality to get and set the color of individual pixels, as well as 
+ * The pixels are stored row by row in a single {@code int} array, each entry holding the
+ * combined RGB value of one pixel. The class provides functionality to get and set the color
+ * of individual pixels, either as {@code Color} objects or as packed RGB values, as well as
  * loading and displaying images from files.
  * </p>
+ * <p>
+ * The packed accessors {@link #getRGB(int, int)} and {@link #setRGB(int, int, int)} do not
+ * allocate and should be preferred in loops that visit every pixel.
+ * </p>
+ * <p>
+ * An image can also live outside the heap, either in memory allocated with
+ * {@link #allocateOffHeap(int, int)} or in a raster file mapped into memory with
+ * {@link #openRaster(Path, boolean)}. Such an image behaves like any other and is accepted by
+ * every operation of {@code ImageUtils} and {@code ImageUtilsSE}, but it does not count towards
+ * the heap, may hold more than 2<sup>31</sup> pixels, and {@link #close()} must be called to release
+ * its memory. Operations creating a new image from an off-heap image create an off-heap image too,
+ * see {@link #createCompatible(int, int)}.
+ * </p>
+ * <p>
+ * {@link #view(int, int, int, int)} returns a view: an image made of a rectangle of the pixels of
+ * another image, sharing them instead of copying them. A view reads its pixels through an offset
+ * and a row stride into the storage of its parent, and is accepted by every operation like any
+ * other image. Views are copy-on-write in both directions: the first change made to a view
+ * copies its pixels into storage of its own, so the parent never sees the change, and the first
+ * change made to the parent, including an in-place rotation or flip, first copies the pixels of
+ * every view still sharing them, so the views never see it. The parent itself is never moved, on
+ * the heap or off it, so that a {@code BufferedImage} sharing its pixels keeps sharing them.
+ * Changes that do not go through this class, made through such a {@code BufferedImage} or to a
+ * mapped raster file by someone else, are not detected and show in the views. Views of an
+ * off-heap image must not be used after it is closed, unless they were copied before.
+ * </p>
+ * <p>
+ * The copies made by the first change are not synchronized. An operation changing an image from
+ * several threads at once must call {@link #ensureWritable()} on the calling thread first.
+ * </p>
  */
-public class Image {
+public class Image implements AutoCloseable {
 
-    private Color[][] image;
+    /** The layout of one pixel outside the heap: a little-endian packed RGB value. */
+    static final ValueLayout.OfInt PIXEL = ValueLayout.JAVA_INT.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private MemorySegment segment;
+    private Arena arena;
+    private final MemorySegment header;
+
+    // Position of the first pixel in the storage, and number of pixels from one row to the next
+    private long offset = 0;
+    private int stride;
+
+    // Whether this image is a view sharing the storage of its parent, and must copy it before a change
+    private boolean shared = false;
+
+    // For a view, the image owning the storage it shares
+    private Image owner = null;
+
+    // The views sharing the storage of this image, copied before it changes, or null if there are none
+    private List<WeakReference<Image>> views = null;
+
+    // The number of views past which views that were garbage collected are removed from the list
+    private int viewCapacity = 16;
 
     /**
-     * Constructs an {@code Image} object with the specified width and height, 
+     * Constructs an {@code Image} object with the specified width and height,
      * initializing the background color to black.
-     * 
+     *
      * @param width the width of the image
      * @param height the height of the image
      * @throws IllegalArgumentException if the width or height is less than or equal to zero
@@ -31,38 +101,203 @@ public class Image {
     public Image(int width, int height) {
         assert width > 0;
         assert height > 0;
+        assert (long)width * height <= Integer.MAX_VALUE;
 
-        image = new Color[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                image[y][x] = new Color(Color.BLACK);
-            }
-        }
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        this.pixels = new int[width * height];
+        this.segment = null;
+        this.arena = null;
+        this.header = null;
     }
-    
+
     /**
      * Constructs an {@code Image} object with the specified width, height, and background color.
-     * 
+     *
      * @param width the width of the image
      * @param height the height of the image
      * @param bg the background color to initialize the image with
      * @throws IllegalArgumentException if the width or height is less than or equal to zero
      */
     public Image(int width, int height, Color bg) {
+        this(width, height);
+        Arrays.fill(pixels, bg.rgb());
+    }
+
+    /**
+     * Constructs an {@code Image} object on top of an existing pixel array, without copying it.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param pixels the packed RGB pixels, stored row by row
+     */
+    private Image(int width, int height, int[] pixels) {
         assert width > 0;
         assert height > 0;
+        assert pixels.length >= width * height;
 
-        image = new Color[height][width];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                image[y][x] = new Color(bg.rgb());
-            }
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        this.pixels = pixels;
+        this.segment = null;
+        this.arena = null;
+        this.header = null;
+    }
+
+    /**
+     * Constructs an {@code Image} object on top of memory outside the heap, holding one
+     * {@link #PIXEL} per pixel, stored row by row.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param segment the memory holding the pixels
+     * @param arena the arena to close when the image is closed, or {@code null} if the
+     *        memory is released by someone else
+     * @param header the header of the raster file the pixels are mapped from, kept up to date
+     *        when the dimensions change, or {@code null} if the pixels are not in a raster file
+     */
+    Image(int width, int height, MemorySegment segment, Arena arena, MemorySegment header) {
+        assert width > 0;
+        assert height > 0;
+        assert segment.byteSize() >= (long)width * height * PIXEL.byteSize();
+
+        this.width = width;
+        this.height = height;
+        this.stride = width;
+        this.pixels = null;
+        this.segment = segment;
+        this.arena = arena;
+        this.header = header;
+    }
+
+    /**
+     * Constructs a view of a rectangle of the pixels of another image.
+     *
+     * @param parent the image whose storage is shared
+     * @param x the x-coordinate of the rectangle in the parent
+     * @param y the y-coordinate of the rectangle in the parent
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     */
+    private Image(Image parent, int x, int y, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = parent.pixels;
+        this.segment = parent.segment;
+        this.arena = null;
+        this.header = null;
+        this.offset = parent.offset + (long)y * parent.stride + x;
+        this.stride = parent.stride;
+        this.shared = true;
+
+        // A view of a view shares the storage of the same image
+        this.owner = parent.shared ? parent.owner : parent;
+        this.owner.addView(this);
+    }
+
+    /**
+     * Allocates an image of the specified width and height outside the heap, initializing the
+     * background color to black. The memory is not managed by the garbage collector: it is freed
+     * when {@link #close()} is called, after which the image must not be used anymore.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return a new off-heap {@code Image} object
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public static Image allocateOffHeap(int width, int height) {
+        Arena arena = Arena.ofShared();
+        try {
+            return allocate(width, height, arena, arena);
+        } catch (RuntimeException | Error e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Allocates an image of the specified width and height outside the heap, in memory owned by
+     * the given arena, initializing the background color to black. The memory is freed when the
+     * arena is closed, which lets many images be freed at once; closing the image itself has no
+     * effect.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param arena the arena owning the memory of the image
+     * @return a new off-heap {@code Image} object
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public static Image allocateOffHeap(int width, int height, Arena arena) {
+        return allocate(width, height, arena, null);
+    }
+
+    /**
+     * Allocates an image outside the heap.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param arena the arena to allocate the memory from
+     * @param owner the arena to close when the image is closed, or {@code null}
+     * @return a new off-heap {@code Image} object
+     */
+    private static Image allocate(int width, int height, Arena arena, Arena owner) {
+        assert width > 0;
+        assert height > 0;
+
+        MemorySegment segment = arena.allocate((long)width * height * PIXEL.byteSize(), PIXEL.byteAlignment());
+        return new Image(width, height, segment, owner, null);
+    }
+
+    /**
+     * Creates a new black image of the specified width and height, stored the same way as this
+     * one: on the heap if this image lives on the heap, and off-heap otherwise. An off-heap
+     * result owns its memory, and must be closed like an image returned by
+     * {@link #allocateOffHeap(int, int)}.
+     *
+     * @param width the width of the new image
+     * @param height the height of the new image
+     * @return a new {@code Image} object
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public Image createCompatible(int width, int height) {
+        if (pixels != null) {
+            return new Image(width, height);
         }
+        return allocateOffHeap(width, height);
+    }
+
+    /**
+     * Returns a view of a rectangle of this image. No pixels are copied until the view or this
+     * image changes; see the description of this class for how such changes are handled.
+     *
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return a new {@code Image} object sharing the pixels of the rectangle
+     * @throws IllegalArgumentException if the rectangle is empty or not inside the image
+     */
+    public Image view(int x, int y, int width, int height) {
+        assert x >= 0 && width > 0 && x + width <= this.width;
+        assert y >= 0 && height > 0 && y + height <= this.height;
+
+        return new Image(this, x, y, width, height);
+    }
+
+    /**
+     * Returns whether the pixels of the image live outside the heap.
+     *
+     * @return {@code true} if the image is stored off-heap or in a mapped raster file
+     */
+    public boolean isOffHeap() {
+        return pixels == null;
     }
 
     /**
      * Loads an image from the specified file path and returns an {@code Image} object.
-     * 
+     *
      * @param path the file path of the image to load
      * @return an {@code Image} object representing the loaded image, or {@code null} if loading failed
      */
@@ -76,16 +311,7 @@ public class Image {
         }
 
         if (bufferedImage != null) {
-            int width = bufferedImage.getWidth();
-            int height = bufferedImage.getHeight();
-            Image image = new Image(width, height);
-
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    image.setPixel(x, y, new Color(bufferedImage.getRGB(x, y)));
-                }
-            }
-            return image;
+            return fromDecoded(bufferedImage);
 
         } else {
             System.out.println("Failed to load image");
@@ -93,62 +319,487 @@ public class Image {
         }
     }
 
+    /**
+     * Creates an {@code Image} object from a freshly decoded {@code BufferedImage}. The decoded
+     * image is not shared with anyone, so its pixels are reused as is when their layout allows
+     * it, and copied otherwise.
+     *
+     * @param bufferedImage the decoded image, which must not be used afterwards
+     * @return an {@code Image} object with the same pixels as {@code bufferedImage}
+     */
+    static Image fromDecoded(BufferedImage bufferedImage) {
+        if (sharedPixels(bufferedImage) != null) {
+            return wrap(bufferedImage);
+        }
+        return fromBufferedImage(bufferedImage);
+    }
+
+    /**
+     * Creates an {@code Image} object holding a copy of the pixels of a {@code BufferedImage}.
+     * The pixels are converted in a single bulk call instead of one call per pixel. The alpha
+     * channel is dropped, so that every pixel is stored as {@code 0x00RRGGBB} whatever the type
+     * of the {@code BufferedImage}, as in the other images.
+     *
+     * @param bufferedImage the image to copy
+     * @return a new {@code Image} object with the same pixels as {@code bufferedImage}
+     */
+    public static Image fromBufferedImage(BufferedImage bufferedImage) {
+        int width = bufferedImage.getWidth();
+        int height = bufferedImage.getHeight();
+        Image image = new Image(width, height);
+
+        bufferedImage.getRGB(0, 0, width, height, image.pixels, 0, width);
+        for (int i = 0; i < image.pixels.length; i++) {
+            image.pixels[i] = image.pixels[i] & 0xffffff;
+        }
+        return image;
+    }
+
+    /**
+     * Creates an {@code Image} object that shares its pixels with a {@code BufferedImage}.
+     * No pixels are copied: changes made through either object are visible in the other.
+     * <p>
+     * This is only possible for images of type {@code BufferedImage.TYPE_INT_RGB} whose
+     * pixels are stored contiguously, which is the case for images created with the
+     * {@code BufferedImage(width, height, TYPE_INT_RGB)} constructor and for images
+     * returned by {@link #toBufferedImage()}. Use {@link #fromBufferedImage(BufferedImage)}
+     * for any other image.
+     * </p>
+     *
+     * @param bufferedImage the image whose pixels to share
+     * @return an {@code Image} object backed by the pixels of {@code bufferedImage}
+     * @throws IllegalArgumentException if the pixels of {@code bufferedImage} can not be shared
+     */
+    public static Image wrap(BufferedImage bufferedImage) {
+        int[] pixels = sharedPixels(bufferedImage);
+        if (pixels == null) {
+            throw new IllegalArgumentException("BufferedImage is not a contiguous TYPE_INT_RGB image");
+        }
+        return new Image(bufferedImage.getWidth(), bufferedImage.getHeight(), pixels);
+    }
+
+    /**
+     * Returns the pixel array of a {@code BufferedImage} if it is laid out exactly like the
+     * raster of an {@code Image}, that is packed RGB values stored row by row from index zero.
+     *
+     * @param bufferedImage the image to inspect
+     * @return the backing pixel array, or {@code null} if the layout does not match
+     */
+    private static int[] sharedPixels(BufferedImage bufferedImage) {
+        if (bufferedImage.getType() != BufferedImage.TYPE_INT_RGB) {
+            return null;
+        }
+
+        WritableRaster raster = bufferedImage.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (!(dataBuffer instanceof DataBufferInt) || dataBuffer.getNumBanks() != 1
+                || dataBuffer.getOffset() != 0) {
+            return null;
+        }
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)
+                || sampleModel.getScanlineStride() != raster.getWidth()) {
+            return null;
+        }
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return null;
+        }
+        return ((DataBufferInt) dataBuffer).getData();
+    }
+
+    /**
+     * Opens an image stored in the raster file format of {@link RasterFile}. The file is mapped
+     * into memory rather than read, so opening is nearly instant whatever the size of the file,
+     * and pixels are only loaded from disk when they are first accessed.
+     * <p>
+     * The returned image must be closed to release the mapping. When opened read-only, setting
+     * a pixel throws an exception; when opened read-write, changes are written back to the file.
+     * </p>
+     *
+     * @param path the raster file to open
+     * @param writable {@code true} to map the file read-write, {@code false} to map it read-only
+     * @return an {@code Image} object backed by the mapped file
+     * @throws IOException if the file can not be read or is not a raster file
+     */
+    public static Image openRaster(Path path, boolean writable) throws IOException {
+        return RasterFile.open(path, writable);
+    }
+
+    /**
+     * Saves the image to a file in the raster file format of {@link RasterFile}, replacing the
+     * file if it already exists. The saved file can be opened with {@link #openRaster(Path, boolean)}.
+     *
+     * @param path the raster file to write
+     * @throws IOException if the file can not be written
+     */
+    public void saveRaster(Path path) throws IOException {
+        RasterFile.save(this, path);
+    }
+
     /**
      * Returns the width of the image.
-     * 
+     *
      * @return the width of the image
      */
     public int width() {
-        return image[0].length;
+        return width;
     }
 
     /**
      * Returns the height of the image.
-     * 
+     *
      * @return the height of the image
      */
     public int height() {
-        return image.length;
+        return height;
     }
 
     /**
      * Returns the color of the pixel at the specified coordinates.
-     * 
+     * <p>
+     * The color comes from {@link Color#of(int)}, so predefined colors and grays are shared
+     * instances, and other colors are new objects; use {@link #getRGB(int, int)} when only the
+     * packed value is needed.
+     * </p>
+     *
      * @param x the x-coordinate of the pixel
      * @param y the y-coordinate of the pixel
      * @return the {@code Color} object representing the color of the specified pixel
      * @throws IllegalArgumentException if the x or y coordinate is out of bounds
      */
     public Color pixel(int x, int y) {
-        assert x >= 0 && x < image[0].length;
-        assert y >= 0 && y < image.length;
-
-        return image[y][x];
+        return Color.of(getRGB(x, y));
     }
 
     /**
-     * Returns the color of the pixel at the specified coordinates.
-     * 
+     * Sets the color of the pixel at the specified coordinates.
+     *
      * @param x the x-coordinate of the pixel
      * @param y the y-coordinate of the pixel
-     * @return the {@code Color} object representing the color of the specified pixel
+     * @param color the new color of the pixel
      * @throws IllegalArgumentException if the x or y coordinate is out of bounds
      */
     public void setPixel(int x, int y, Color color) {
-        assert x >= 0 && x < image[0].length;
-        assert y >= 0 && y < image.length;
+        setRGB(x, y, color.rgb());
+    }
 
-        image[y][x] = color;
+    /**
+     * Returns the packed RGB value of the pixel at the specified coordinates.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @return the combined RGB value of the specified pixel
+     * @throws IllegalArgumentException if the x or y coordinate is out of bounds
+     */
+    public int getRGB(int x, int y) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+
+        if (pixels != null) {
+            return pixels[(int)offset + y * stride + x];
+        }
+        return segment.getAtIndex(PIXEL, offset + (long)y * stride + x);
+    }
+
+    /**
+     * Sets the packed RGB value of the pixel at the specified coordinates.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @param rgb the combined RGB value to store
+     * @throws IllegalArgumentException if the x or y coordinate is out of bounds
+     */
+    public void setRGB(int x, int y, int rgb) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+
+        if (shared || views != null) {
+            prepareChange();
+        }
+        if (pixels != null) {
+            pixels[(int)offset + y * stride + x] = rgb;
+        } else {
+            segment.setAtIndex(PIXEL, offset + (long)y * stride + x, rgb);
+        }
+    }
+
+    /**
+     * Sets the pixels of a horizontal span of a row to the same color, with a single bulk fill
+     * for pixels on the heap.
+     *
+     * @param y the row of the span
+     * @param fromX the first x-coordinate of the span
+     * @param toX the x-coordinate after the last pixel of the span
+     * @param rgb the packed RGB color to set
+     */
+    void fillSpan(int y, int fromX, int toX, int rgb) {
+        assert y >= 0 && y < height;
+        assert fromX >= 0 && fromX <= toX && toX <= width;
+
+        if (shared || views != null) {
+            prepareChange();
+        }
+        if (pixels != null) {
+            Arrays.fill(pixels, (int)offset + y * stride + fromX, (int)offset + y * stride + toX, rgb);
+        } else {
+            for (long i = offset + (long)y * stride + fromX; i < offset + (long)y * stride + toX; i++) {
+                segment.setAtIndex(PIXEL, i, rgb);
+            }
+        }
+    }
+
+    /**
+     * Returns the packed RGB value of the pixel at the specified position of the raster,
+     * where pixels are numbered row by row starting from zero.
+     *
+     * @param index the position of the pixel
+     * @return the combined RGB value of the pixel
+     */
+    int get(long index) {
+        if (pixels != null) {
+            return pixels[(int)storageIndex(index)];
+        }
+        return segment.getAtIndex(PIXEL, storageIndex(index));
+    }
+
+    /**
+     * Sets the packed RGB value of the pixel at the specified position of the raster,
+     * where pixels are numbered row by row starting from zero.
+     *
+     * @param index the position of the pixel
+     * @param rgb the combined RGB value to store
+     */
+    void set(long index, int rgb) {
+        if (shared || views != null) {
+            prepareChange();
+        }
+        if (pixels != null) {
+            pixels[(int)storageIndex(index)] = rgb;
+        } else {
+            segment.setAtIndex(PIXEL, storageIndex(index), rgb);
+        }
+    }
+
+    /**
+     * Returns the position in the storage of the pixel at the specified position of the raster.
+     *
+     * @param index the position of the pixel, numbered row by row starting from zero
+     * @return the position of the pixel in the pixel array or segment
+     */
+    private long storageIndex(long index) {
+        if (stride == width) {
+            return offset + index;
+        }
+        return offset + (index / width) * stride + index % width;
+    }
+
+    /**
+     * Returns the backing pixel array, stored row by row with {@code width()} entries per row,
+     * for reading. Use {@link #writableRaster()} to change the pixels through the array.
+     *
+     * @return the packed RGB pixels of the image, or {@code null} if the pixels do not live
+     *         on the heap or are not stored as exactly {@code width() * height()} entries,
+     *         as in most views
+     */
+    int[] raster() {
+        return pixels != null && offset == 0 && stride == width && pixels.length == width * height ? pixels : null;
+    }
+
+    /**
+     * Returns whether this image and another one hold their pixels in the same storage, as an
+     * image and its views do.
+     *
+     * @param other the other {@code Image} object
+     * @return {@code true} if a change to the storage of one could show in the other
+     */
+    boolean sharesPixels(Image other) {
+        return pixels != null ? pixels == other.pixels : segment == other.segment;
+    }
+
+    /**
+     * Returns the backing pixel array like {@link #raster()}, first copying the pixels if they
+     * are shared, so that the array can be changed.
+     *
+     * @return the packed RGB pixels of the image, or {@code null} if the pixels do not live
+     *         on the heap
+     */
+    int[] writableRaster() {
+        ensureWritable();
+        return raster();
+    }
+
+    /**
+     * Copies the pixels of the image into storage of its own if it is a view sharing them with
+     * its parent, and the pixels of the views sharing its storage into storage of their own, so
+     * that they can be changed. The copies are otherwise made by the first change, which is not
+     * safe when several threads make their first change at once.
+     */
+    void ensureWritable() {
+        if (shared || views != null) {
+            prepareChange();
+        }
+    }
+
+    /**
+     * Returns the offset, in pixels, of the first pixel of a row in {@link #memory()}.
+     *
+     * @param y the row
+     * @return the position of the first pixel of the row
+     */
+    long rowOffset(int y) {
+        return offset + (long)y * stride;
+    }
+
+    /**
+     * Returns the storage of the pixels as memory, each pixel stored as a packed RGB value.
+     * Pixels on the heap are viewed through a segment over the pixel array; use
+     * {@link #layout()} to read or copy them, and {@link #rowOffset(int)} to find each row,
+     * since the storage of a view also holds pixels outside it.
+     *
+     * @return the memory holding the pixels
+     */
+    MemorySegment memory() {
+        return pixels != null ? MemorySegment.ofArray(pixels) : segment;
+    }
+
+    /**
+     * Returns the layout of the pixels in {@link #memory()}.
+     *
+     * @return the layout of one pixel
+     */
+    ValueLayout.OfInt layout() {
+        return pixels != null ? ValueLayout.JAVA_INT : PIXEL;
+    }
+
+    /**
+     * Releases the memory backing the image if it lives outside the heap, such as the mapping
+     * of a raster file. The image must not be used afterwards. Closing an image whose pixels
+     * live on the heap has no effect.
+     */
+    @Override
+    public void close() {
+        if (arena != null) {
+            arena.close();
+        }
+    }
+
+    /**
+     * Swaps the width and height of the image without moving any pixel, so that the raster
+     * is read as the raster of a quarter turn of the image. Only meant to be used by in-place
+     * rotations, right after they have rearranged the raster.
+     * <p>
+     * A {@code BufferedImage} sharing the pixels of this image keeps its old dimensions, while
+     * the header of a mapped raster file is updated.
+     * </p>
+     */
+    void swapDimensions() {
+        ensureWritable();
+        assert offset == 0 && stride == width;
+
+        int temp = width;
+        width = height;
+        height = temp;
+        stride = width;
+        if (header != null) {
+            RasterFile.writeDimensions(header, width, height);
+        }
+    }
+
+    /**
+     * Makes the copies needed before the pixels of the image change: its own pixels if it is a
+     * view, and the pixels of the views sharing its storage.
+     */
+    private void prepareChange() {
+        if (shared) {
+            copyShared(false);
+        }
+        if (views != null) {
+            detachViews();
+        }
+    }
+
+    /**
+     * Registers a view sharing the storage of this image, so that it is copied before this
+     * image changes. Views that were garbage collected are removed once the list grows past
+     * {@link #viewCapacity}, which keeps the list from growing with every view ever taken.
+     *
+     * @param view the new view
+     */
+    private synchronized void addView(Image view) {
+        if (views == null) {
+            views = new ArrayList<>();
+        }
+        if (views.size() >= viewCapacity) {
+            views.removeIf(reference -> reference.get() == null);
+            viewCapacity = Math.max(16, 2 * views.size());
+        }
+        views.add(new WeakReference<>(view));
+    }
+
+    /**
+     * Copies the pixels of every view still sharing the storage of this image into storage of
+     * their own, so that a change to this image does not show in them. Views registered later
+     * share the changed storage again.
+     */
+    private void detachViews() {
+        List<WeakReference<Image>> detached;
+        Image view;
+        synchronized (this) {
+            detached = views;
+            views = null;
+        }
+        if (detached == null) {
+            return;
+        }
+        for (WeakReference<Image> reference : detached) {
+            view = reference.get();
+            // A view that made its own copy no longer shares the storage
+            if (view != null && view.shared && view.owner == this) {
+                view.copyShared(true);
+            }
+        }
+    }
+
+    /**
+     * Copies the pixels of the image into storage of its own, row by row, so that changing them
+     * does not affect the parent it shares them with, nor changing the parent affect them. A heap
+     * view gets a new array. An off-heap view copied by its own change gets memory freed when the
+     * view is closed; one copied by a change to its parent gets memory freed by the garbage
+     * collector, since nothing tells its user that it needs closing. Only views share storage, and
+     * the parent is always left in place.
+     *
+     * @param detached whether the copy is made by a change to the parent
+     */
+    private void copyShared(boolean detached) {
+        if (pixels != null) {
+            int[] copy = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(pixels, (int)offset + y * stride, copy, y * width, width);
+            }
+            pixels = copy;
+        } else {
+            Arena storage = detached ? Arena.ofAuto() : Arena.ofShared();
+            MemorySegment copy = storage.allocate((long)width * height * PIXEL.byteSize(), PIXEL.byteAlignment());
+            for (int y = 0; y < height; y++) {
+                MemorySegment.copy(segment, PIXEL, rowOffset(y) * PIXEL.byteSize(),
+                                   copy, PIXEL, (long)y * width * PIXEL.byteSize(), width);
+            }
+            segment = copy;
+            arena = detached ? null : storage;
+        }
+        offset = 0;
+        stride = width;
+        shared = false;
+        owner = null;
     }
 
     /**
      * Displays the image in a new window.
      */
     public void display() {
-        BufferedImage image = createBufferedImage();
+        BufferedImage image = toBufferedImage();
         JFrame frame = new JFrame();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(this.image[0].length, this.image.length);
+        frame.setSize(width, height);
 
         JPanel panel = new JPanel() {
             protected void paintComponent(Graphics g) {
@@ -162,24 +813,39 @@ public class Image {
     }
 
     /**
-     * Creates a {@code BufferedImage} from the current pixel data.
-     * 
-     * @return a {@code BufferedImage} object representing the image
+     * Returns a {@code BufferedImage} of type {@code BufferedImage.TYPE_INT_RGB} that shares
+     * its pixels with this image. No pixels are copied: changes made through either object
+     * are visible in the other.
+     * <p>
+     * Pixels that do not live on the heap can not be shared; they are copied instead, in a
+     * single bulk copy per row. The pixels of a view of a heap image are first copied into an
+     * array of its own, which is then shared.
+     * </p>
+     *
+     * @return a {@code BufferedImage} object backed by the pixels of this image
+     * @throws IllegalArgumentException if the image has more than 2<sup>31</sup> - 1 pixels
      */
-    private BufferedImage createBufferedImage() {
-        int height = image.length;
-        int width = image[0].length;
-        BufferedImage buffImage = new BufferedImage(
+    public BufferedImage toBufferedImage() {
+        // Shared pixels are copied first, so that changes made through the BufferedImage stay in this image
+        int[] data = writableRaster();
+        if (data == null) {
+            assert (long)width * height <= Integer.MAX_VALUE;
+            data = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                MemorySegment.copy(segment, PIXEL, rowOffset(y) * PIXEL.byteSize(), data, y * width, width);
+            }
+        }
+
+        DataBufferInt dataBuffer = new DataBufferInt(data, width * height);
+        DirectColorModel colorModel = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+        WritableRaster raster = Raster.createPackedRaster(
+            dataBuffer,
             width,
             height,
-            BufferedImage.TYPE_INT_RGB
+            width,
+            colorModel.getMasks(),
+            null
         );
-
-        for (int y = 0; y < height; y++) {
-            for(int x = 0; x < width; x++) {
-                buffImage.setRGB(x, y, this.image[y][x].rgb());
-            }
-        }
-        return buffImage;
+        return new BufferedImage(colorModel, raster, false, null);
     }
 }
@@ -1,3 +1,12 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
 /**
  * ImageCoder is a utility class that provides methods to encrypt and decrypt images
  * using a simple algorithm based on pixel color manipulation and a provided key string.
@@ -19,9 +28,28 @@
  * Note: Both methods rely on the key string and the image's current pixel values to determine 
  * the final pixel colors. The key is repeated as necessary if it's shorter than the image size.
  * </p>
+ * <p>
+ * Both methods also accept a {@link RowBands} argument to process the rows in parallel. Each
+ * encrypted channel value is the sum, modulo 256, of every plain value and key character up to
+ * that pixel, so encryption is a prefix sum: the sums of the rows are computed in parallel, added
+ * up in order to find the value each row continues from, and the rows are then encrypted in
+ * parallel. Each decrypted value only depends on the encrypted value of the pixel and of the
+ * pixel before it, so decryption needs no such scan. The result is identical to the one computed
+ * one pixel at a time.
+ * </p>
+ * <p>
+ * {@link #encrypt(ReadableByteChannel, WritableByteChannel, String)} and
+ * {@link #decrypt(ReadableByteChannel, WritableByteChannel, String)} apply the same algorithms to
+ * an image stored in the {@link RasterFile} format, reading it from one channel and writing the
+ * result to another, one chunk of {@link #CHUNK_SIZE} bytes at a time. The image is never held in
+ * memory as a whole, so their memory use does not depend on its size.
+ * </p>
  */
 public class ImageCoder {
 
+    /** The number of bytes read, coded and written at a time when streaming a raster file. */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
     /**
      * Encrypts an image using given key.
      * The encryption modifies the RGB values of each pixel based on the previous pixel's color,
@@ -45,7 +73,7 @@ public class ImageCoder {
      * Note: The image is encrypted in place, meaning that the original image is overwritten by the encrypted one.
      */
     public static void encrypt(Image image, String key) {
-        Color color, encryptedcColor;
+        int color, encryptedColor;
         int keyChar;
         int keyIndex = 0;
 
@@ -61,30 +89,113 @@ public class ImageCoder {
             for (int x = 0; x < width; x++) {
 
                 // Getting pixel
-                color = image.pixel(x, y);
-                red = color.red();
-                green = color.green();
-                blue = color.blue();
+                color = image.getRGB(x, y);
+                red = Color.red(color);
+                green = Color.green(color);
+                blue = Color.blue(color);
 
-                keyChar = key.charAt(keyIndex % key.length());
+                keyChar = key.charAt(keyIndex);
                 
                 // Encrypting colors
                 red = (red + prevRed + keyChar) % 256;
                 green = (green + prevGreen + keyChar) % 256;
                 blue = (blue + prevBlue + keyChar) % 256;
 
-                encryptedcColor = new Color(red, green, blue);
-                image.setPixel(x, y, encryptedcColor);
+                encryptedColor = Color.pack(red, green, blue);
+                image.setRGB(x, y, encryptedColor);
 
                 prevRed = red;
                 prevGreen = green;
                 prevBlue = blue;
 
-                keyIndex++;
+                keyIndex = (keyIndex + 1) % key.length();
             }
         }
     }
 
+    /**
+     * Encrypts an image using given key, processing its rows as decided by {@code bands}.
+     * The result is identical to the one of {@link #encrypt(Image, String)}.
+     *
+     * @param image the image to be encrypted.
+     * @param key the string to be used as the encryption key.
+     * @param bands decides how the rows are processed.
+     *
+     * @throws NullPointerException If the image or key is null.
+     * @throws StringIndexOutOfBoundsException If the key string is empty.
+     */
+    public static void encrypt(Image image, String key, RowBands bands) {
+        if (!bands.isParallel()) {
+            encrypt(image, key);
+            return;
+        }
+
+        int width = image.width();
+        int height = image.height();
+        int keyLength = key.length();
+        // Shared pixels are copied here, before the bands start changing them
+        image.ensureWritable();
+
+        // First pass: the sum of the plain values and key characters of each row
+        int[] rowSums = new int[height];
+        bands.forEach(height, (fromRow, toRow) -> {
+            int color, keyChar, keyIndex;
+            int red, green, blue;
+            for (int y = fromRow; y < toRow; y++) {
+                keyIndex = (int)((long)y*width % keyLength);
+                red = 0;
+                green = 0;
+                blue = 0;
+                for (int x = 0; x < width; x++) {
+                    color = image.getRGB(x, y);
+                    keyChar = key.charAt(keyIndex);
+                    red = (red + Color.red(color) + keyChar) % 256;
+                    green = (green + Color.green(color) + keyChar) % 256;
+                    blue = (blue + Color.blue(color) + keyChar) % 256;
+                    keyIndex = (keyIndex + 1) % keyLength;
+                }
+                rowSums[y] = Color.pack(red, green, blue);
+            }
+        });
+
+        // Scan: the encrypted value of the pixel before each row is the sum of all previous rows
+        int[] rowStarts = new int[height];
+        int sum = 0;
+        for (int y = 0; y < height; y++) {
+            rowStarts[y] = sum;
+            sum = Color.pack(Color.red(sum) + Color.red(rowSums[y]),
+                             Color.green(sum) + Color.green(rowSums[y]),
+                             Color.blue(sum) + Color.blue(rowSums[y]));
+        }
+
+        // Second pass: encrypt each row starting from its scanned value
+        bands.forEach(height, (fromRow, toRow) -> {
+            int color, keyChar, keyIndex;
+            int red, green, blue;
+            int prevRed, prevGreen, prevBlue;
+            for (int y = fromRow; y < toRow; y++) {
+                keyIndex = (int)((long)y*width % keyLength);
+                prevRed = Color.red(rowStarts[y]);
+                prevGreen = Color.green(rowStarts[y]);
+                prevBlue = Color.blue(rowStarts[y]);
+                for (int x = 0; x < width; x++) {
+                    color = image.getRGB(x, y);
+                    keyChar = key.charAt(keyIndex);
+
+                    red = (Color.red(color) + prevRed + keyChar) % 256;
+                    green = (Color.green(color) + prevGreen + keyChar) % 256;
+                    blue = (Color.blue(color) + prevBlue + keyChar) % 256;
+                    image.setRGB(x, y, Color.pack(red, green, blue));
+
+                    prevRed = red;
+                    prevGreen = green;
+                    prevBlue = blue;
+                    keyIndex = (keyIndex + 1) % keyLength;
+                }
+            }
+        });
+    }
+
     /**
      * Decrypts an image using given key.
      * The decryption modifies the RGB values of each pixel based on the previous pixel's color,
@@ -108,7 +219,7 @@ public class ImageCoder {
      * Note: The image is decrypted in place, meaning that the encrypted image is overwritten by the decrypted one.
      */
     public static void decrypt(Image image, String key) {
-        Color color, decryptedcColor;
+        int color, decryptedColor;
         int keyChar;
         int keyIndex = 0;
 
@@ -125,27 +236,225 @@ public class ImageCoder {
             for (int x = 0; x < width; x++) {
 
                 // Getting pixel
-                color = image.pixel(x, y);
-                red = color.red();
-                green = color.green();
-                blue = color.blue();
+                color = image.getRGB(x, y);
+                red = Color.red(color);
+                green = Color.green(color);
+                blue = Color.blue(color);
 
-                keyChar = key.charAt(keyIndex % key.length());
+                keyChar = key.charAt(keyIndex);
                 
                 // Decrypting pixel
                 decryptedRed = (red - prevRed - keyChar + 256) % 256;
                 decryptedGreen = (green - prevGreen - keyChar + 256) % 256;
                 decryptedBlue = (blue - prevBlue - keyChar + 256) % 256;
 
-                decryptedcColor = new Color(decryptedRed, decryptedGreen, decryptedBlue);
-                image.setPixel(x, y, decryptedcColor);
+                decryptedColor = Color.pack(decryptedRed, decryptedGreen, decryptedBlue);
+                image.setRGB(x, y, decryptedColor);
 
                 prevRed = red;
                 prevGreen = green;
                 prevBlue = blue;
 
-                keyIndex++;
+                keyIndex = (keyIndex + 1) % key.length();
+            }
+        }
+    }
+
+    /**
+     * Decrypts an image using given key, processing its rows as decided by {@code bands}.
+     * The result is identical to the one of {@link #decrypt(Image, String)}.
+     *
+     * @param image the image to be decrypted.
+     * @param key the string to be used as the decryption key.
+     * @param bands decides how the rows are processed.
+     *
+     * @throws NullPointerException If the image or key is null.
+     * @throws StringIndexOutOfBoundsException If the key string is empty.
+     */
+    public static void decrypt(Image image, String key, RowBands bands) {
+        if (!bands.isParallel()) {
+            decrypt(image, key);
+            return;
+        }
+
+        int width = image.width();
+        int height = image.height();
+        int keyLength = key.length();
+        // Shared pixels are copied here, before the bands start changing them
+        image.ensureWritable();
+
+        // The last pixel of each row is saved first, since the band decrypting it may
+        // overwrite it before the next row is decrypted
+        int[] rowEnds = new int[height];
+        for (int y = 0; y < height; y++) {
+            rowEnds[y] = image.getRGB(width-1, y);
+        }
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            int color, keyChar, keyIndex;
+            int red, green, blue;
+            int prevRed, prevGreen, prevBlue;
+            for (int y = fromRow; y < toRow; y++) {
+                keyIndex = (int)((long)y*width % keyLength);
+                prevRed = y == 0 ? 0 : Color.red(rowEnds[y-1]);
+                prevGreen = y == 0 ? 0 : Color.green(rowEnds[y-1]);
+                prevBlue = y == 0 ? 0 : Color.blue(rowEnds[y-1]);
+                for (int x = 0; x < width; x++) {
+                    color = image.getRGB(x, y);
+                    red = Color.red(color);
+                    green = Color.green(color);
+                    blue = Color.blue(color);
+                    keyChar = key.charAt(keyIndex);
+
+                    image.setRGB(x, y, Color.pack((red - prevRed - keyChar + 256) % 256,
+                                                  (green - prevGreen - keyChar + 256) % 256,
+                                                  (blue - prevBlue - keyChar + 256) % 256));
+
+                    prevRed = red;
+                    prevGreen = green;
+                    prevBlue = blue;
+                    keyIndex = (keyIndex + 1) % keyLength;
+                }
+            }
+        });
+    }
+
+    /**
+     * Encrypts a raster file using given key, streaming it from one file to another.
+     *
+     * @param input the raster file to encrypt.
+     * @param output the raster file the encrypted image is written to, replaced if it exists.
+     * @param key the string to be used as the encryption key.
+     *
+     * @throws IOException If a file can not be read or written, or the input is not a raster file.
+     * @throws StringIndexOutOfBoundsException If the key string is empty.
+     */
+    public static void encrypt(Path input, Path output, String key) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            encrypt(in, out, key);
+        }
+    }
+
+    /**
+     * Decrypts a raster file using given key, streaming it from one file to another.
+     *
+     * @param input the raster file to decrypt.
+     * @param output the raster file the decrypted image is written to, replaced if it exists.
+     * @param key the string to be used as the decryption key.
+     *
+     * @throws IOException If a file can not be read or written, or the input is not a raster file.
+     * @throws StringIndexOutOfBoundsException If the key string is empty.
+     */
+    public static void decrypt(Path input, Path output, String key) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            decrypt(in, out, key);
+        }
+    }
+
+    /**
+     * Encrypts an image in the {@link RasterFile} format read from a channel, and writes the
+     * encrypted image in the same format to another channel. The result is identical to
+     * encrypting the whole image with {@link #encrypt(Image, String)}.
+     *
+     * @param in the channel the raster file is read from.
+     * @param out the channel the encrypted raster file is written to.
+     * @param key the string to be used as the encryption key.
+     *
+     * @throws IOException If a channel can not be read or written, or the input is not a raster file.
+     * @throws StringIndexOutOfBoundsException If the key string is empty.
+     */
+    public static void encrypt(ReadableByteChannel in, WritableByteChannel out, String key) throws IOException {
+        stream(in, out, key, true);
+    }
+
+    /**
+     * Decrypts an image in the {@link RasterFile} format read from a channel, and writes the
+     * decrypted image in the same format to another channel. The result is identical to
+     * decrypting the whole image with {@link #decrypt(Image, String)}.
+     *
+     * @param in the channel the raster file is read from.
+     * @param out the channel the decrypted raster file is written to.
+     * @param key the string to be used as the decryption key.
+     *
+     * @throws IOException If a channel can not be read or written, or the input is not a raster file.
+     * @throws StringIndexOutOfBoundsException If the key string is empty.
+     */
+    public static void decrypt(ReadableByteChannel in, WritableByteChannel out, String key) throws IOException {
+        stream(in, out, key, false);
+    }
+
+    /**
+     * Streams a raster file from one channel to another, encrypting or decrypting its pixels one
+     * chunk at a time. The previous pixel and the key index carry over from one chunk to the next.
+     *
+     * @param in the channel the raster file is read from
+     * @param out the channel the result is written to
+     * @param key the string to be used as the key
+     * @param encrypt {@code true} to encrypt, {@code false} to decrypt
+     * @throws IOException if a channel can not be read or written, or the input is not a raster file
+     */
+    private static void stream(ReadableByteChannel in, WritableByteChannel out, String key, boolean encrypt) throws IOException {
+        int[] dimensions = RasterFile.readHeader(in);
+        RasterFile.writeHeader(out, dimensions[0], dimensions[1]);
+
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long remaining = (long)dimensions[0] * dimensions[1] * Integer.BYTES;
+        int color, keyChar;
+        int keyIndex = 0;
+        int red, green, blue;
+        int newRed, newGreen, newBlue;
+        int prevRed = 0;
+        int prevGreen = 0;
+        int prevBlue = 0;
+
+        while (remaining > 0) {
+            chunk.clear().limit((int)Math.min(CHUNK_SIZE, remaining));
+            while (chunk.hasRemaining()) {
+                if (in.read(chunk) < 0) {
+                    throw new IOException("Stream ends before the last pixel of the raster file");
+                }
+            }
+            chunk.flip();
+
+            for (int i = 0; i < chunk.limit(); i = i + Integer.BYTES) {
+                color = chunk.getInt(i);
+                red = Color.red(color);
+                green = Color.green(color);
+                blue = Color.blue(color);
+
+                keyChar = key.charAt(keyIndex);
+
+                if (encrypt) {
+                    newRed = (red + prevRed + keyChar) % 256;
+                    newGreen = (green + prevGreen + keyChar) % 256;
+                    newBlue = (blue + prevBlue + keyChar) % 256;
+
+                    // The next pixel is chained to the encrypted value
+                    prevRed = newRed;
+                    prevGreen = newGreen;
+                    prevBlue = newBlue;
+                } else {
+                    newRed = (red - prevRed - keyChar + 256) % 256;
+                    newGreen = (green - prevGreen - keyChar + 256) % 256;
+                    newBlue = (blue - prevBlue - keyChar + 256) % 256;
+
+                    prevRed = red;
+                    prevGreen = green;
+                    prevBlue = blue;
+                }
+                chunk.putInt(i, Color.pack(newRed, newGreen, newBlue));
+
+                keyIndex = (keyIndex + 1) % key.length();
+            }
+
+            while (chunk.hasRemaining()) {
+                out.write(chunk);
             }
+            remaining = remaining - chunk.limit();
         }
     }
 }
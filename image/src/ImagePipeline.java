@@ -0,0 +1,324 @@
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The {@code ImagePipeline} class records a chain of {@link ImageUtils} operations and applies
+ * them all in a single pass over the source image.
+ * <p>
+ * Chaining calls such as {@code ImageUtils.rotateLeft(ImageUtils.flipHorizontal(image))} allocates
+ * and fills a full intermediate image for every call. A pipeline instead keeps track of two things:
+ * </p>
+ * <ul>
+ *     <li>where each pixel of the result comes from in the source image. Flips, rotations, crops
+ *     and stretches are all composed into one coordinate mapping.</li>
+ *     <li>how the color of each pixel changes. Channel switches, grayscale conversions and custom
+ *     color functions are composed into one function.</li>
+ * </ul>
+ * <p>
+ * Nothing is computed until {@link #toImage()} is called, which allocates the result once and
+ * visits every result pixel exactly once. The result is identical to the one produced by the
+ * equivalent chain of {@code ImageUtils} calls.
+ * </p>
+ * <pre>
+ * Image result = new ImagePipeline(image)
+ *     .grayscaleLuminosity()
+ *     .flipHorizontal()
+ *     .rotateLeft()
+ *     .toImage();
+ * </pre>
+ */
+public class ImagePipeline {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+
+    private final Image source;
+    private int width;
+    private int height;
+
+    /*
+     * The source coordinate along axis i of the result pixel (x, y) is
+     *     (sign[i] * (axis[i] == X ? x : y) + offset[i]) >> shift[i]
+     * Flips, rotations and crops only permute, negate and translate coordinates, and a stretch
+     * only adds a shift, so every chain of operations keeps this form.
+     */
+    private final int[] axis = {X, Y};
+    private final int[] sign = {1, 1};
+    private final int[] offset = {0, 0};
+    private final int[] shift = {0, 0};
+
+    private IntUnaryOperator color = null;
+
+    /**
+     * Constructs an {@code ImagePipeline} without any operations on the given source image.
+     *
+     * @param source the image the operations are applied to
+     */
+    public ImagePipeline(Image source) {
+        this.source = source;
+        this.width = source.width();
+        this.height = source.height();
+    }
+
+    /**
+     * Returns the width of the image produced by the recorded operations.
+     *
+     * @return the width of the result
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image produced by the recorded operations.
+     *
+     * @return the height of the result
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Records a horizontal flip, as done by {@link ImageUtils#flipHorizontal(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline flipHorizontal() {
+        return remap(X, 1, 0, Y, -1, height-1, width, height);
+    }
+
+    /**
+     * Records a vertical flip, as done by {@link ImageUtils#flipVirtical(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline flipVirtical() {
+        return remap(X, -1, width-1, Y, 1, 0, width, height);
+    }
+
+    /**
+     * Records a 90 degree rotation, as done by {@link ImageUtils#rotateLeft(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline rotateLeft() {
+        return remap(Y, 1, 0, X, -1, height-1, height, width);
+    }
+
+    /**
+     * Records a 90 degree rotation, as done by {@link ImageUtils#rotateRight(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline rotateRight() {
+        return remap(Y, -1, width-1, X, 1, 0, height, width);
+    }
+
+    /**
+     * Records a 180 degree rotation, as done by {@link ImageUtils#rotateHalf(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline rotateHalf() {
+        return remap(X, -1, width-1, Y, -1, height-1, width, height);
+    }
+
+    /**
+     * Records a crop, as done by {@link ImageUtils#crop(Image, int, int, int, int)}.
+     *
+     * @param x the starting x-coordinate of the cropping region
+     * @param y the starting y-coordinate of the cropping region
+     * @param width the width of the cropping region
+     * @param height the height of the cropping region
+     * @return this pipeline
+     * @throws IllegalArgumentException if the cropping parameters are invalid
+     */
+    public ImagePipeline crop(int x, int y, int width, int height) {
+        assert x >= 0 && x < this.width;
+        assert y >= 0 && y < this.height;
+        assert width > 0 && width < this.width - x;
+        assert height > 0 && height < this.height - y;
+
+        return remap(X, 1, x, Y, 1, y, width, height);
+    }
+
+    /**
+     * Records a horizontal stretch, as done by {@link ImageUtils#strechHorizontal(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline strechHorizontal() {
+        stretch(X);
+        width = width*2;
+        return this;
+    }
+
+    /**
+     * Records a vertical stretch, as done by {@link ImageUtils#strechVertical(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline strechVertical() {
+        stretch(Y);
+        height = height*2;
+        return this;
+    }
+
+    /**
+     * Records a switch of the red and green channels, as done by {@link ImageUtils#switchRedGreen(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline switchRedGreen() {
+        return map(PixelOps::switchRedGreen);
+    }
+
+    /**
+     * Records a switch of the red and blue channels, as done by {@link ImageUtils#switchRedBlue(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline switchRedBlue() {
+        return map(PixelOps::switchRedBlue);
+    }
+
+    /**
+     * Records a switch of the green and blue channels, as done by {@link ImageUtils#switchGreenBlue(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline switchGreenBlue() {
+        return map(PixelOps::switchGreenBlue);
+    }
+
+    /**
+     * Records a grayscale conversion, as done by {@link ImageUtils#grayscaleAverage(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline grayscaleAverage() {
+        return map(PixelOps::grayscaleAverage);
+    }
+
+    /**
+     * Records a grayscale conversion, as done by {@link ImageUtils#grayscaleLightness(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline grayscaleLightness() {
+        return map(PixelOps::grayscaleLightness);
+    }
+
+    /**
+     * Records a grayscale conversion, as done by {@link ImageUtils#grayscaleLuminosity(Image)}.
+     *
+     * @return this pipeline
+     */
+    public ImagePipeline grayscaleLuminosity() {
+        return map(PixelOps::grayscaleLuminosity);
+    }
+
+    /**
+     * Records a custom color operation. The operation receives the packed RGB value of a pixel
+     * and returns its new packed RGB value; it must not depend on the position of the pixel.
+     *
+     * @param operation the color operation
+     * @return this pipeline
+     */
+    public ImagePipeline map(IntUnaryOperator operation) {
+        color = color == null ? operation : color.andThen(operation);
+        return this;
+    }
+
+    /**
+     * Applies the recorded operations to the source image.
+     *
+     * @return a new {@code Image} object holding the result
+     */
+    public Image toImage() {
+        return toImage(RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Applies the recorded operations to the source image, processing the rows of the result
+     * as decided by {@code bands}.
+     *
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the result
+     */
+    public Image toImage(RowBands bands) {
+        int width = this.width;
+        Image newImage = source.createCompatible(width, this.height);
+        IntUnaryOperator color = this.color == null ? IntUnaryOperator.identity() : this.color;
+
+        // Copied so that recording more operations does not affect a running pass
+        int axisX = axis[X], signX = sign[X], offsetX = offset[X], shiftX = shift[X];
+        int axisY = axis[Y], signY = sign[Y], offsetY = offset[Y], shiftY = shift[Y];
+
+        bands.forEach(this.height, (fromRow, toRow) -> {
+            int u, v, stepU, stepV;
+            for (int y = fromRow; y < toRow; y++) {
+                // u and v are the source coordinates before shifting, and move by a
+                // constant step from one result pixel to the next
+                u = axisX == X ? offsetX : signX*y + offsetX;
+                v = axisY == X ? offsetY : signY*y + offsetY;
+                stepU = axisX == X ? signX : 0;
+                stepV = axisY == X ? signY : 0;
+                for (int x = 0; x < width; x++) {
+                    newImage.setRGB(x, y, color.applyAsInt(source.getRGB(u >> shiftX, v >> shiftY)));
+                    u = u + stepU;
+                    v = v + stepV;
+                }
+            }
+        });
+        return newImage;
+    }
+
+    /**
+     * Composes the current mapping with an operation mapping each new result coordinate to
+     * a coordinate of the current result.
+     *
+     * @param axisX the new axis the current x-coordinate is read from
+     * @param signX the sign applied to that axis
+     * @param offsetX the offset added to the current x-coordinate
+     * @param axisY the new axis the current y-coordinate is read from
+     * @param signY the sign applied to that axis
+     * @param offsetY the offset added to the current y-coordinate
+     * @param newWidth the width of the result after the operation
+     * @param newHeight the height of the result after the operation
+     * @return this pipeline
+     */
+    private ImagePipeline remap(int axisX, int signX, int offsetX,
+                                int axisY, int signY, int offsetY,
+                                int newWidth, int newHeight) {
+        int[] opAxis = {axisX, axisY};
+        int[] opSign = {signX, signY};
+        int[] opOffset = {offsetX, offsetY};
+
+        for (int i = X; i <= Y; i++) {
+            int current = axis[i];
+            offset[i] = sign[i]*opOffset[current] + offset[i];
+            sign[i] = sign[i]*opSign[current];
+            axis[i] = opAxis[current];
+        }
+        width = newWidth;
+        height = newHeight;
+        return this;
+    }
+
+    /**
+     * Composes the current mapping with halving the given axis of the new result coordinates.
+     * Since {@code s*(c >> 1) + o} equals {@code (s*c + 2*o) >> 1} when {@code s} is one and
+     * {@code (s*c + 2*o + 1) >> 1} when {@code s} is minus one, the halving becomes one more
+     * shift of the source coordinate.
+     *
+     * @param stretched the axis being halved
+     */
+    private void stretch(int stretched) {
+        for (int i = X; i <= Y; i++) {
+            if (axis[i] == stretched) {
+                offset[i] = sign[i] > 0 ? 2*offset[i] : 2*offset[i] + 1;
+                shift[i]++;
+            }
+        }
+    }
+}
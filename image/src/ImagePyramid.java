@@ -0,0 +1,240 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code ImagePyramid} class serves an image at successive half resolutions, for example to
+ * display it at several zoom levels.
+ * <p>
+ * Level 0 is the source image, and every following level is half as wide and half as high as the
+ * one before, down to a single pixel. Each pixel of a level is the average color of the 2x2 block
+ * of pixels it covers in the level before; when a dimension is odd, the last row or column is
+ * dropped. A level is computed from the previous level rather than from the source, so the cost of
+ * a level is proportional to the size of the level it is computed from, and the rows of a level are
+ * computed as decided by a {@link RowBands} argument.
+ * </p>
+ * <p>
+ * Levels are computed the first time they are asked for, together with any missing level between
+ * them and the nearest level already computed, and are kept in a cache bounded by a number of
+ * bytes. When the cache is full, the least recently used levels are dropped and computed again if
+ * they are asked for later. Levels are heap images, so a level handed out stays valid after it has
+ * been dropped from the cache. The cached levels must not be modified.
+ * </p>
+ * <p>
+ * The methods of this class are synchronized: concurrent requests wait for each other, and a level
+ * is never computed twice at the same time.
+ * </p>
+ */
+public class ImagePyramid {
+
+    /** The default size of the cache, in bytes. */
+    public static final long DEFAULT_CACHE_BYTES = 256L * 1024 * 1024;
+
+    private final Image source;
+    private final long maxCacheBytes;
+    private final RowBands bands;
+    private final int levels;
+    private final LinkedHashMap<Integer, Image> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructs an {@code ImagePyramid} object over the given image, with the default cache size,
+     * computing levels sequentially.
+     *
+     * @param source the image at full resolution
+     */
+    public ImagePyramid(Image source) {
+        this(source, DEFAULT_CACHE_BYTES, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Constructs an {@code ImagePyramid} object over the given image.
+     *
+     * @param source the image at full resolution
+     * @param maxCacheBytes the maximum number of bytes taken by the cached levels
+     * @param bands decides how the rows of each level are computed
+     * @throws IllegalArgumentException if the cache size is negative
+     */
+    public ImagePyramid(Image source, long maxCacheBytes, RowBands bands) {
+        assert maxCacheBytes >= 0;
+
+        this.source = source;
+        this.maxCacheBytes = maxCacheBytes;
+        this.bands = bands;
+
+        int levels = 1;
+        for (int size = Math.max(source.width(), source.height()); size > 1; size = size / 2) {
+            levels++;
+        }
+        this.levels = levels;
+    }
+
+    /**
+     * Returns the number of levels, including the source image.
+     *
+     * @return the number of levels
+     */
+    public int levels() {
+        return levels;
+    }
+
+    /**
+     * Returns the width of a level.
+     *
+     * @param level the level, from {@code 0} to {@code levels()-1}
+     * @return the width of the level
+     * @throws IllegalArgumentException if the level does not exist
+     */
+    public int width(int level) {
+        assert level >= 0 && level < levels;
+
+        return Math.max(1, source.width() >> level);
+    }
+
+    /**
+     * Returns the height of a level.
+     *
+     * @param level the level, from {@code 0} to {@code levels()-1}
+     * @return the height of the level
+     * @throws IllegalArgumentException if the level does not exist
+     */
+    public int height(int level) {
+        assert level >= 0 && level < levels;
+
+        return Math.max(1, source.height() >> level);
+    }
+
+    /**
+     * Returns a level of the pyramid, computing it and the levels above it as needed.
+     *
+     * @param level the level, from {@code 0} for the source image to {@code levels()-1}
+     * @return the image at the level, which must not be modified
+     * @throws IllegalArgumentException if the level does not exist
+     */
+    public synchronized Image level(int level) {
+        assert level >= 0 && level < levels;
+
+        if (level == 0) {
+            return source;
+        }
+        Image image = cache.get(level);
+        if (image != null) {
+            hits++;
+            return image;
+        }
+        misses++;
+
+        // Start from the nearest level already computed
+        int from = level - 1;
+        while (from > 0 && !cache.containsKey(from)) {
+            from--;
+        }
+        image = from == 0 ? source : cache.get(from);
+        for (int next = from + 1; next <= level; next++) {
+            image = halve(image);
+            store(next, image);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the level whose width is closest to, but not less than, the given width, falling
+     * back to the smallest level.
+     *
+     * @param width the width the image will be displayed at
+     * @return the image at the chosen level, which must not be modified
+     */
+    public Image levelForWidth(int width) {
+        int level = 0;
+        while (level + 1 < levels && width(level + 1) >= width) {
+            level++;
+        }
+        return level(level);
+    }
+
+    /**
+     * Returns the number of bytes taken by the cached levels.
+     *
+     * @return the size of the cache in bytes
+     */
+    public synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long cacheHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests that had to compute their level.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long cacheMisses() {
+        return misses;
+    }
+
+    /**
+     * Adds a level to the cache, dropping the least recently used levels until it fits. A level
+     * larger than the whole cache is not kept.
+     *
+     * @param level the level
+     * @param image the image at the level
+     */
+    private void store(int level, Image image) {
+        long bytes = (long)image.width() * image.height() * Integer.BYTES;
+        if (bytes > maxCacheBytes) {
+            return;
+        }
+
+        Map.Entry<Integer, Image> eldest;
+        while (cachedBytes + bytes > maxCacheBytes) {
+            eldest = cache.entrySet().iterator().next();
+            cachedBytes = cachedBytes - (long)eldest.getValue().width() * eldest.getValue().height() * Integer.BYTES;
+            cache.remove(eldest.getKey());
+        }
+        cache.put(level, image);
+        cachedBytes = cachedBytes + bytes;
+    }
+
+    /**
+     * Computes the next level from a level, averaging each 2x2 block of pixels.
+     *
+     * @param image the level to halve
+     * @return a new heap {@code Image} object half as wide and half as high
+     */
+    private Image halve(Image image) {
+        int width = Math.max(1, image.width() / 2);
+        int height = Math.max(1, image.height() / 2);
+        // A dimension of one pixel is not halved, so its blocks only have one pixel along it
+        int stepX = image.width() > 1 ? 1 : 0;
+        int stepY = image.height() > 1 ? 1 : 0;
+        Image newImage = new Image(width, height);
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            int topLeft, topRight, bottomLeft, bottomRight;
+            int red, green, blue;
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    topLeft = image.getRGB(2*x, 2*y);
+                    topRight = image.getRGB(2*x + stepX, 2*y);
+                    bottomLeft = image.getRGB(2*x, 2*y + stepY);
+                    bottomRight = image.getRGB(2*x + stepX, 2*y + stepY);
+
+                    red = (Color.red(topLeft) + Color.red(topRight) + Color.red(bottomLeft) + Color.red(bottomRight))/4;
+                    green = (Color.green(topLeft) + Color.green(topRight) + Color.green(bottomLeft) + Color.green(bottomRight))/4;
+                    blue = (Color.blue(topLeft) + Color.blue(topRight) + Color.blue(bottomLeft) + Color.blue(bottomRight))/4;
+                    newImage.setRGB(x, y, Color.pack(red, green, blue));
+                }
+            }
+        });
+        return newImage;
+    }
+}
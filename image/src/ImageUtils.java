@@ -1,153 +1,360 @@
-import java.lang.Math;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
 
 /**
  * The {@code ImageUtils} class provides a collection of static utility methods for manipulating images.
  * These methods allow for various transformations and operations such as flipping, rotating, stretching,
- * cropping, and color manipulation. The operations are performed on an {@code Image} object, and a new 
+ * cropping, and color manipulation. The operations are performed on an {@code Image} object, and a new
  * image is returned with the applied transformation or manipulation.
+ * <p>
+ * Every operation also accepts a {@link RowBands} argument deciding how the rows of the image are
+ * processed. Passing {@code RowBands.parallel()} spreads the work over the common {@code ForkJoinPool};
+ * the result is identical to the one computed sequentially.
+ * </p>
+ * <p>
+ * New images are created with {@link Image#createCompatible(int, int)}, so an operation on an
+ * off-heap image returns an off-heap image, which must be closed by the caller.
+ * </p>
  */
 public class ImageUtils {
 
+    /**
+     * The default width and height, in pixels, of the tiles used by {@link #rotateLeft(Image)}
+     * and {@link #rotateRight(Image)}. A source tile and a result tile of 64x64 pixels take
+     * 32 KB together, which fits in the first level cache of most processors.
+     */
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    /**
+     * The number of result rows {@link #resize(Image, int, int, ResizeFilter, RowBands)} computes
+     * from each pass along the rows.
+     */
+    public static final int RESIZE_STRIP_ROWS = 32;
+
+    /**
+     * The number of fractional bits {@link #resize(Image, int, int, ResizeFilter, RowBands)} keeps
+     * in each channel between its two passes. With the {@link WeightTable#PRECISION} bits of the
+     * weights, the sums of the second pass stay below 2<sup>30</sup> for every filter.
+     */
+    public static final int RESIZE_EXTRA_BITS = 6;
+
+    // The shifts and rounding terms of the two passes of a resize
+    private static final int ROW_SHIFT = WeightTable.PRECISION - RESIZE_EXTRA_BITS;
+    private static final int ROW_HALF = 1 << (ROW_SHIFT - 1);
+    private static final int RESIZE_SHIFT = WeightTable.PRECISION + RESIZE_EXTRA_BITS;
+    private static final int RESIZE_HALF = 1 << (RESIZE_SHIFT - 1);
+
     /**
      * Flips the given image horizontally.
-     * 
+     *
      * @param image the {@code Image} object to flip
      * @return a new {@code Image} object that is flipped horizontally
      */
     public static Image flipHorizontal(Image image) {
+        return flipHorizontal(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Flips the given image horizontally, processing its rows as decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to flip
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object that is flipped horizontally
+     */
+    public static Image flipHorizontal(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        Image newImage = new Image(width, height);
+        Image newImage = image.createCompatible(width, height);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newImage.setPixel(x,y, image.pixel(x, height-1-y));
+        bands.forEach(height, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    newImage.setRGB(x, y, image.getRGB(x, height-1-y));
+                }
             }
-        }
+        });
         return newImage;
     }
 
     /**
      * Flips the given image vertically.
-     * 
+     *
      * @param image the {@code Image} object to flip
      * @return a new {@code Image} object that is flipped vertically
      */
     public static Image flipVirtical(Image image) {
+        return flipVirtical(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Flips the given image vertically, processing its rows as decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to flip
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object that is flipped vertically
+     */
+    public static Image flipVirtical(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        Image newImage = new Image(width, height);
+        Image newImage = image.createCompatible(width, height);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newImage.setPixel(x,y, image.pixel(width-1-x, y));
+        bands.forEach(height, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    newImage.setRGB(x, y, image.getRGB(width-1-x, y));
+                }
             }
-        }
+        });
         return newImage;
     }
 
     /**
      * Rotates the given image 90 degrees counterclockwise (left).
-     * 
+     * <p>
+     * The result is a second raster as large as the image. When memory is tighter than time,
+     * {@link ImageUtilsSE#rotateLeft(Image)} rotates the image in-place instead; its documentation
+     * compares the cost of both.
+     * </p>
+     *
      * @param image the {@code Image} object to rotate
      * @return a new {@code Image} object rotated 90 degrees counterclockwise
      */
     public static Image rotateLeft(Image image) {
-        int width = image.width();
-        int height = image.height();
-        Image newImage = new Image(height, width);
+        return rotateLeft(image, RowBands.SEQUENTIAL);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newImage.setPixel(height-1 - y, x, image.pixel(x,y));
-            }
-        }
-        return newImage;
+    /**
+     * Rotates the given image 90 degrees counterclockwise (left), processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to rotate
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object rotated 90 degrees counterclockwise
+     */
+    public static Image rotateLeft(Image image, RowBands bands) {
+        return rotateLeft(image, DEFAULT_TILE_SIZE, bands);
+    }
+
+    /**
+     * Rotates the given image 90 degrees counterclockwise (left), moving the pixels one
+     * square tile at a time. See {@link #DEFAULT_TILE_SIZE} for how the tile size matters.
+     *
+     * @param image the {@code Image} object to rotate
+     * @param tileSize the width and height of a tile, in pixels
+     * @param bands decides how the rows of tiles are processed
+     * @return a new {@code Image} object rotated 90 degrees counterclockwise
+     * @throws IllegalArgumentException if the tile size is less than or equal to zero
+     */
+    public static Image rotateLeft(Image image, int tileSize, RowBands bands) {
+        return rotateTiled(image, tileSize, true, bands);
     }
 
     /**
      * Rotates the given image 90 degrees clockwise (right).
-     * 
+     * <p>
+     * The result is a second raster as large as the image. When memory is tighter than time,
+     * {@link ImageUtilsSE#rotateRight(Image)} rotates the image in-place instead; its documentation
+     * compares the cost of both.
+     * </p>
+     *
      * @param image the {@code Image} object to rotate
      * @return a new {@code Image} object rotated 90 degrees clockwise
      */
     public static Image rotateRight(Image image) {
+        return rotateRight(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Rotates the given image 90 degrees clockwise (right), processing its rows as decided
+     * by {@code bands}.
+     *
+     * @param image the {@code Image} object to rotate
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object rotated 90 degrees clockwise
+     */
+    public static Image rotateRight(Image image, RowBands bands) {
+        return rotateRight(image, DEFAULT_TILE_SIZE, bands);
+    }
+
+    /**
+     * Rotates the given image 90 degrees clockwise (right), moving the pixels one square
+     * tile at a time. See {@link #DEFAULT_TILE_SIZE} for how the tile size matters.
+     *
+     * @param image the {@code Image} object to rotate
+     * @param tileSize the width and height of a tile, in pixels
+     * @param bands decides how the rows of tiles are processed
+     * @return a new {@code Image} object rotated 90 degrees clockwise
+     * @throws IllegalArgumentException if the tile size is less than or equal to zero
+     */
+    public static Image rotateRight(Image image, int tileSize, RowBands bands) {
+        return rotateTiled(image, tileSize, false, bands);
+    }
+
+    /**
+     * Rotates the given image by a quarter turn, one tile at a time.
+     * <p>
+     * A rotation turns every row of the source into a column of the result. Walking the source
+     * row by row therefore writes the result column by column, and on large images almost every
+     * write lands on a different cache line than the one before. Splitting the image into square
+     * tiles keeps both the source tile and the result tile in cache while the tile is moved.
+     * </p>
+     *
+     * @param image the {@code Image} object to rotate
+     * @param tileSize the width and height of a tile, in pixels
+     * @param left {@code true} to rotate like {@link #rotateLeft(Image)}, {@code false} to rotate
+     *        like {@link #rotateRight(Image)}
+     * @param bands decides how the rows of tiles are processed
+     * @return a new rotated {@code Image} object
+     */
+    private static Image rotateTiled(Image image, int tileSize, boolean left, RowBands bands) {
+        assert tileSize > 0;
+
         int width = image.width();
         int height = image.height();
-        Image newImage = new Image(height, width);
+        Image newImage = image.createCompatible(height, width);
+        int tileRows = (height + tileSize - 1) / tileSize;
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newImage.setPixel(y, width-1 - x, new Color(image.pixel(x,y).rgb()));
+        bands.forEach(tileRows, (fromTile, toTile) -> {
+            int fromY, toY, toX;
+            long srcIndex, dstIndex, dstStep;
+            for (int tileY = fromTile; tileY < toTile; tileY++) {
+                fromY = tileY * tileSize;
+                toY = Math.min(fromY + tileSize, height);
+                for (int fromX = 0; fromX < width; fromX = fromX + tileSize) {
+                    toX = Math.min(fromX + tileSize, width);
+                    for (int x = fromX; x < toX; x++) {
+                        // Source column x becomes a row of the result
+                        srcIndex = (long)fromY * width + x;
+                        if (left) {
+                            dstIndex = (long)x * height + (height-1 - fromY);
+                            dstStep = -1;
+                        } else {
+                            dstIndex = (long)(width-1 - x) * height + fromY;
+                            dstStep = 1;
+                        }
+                        for (int y = fromY; y < toY; y++) {
+                            newImage.set(dstIndex, image.get(srcIndex));
+                            srcIndex = srcIndex + width;
+                            dstIndex = dstIndex + dstStep;
+                        }
+                    }
+                }
             }
-        }
+        });
         return newImage;
     }
 
     /**
      * Rotates the given image 180 degrees.
-     * 
+     *
      * @param image the {@code Image} object to rotate
      * @return a new {@code Image} object rotated 180 degrees
      */
     public static Image rotateHalf(Image image) {
+        return rotateHalf(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Rotates the given image 180 degrees, processing its rows as decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to rotate
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object rotated 180 degrees
+     */
+    public static Image rotateHalf(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        Image newImage = new Image(width, height);
+        Image newImage = image.createCompatible(width, height);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newImage.setPixel(x,y, new Color(image.pixel(width-1 - x, height-1 - y).rgb()));
+        bands.forEach(height, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    newImage.setRGB(x, y, image.getRGB(width-1 - x, height-1 - y));
+                }
             }
-        }
+        });
         return newImage;
     }
 
     /**
      * Stretches the given image horizontally, doubling its width.
-     * 
+     *
      * @param image the {@code Image} object to stretch
      * @return a new {@code Image} object with horizontally stretched pixels
      */
     public static Image strechHorizontal(Image image) {
+        return strechHorizontal(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Stretches the given image horizontally, doubling its width, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to stretch
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object with horizontally stretched pixels
+     */
+    public static Image strechHorizontal(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        Color originalPixel;
-        Image newImage = new Image(width*2, height);
+        Image newImage = image.createCompatible(width*2, height);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                originalPixel = image.pixel(x, y);
-                newImage.setPixel(x*2, y, originalPixel);
-                newImage.setPixel(x*2 + 1, y, originalPixel);
+        bands.forEach(height, (fromRow, toRow) -> {
+            int originalPixel;
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    originalPixel = image.getRGB(x, y);
+                    newImage.setRGB(x*2, y, originalPixel);
+                    newImage.setRGB(x*2 + 1, y, originalPixel);
+                }
             }
-        }
+        });
         return newImage;
     }
 
     /**
      * Stretches the given image vertically, doubling its height.
-     * 
+     *
      * @param image the {@code Image} object to stretch
      * @return a new {@code Image} object with vertically stretched pixels
      */
     public static Image strechVertical(Image image) {
+        return strechVertical(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Stretches the given image vertically, doubling its height, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to stretch
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object with vertically stretched pixels
+     */
+    public static Image strechVertical(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        Image newImage = new Image(width, height*2);
+        Image newImage = image.createCompatible(width, height*2);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                newImage.setPixel(x, y*2, image.pixel(x, y));
-                newImage.setPixel(x, y*2 + 1, image.pixel(x, y));
+        bands.forEach(height, (fromRow, toRow) -> {
+            int originalPixel;
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    originalPixel = image.getRGB(x, y);
+                    newImage.setRGB(x, y*2, originalPixel);
+                    newImage.setRGB(x, y*2 + 1, originalPixel);
+                }
             }
-        }
+        });
         return newImage;
     }
 
     /**
-     * Crops the given image to the specified dimensions and coordinates.
-     * 
+     * Crops the given image to the specified dimensions and coordinates. No pixels are copied
+     * up front: the result is a view of the region, see {@link Image#view(int, int, int, int)},
+     * which copies its pixels before either it or {@code image} is changed, so that the change
+     * does not show in the other. The view does not need to be closed, but must not be used after
+     * an off-heap {@code image} is closed, unless one of them was changed before.
+     *
      * @param image the {@code Image} object to crop
      * @param x the starting x-coordinate of the cropping region
      * @param y the starting y-coordinate of the cropping region
@@ -157,241 +364,727 @@ public class ImageUtils {
      * @throws IllegalArgumentException if the cropping parameters are invalid
      */
     public static Image crop(Image image, int x, int y, int width, int height) {
+        return crop(image, x, y, width, height, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Crops the given image to the specified dimensions and coordinates, like
+     * {@link #crop(Image, int, int, int, int)}. Since no pixels are copied, {@code bands} is
+     * not used; the overload is kept so that callers passing it need not change.
+     *
+     * @param image the {@code Image} object to crop
+     * @param x the starting x-coordinate of the cropping region
+     * @param y the starting y-coordinate of the cropping region
+     * @param width the width of the cropping region
+     * @param height the height of the cropping region
+     * @param bands not used
+     * @return a new {@code Image} object representing the cropped region
+     * @throws IllegalArgumentException if the cropping parameters are invalid
+     */
+    public static Image crop(Image image, int x, int y, int width, int height, RowBands bands) {
         assert x >= 0 && x < image.width();
         assert y >= 0 && y < image.height();
         assert width > 0 && width < image.width() - x;
         assert height > 0 && height < image.height() - y;
 
-        Image newImage = new Image(width, height);
-        for (int ny = 0; ny < height; ny++) {
-            for (int nx = 0; nx < width; nx++) {
-                newImage.setPixel(nx, ny, image.pixel(x+nx, y+ny));
-            }
-        }
-        return newImage;
+        return image.view(x, y, width, height);
     }
 
     /**
      * Switches the red and green color channels of the given image.
-     * 
+     *
      * @param image the {@code Image} object whose color channels to switch
      * @return a new {@code Image} object with the red and green channels swapped
      */
     public static Image switchRedGreen(Image image) {
-        int width = image.width();
-        int height = image.height();
-        int red, green, blue;
-        Image newImage = new Image(height, width);
+        return switchRedGreen(image, RowBands.SEQUENTIAL);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                red = image.pixel(x, y).red();
-                green = image.pixel(x, y).green();
-                blue = image.pixel(x, y).blue();
-                newImage.setPixel(x, y, new Color(green, red, blue));
-            }
-        }
-        return newImage;
+    /**
+     * Switches the red and green color channels of the given image, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object whose color channels to switch
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object with the red and green channels swapped
+     */
+    public static Image switchRedGreen(Image image, RowBands bands) {
+        return mapColors(image, PixelKernels::switchRedGreen, PixelOps::switchRedGreen, bands);
     }
 
     /**
      * Switches the red and blue color channels of the given image.
-     * 
+     *
      * @param image the {@code Image} object whose color channels to switch
      * @return a new {@code Image} object with the red and blue channels swapped
      */
     public static Image switchRedBlue(Image image) {
-        int width = image.width();
-        int height = image.height();
-        int red, green, blue;
-        Image newImage = new Image(height, width);
+        return switchRedBlue(image, RowBands.SEQUENTIAL);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                red = image.pixel(x, y).red();
-                green = image.pixel(x, y).green();
-                blue = image.pixel(x, y).blue();
-                newImage.setPixel(x, y, new Color(blue, green, red));
-            }
-        }
-        return newImage;
+    /**
+     * Switches the red and blue color channels of the given image, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object whose color channels to switch
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object with the red and blue channels swapped
+     */
+    public static Image switchRedBlue(Image image, RowBands bands) {
+        return mapColors(image, PixelKernels::switchRedBlue, PixelOps::switchRedBlue, bands);
     }
 
     /**
      * Switches the green and blue color channels of the given image.
-     * 
+     *
      * @param image the {@code Image} object whose color channels to switch
      * @return a new {@code Image} object with the green and blue channels swapped
      */
     public static Image switchGreenBlue(Image image) {
-        int width = image.width();
-        int height = image.height();
-        int red, green, blue;
-        Image newImage = new Image(height, width);
+        return switchGreenBlue(image, RowBands.SEQUENTIAL);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                red = image.pixel(x, y).red();
-                green = image.pixel(x, y).green();
-                blue = image.pixel(x, y).blue();
-                newImage.setPixel(x, y, new Color(red, blue, green));
-            }
-        }
-        return newImage;
+    /**
+     * Switches the green and blue color channels of the given image, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object whose color channels to switch
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object with the green and blue channels swapped
+     */
+    public static Image switchGreenBlue(Image image, RowBands bands) {
+        return mapColors(image, PixelKernels::switchGreenBlue, PixelOps::switchGreenBlue, bands);
     }
 
     /**
      * Converts the given image to grayscale using the average method.
-     * 
+     *
      * @param image the {@code Image} object to convert
      * @return a new {@code Image} object converted to grayscale using the average method
      */
     public static Image grayscaleAverage(Image image) {
-        int width = image.width();
-        int height = image.height();
-        int rgb, red, green, blue;
-        Color currentColor;
-        Image newImage = new Image(width, height);
+        return grayscaleAverage(image, RowBands.SEQUENTIAL);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                currentColor = image.pixel(x, y);
-                red = currentColor.red();
-                green = currentColor.green();
-                blue = currentColor.blue();
-                rgb = (red+green+blue)/3;
-                newImage.setPixel(x, y, new Color(rgb, rgb, rgb));
-            }
-        }
-        return newImage;
+    /**
+     * Converts the given image to grayscale using the average method, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to convert
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object converted to grayscale using the average method
+     */
+    public static Image grayscaleAverage(Image image, RowBands bands) {
+        return mapColors(image, PixelKernels::grayscaleAverage, PixelOps::grayscaleAverage, bands);
     }
 
     /**
      * Converts the given image to grayscale using the lightness method.
-     * 
+     *
      * @param image the {@code Image} object to convert
      * @return a new {@code Image} object converted to grayscale using the lightness method
      */
     public static Image grayscaleLightness(Image image) {
-        int width = image.width();
-        int height = image.height();
-        int rgb, min, max;
-        Color currentColor;
-        Image newImage = new Image(width, height);
+        return grayscaleLightness(image, RowBands.SEQUENTIAL);
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                currentColor = image.pixel(x, y);
-                max = Math.max(currentColor.red(), Math.max(
-                    currentColor.green(), 
-                    currentColor.blue()));
-                min = Math.min(currentColor.red(), Math.min(
-                    currentColor.green(),
-                    currentColor.blue()));
-                rgb = (min+max)/2;
-                newImage.setPixel(x, y, new Color(rgb, rgb, rgb));
-            }
-        }
-        return newImage;
+    /**
+     * Converts the given image to grayscale using the lightness method, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to convert
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object converted to grayscale using the lightness method
+     */
+    public static Image grayscaleLightness(Image image, RowBands bands) {
+        return mapColors(image, PixelKernels::grayscaleLightness, PixelOps::grayscaleLightness, bands);
     }
 
     /**
      * Converts the given image to grayscale using the luminosity method.
      * The luminosity method takes the weighted sum of the RGB components
      * with different weights for each channel: 0.3 for red, 0.59 for green, and 0.11 for blue.
-     * 
+     *
      * @param image The original image to be converted to grayscale.
      * @return A new image in grayscale.
      */
     public static Image grayscaleLuminosity(Image image) {
+        return grayscaleLuminosity(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Converts the given image to grayscale using the luminosity method, processing its rows as
+     * decided by {@code bands}.
+     *
+     * @param image The original image to be converted to grayscale.
+     * @param bands decides how the rows are processed
+     * @return A new image in grayscale.
+     */
+    public static Image grayscaleLuminosity(Image image, RowBands bands) {
+        return mapColors(image, PixelKernels::grayscaleLuminosity, PixelOps::grayscaleLuminosity, bands);
+    }
+
+    /**
+     * Maps the color channels of the given image through a tone curve.
+     *
+     * @param image The image to adjust.
+     * @param curve The curve to map the channels through.
+     * @return A new image holding the adjusted colors.
+     */
+    public static Image applyCurve(Image image, ToneCurve curve) {
+        return applyCurve(image, curve, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Maps the color channels of the given image through a tone curve, processing its rows as
+     * decided by {@code bands}. Each pixel costs one table lookup per channel.
+     *
+     * @param image The image to adjust.
+     * @param curve The curve to map the channels through.
+     * @param bands decides how the rows are processed
+     * @return A new image holding the adjusted colors.
+     */
+    public static Image applyCurve(Image image, ToneCurve curve, RowBands bands) {
+        return mapColors(image, curve::apply, curve::apply, bands);
+    }
+
+    /**
+     * Equalizes the histogram of the given image, see {@link ToneCurve#equalize(Histogram)}.
+     *
+     * @param image The image to adjust.
+     * @return A new image holding the adjusted colors.
+     */
+    public static Image equalize(Image image) {
+        return equalize(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Equalizes the histogram of the given image, see {@link ToneCurve#equalize(Histogram)},
+     * counting and processing its rows as decided by {@code bands}.
+     *
+     * @param image The image to adjust.
+     * @param bands decides how the rows are processed
+     * @return A new image holding the adjusted colors.
+     */
+    public static Image equalize(Image image, RowBands bands) {
+        return applyCurve(image, ToneCurve.equalize(new Histogram(image, bands)), bands);
+    }
+
+    /**
+     * Stretches each color channel of the given image over the whole range, see
+     * {@link ToneCurve#autoLevels(Histogram)}.
+     *
+     * @param image The image to adjust.
+     * @return A new image holding the adjusted colors.
+     */
+    public static Image autoLevels(Image image) {
+        return autoLevels(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Stretches each color channel of the given image over the whole range, see
+     * {@link ToneCurve#autoLevels(Histogram)}, counting and processing its rows as decided by
+     * {@code bands}.
+     *
+     * @param image The image to adjust.
+     * @param bands decides how the rows are processed
+     * @return A new image holding the adjusted colors.
+     */
+    public static Image autoLevels(Image image, RowBands bands) {
+        return applyCurve(image, ToneCurve.autoLevels(new Histogram(image, bands)), bands);
+    }
+
+    /**
+     * Applies a gamma correction to the given image, see {@link ToneCurve#gamma(double)}.
+     *
+     * @param image The image to adjust.
+     * @param gamma The gamma, greater than one to brighten the image.
+     * @return A new image holding the adjusted colors.
+     * @throws IllegalArgumentException if the gamma is not positive
+     */
+    public static Image gamma(Image image, double gamma) {
+        return gamma(image, gamma, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Applies a gamma correction to the given image, see {@link ToneCurve#gamma(double)},
+     * processing its rows as decided by {@code bands}.
+     *
+     * @param image The image to adjust.
+     * @param gamma The gamma, greater than one to brighten the image.
+     * @param bands decides how the rows are processed
+     * @return A new image holding the adjusted colors.
+     * @throws IllegalArgumentException if the gamma is not positive
+     */
+    public static Image gamma(Image image, double gamma, RowBands bands) {
+        return applyCurve(image, ToneCurve.gamma(gamma), bands);
+    }
+
+    /**
+     * Changes the contrast of the given image, see {@link ToneCurve#contrast(double)}.
+     *
+     * @param image The image to adjust.
+     * @param factor The contrast factor, greater than one to increase the contrast.
+     * @return A new image holding the adjusted colors.
+     * @throws IllegalArgumentException if the factor is negative
+     */
+    public static Image contrast(Image image, double factor) {
+        return contrast(image, factor, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Changes the contrast of the given image, see {@link ToneCurve#contrast(double)},
+     * processing its rows as decided by {@code bands}.
+     *
+     * @param image The image to adjust.
+     * @param factor The contrast factor, greater than one to increase the contrast.
+     * @param bands decides how the rows are processed
+     * @return A new image holding the adjusted colors.
+     * @throws IllegalArgumentException if the factor is negative
+     */
+    public static Image contrast(Image image, double factor, RowBands bands) {
+        return applyCurve(image, ToneCurve.contrast(factor), bands);
+    }
+
+    /**
+     * Applies a color operation to every pixel of the given image. Rows of heap images are passed
+     * to {@code kernel} as whole runs of pixels, so that it can use vector instructions; the pixels
+     * of other images are converted one at a time by {@code operation}.
+     *
+     * @param image the {@code Image} object to convert
+     * @param kernel converts runs of packed pixels
+     * @param operation converts one packed pixel, the same way as {@code kernel}
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the converted pixels
+     */
+    private static Image mapColors(Image image, PixelKernels.Kernel kernel, IntUnaryOperator operation, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        double red, green, blue;
-        int rgb;
-        Color currentColor;
-        Image newImage = new Image(width, height);
+        Image newImage = image.createCompatible(width, height);
+        int[] src = image.raster();
+        int[] dst = newImage.raster();
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                currentColor = image.pixel(x, y);
-                red = (double)currentColor.red()*0.3;
-                green = (double)currentColor.green()*0.59;
-                blue = (double)currentColor.blue()*0.11;
-                rgb = (int)(red+green+blue);
-                newImage.setPixel(x, y, new Color(rgb, rgb, rgb));
+        bands.forEach(height, (fromRow, toRow) -> {
+            if (src != null && dst != null) {
+                kernel.apply(src, dst, fromRow*width, toRow*width);
+                return;
             }
-        }
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    newImage.setRGB(x, y, operation.applyAsInt(image.getRGB(x, y)));
+                }
+            }
+        });
         return newImage;
     }
 
     /**
      * Calculates the average color of the given image by computing the average
      * of the red, green, and blue components for all pixels in the image.
-     * 
+     *
      * @param image The image for which to calculate the average color.
      * @return The average color of the image as a {@link Color} object.
      */
     public static Color averageColor(Image image) {
+        return averageColor(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Calculates the average color of the given image, processing its rows as decided by
+     * {@code bands}. Each band sums its own rows before adding them to the totals.
+     *
+     * @param image The image for which to calculate the average color.
+     * @param bands decides how the rows are processed
+     * @return The average color of the image as a {@link Color} object.
+     */
+    public static Color averageColor(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        Color pixel;
-        int count = 0;
-        int red = 0;
-        int green = 0;
-        int blue = 0;
+        long count = (long)width * height;
+        LongAdder totalRed = new LongAdder();
+        LongAdder totalGreen = new LongAdder();
+        LongAdder totalBlue = new LongAdder();
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                pixel = image.pixel(x, y);
-                red = red + pixel.red();
-                green = green + pixel.green();
-                blue = blue + pixel.blue();
-                count++;
+        bands.forEach(height, (fromRow, toRow) -> {
+            int pixel;
+            long red = 0;
+            long green = 0;
+            long blue = 0;
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    pixel = image.getRGB(x, y);
+                    red = red + Color.red(pixel);
+                    green = green + Color.green(pixel);
+                    blue = blue + Color.blue(pixel);
+                }
             }
-        }
+            totalRed.add(red);
+            totalGreen.add(green);
+            totalBlue.add(blue);
+        });
+
+        int red = (int)(totalRed.sum()/count);
+        int green = (int)(totalGreen.sum()/count);
+        int blue = (int)(totalBlue.sum()/count);
+        return Color.of(red, green, blue);
+    }
 
-        red = red/count;
-        green = green/count;
-        blue = blue/count;
-        return new Color(red, green, blue);
+    /**
+     * Calculates the average color of an image from its summed-area tables, without reading
+     * its pixels again. The result is the same as {@link #averageColor(Image)}.
+     *
+     * @param integral the summed-area tables of the image
+     * @return The average color of the image as a {@link Color} object.
+     */
+    public static Color averageColor(IntegralImage integral) {
+        return Color.of(integral.average(0, 0, integral.width(), integral.height()));
     }
 
     /**
      * Resamples the given image by averaging the color of each 3x3 block of pixels.
      * The resampling process involves averaging the colors of the pixels in a 3x3 grid,
-     * centered on each pixel that is not on the boundary of the image. 
+     * centered on each pixel that is not on the boundary of the image.
      * This effectively reduces the image's resolution by a factor of 2 in both dimensions.
-     * 
+     *
      * @param image The image to be resampled.
      * @return A new image with reduced resolution created by averaging pixel blocks.
      */
     public static Image resample(Image image) {
+        return resample(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Resamples the given image by averaging the color of each 3x3 block of pixels, processing
+     * the rows of blocks as decided by {@code bands}.
+     *
+     * @param image The image to be resampled.
+     * @param bands decides how the rows of blocks are processed
+     * @return A new image with reduced resolution created by averaging pixel blocks.
+     */
+    public static Image resample(Image image, RowBands bands) {
         int width = image.width();
         int height = image.height();
-        int red, green, blue;
-        Color pixel;
-        Image newImage = new Image(width, height);
-
-        for (int y = 1; y < height - 1; y = y + 2) {
-            for (int x = 1; x < width - 1; x = x + 2) {
-                red = 0;
-                green = 0;
-                blue = 0;
-                for (int i = -1; i < 2; i++) {
-                    for (int j = -1; j < 2; j++) {
-                        pixel = image.pixel(x + i, y + j);
-                        red = red + pixel.red();
-                        green = green + pixel.green();
-                        blue = blue + pixel.blue();
+        Image newImage = image.createCompatible(width, height);
+
+        // Block rows are centered on y = 1, 3, 5, ... up to height - 2
+        bands.forEach((height - 1) / 2, (fromBlock, toBlock) -> {
+            int red, green, blue;
+            int pixel;
+            for (int y = 2*fromBlock + 1; y < 2*toBlock + 1; y = y + 2) {
+                for (int x = 1; x < width - 1; x = x + 2) {
+                    red = 0;
+                    green = 0;
+                    blue = 0;
+                    for (int i = -1; i < 2; i++) {
+                        for (int j = -1; j < 2; j++) {
+                            pixel = image.getRGB(x + i, y + j);
+                            red = red + Color.red(pixel);
+                            green = green + Color.green(pixel);
+                            blue = blue + Color.blue(pixel);
+                        }
+                    }
+
+                    red = red/9;
+                    green = green/9;
+                    blue = blue/9;
+                    newImage.setRGB(x, y, Color.pack(red, green, blue));
+                }
+            }
+        });
+        return newImage;
+    }
+
+    /**
+     * Resamples an image from its summed-area tables, averaging each 3x3 block with four lookups
+     * instead of nine reads. The result is the same as {@link #resample(Image, RowBands)}.
+     *
+     * @param integral the summed-area tables of the image to be resampled
+     * @param bands decides how the rows of blocks are processed
+     * @return A new image with reduced resolution created by averaging pixel blocks.
+     */
+    public static Image resample(IntegralImage integral, RowBands bands) {
+        int width = integral.width();
+        int height = integral.height();
+        Image newImage = integral.source().createCompatible(width, height);
+
+        // Block rows are centered on y = 1, 3, 5, ... up to height - 2
+        bands.forEach((height - 1) / 2, (fromBlock, toBlock) -> {
+            for (int y = 2*fromBlock + 1; y < 2*toBlock + 1; y = y + 2) {
+                for (int x = 1; x < width - 1; x = x + 2) {
+                    newImage.setRGB(x, y, integral.average(x - 1, y - 1, 3, 3));
+                }
+            }
+        });
+        return newImage;
+    }
+
+    /**
+     * Blurs the given image by replacing each pixel with the average color of the square of
+     * pixels around it. Near the edges, only the part of the square inside the image is averaged.
+     *
+     * @param image the {@code Image} object to blur
+     * @param radius the distance from the center pixel to the sides of the square
+     * @return a new {@code Image} object holding the blurred image
+     * @throws IllegalArgumentException if the radius is negative
+     */
+    public static Image boxBlur(Image image, int radius) {
+        return boxBlur(image, radius, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Blurs the given image by replacing each pixel with the average color of the square of
+     * pixels around it, processing its rows as decided by {@code bands}. The image is summed
+     * once into an {@link IntegralImage}, so the cost does not depend on the radius.
+     *
+     * @param image the {@code Image} object to blur
+     * @param radius the distance from the center pixel to the sides of the square
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the blurred image
+     * @throws IllegalArgumentException if the radius is negative
+     */
+    public static Image boxBlur(Image image, int radius, RowBands bands) {
+        return boxBlur(new IntegralImage(image, false, bands), radius, bands);
+    }
+
+    /**
+     * Blurs an image from its summed-area tables by replacing each pixel with the average color
+     * of the square of pixels around it, processing its rows as decided by {@code bands}.
+     *
+     * @param integral the summed-area tables of the image to blur
+     * @param radius the distance from the center pixel to the sides of the square
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the blurred image
+     * @throws IllegalArgumentException if the radius is negative
+     */
+    public static Image boxBlur(IntegralImage integral, int radius, RowBands bands) {
+        assert radius >= 0;
+
+        int width = integral.width();
+        int height = integral.height();
+        Image newImage = integral.source().createCompatible(width, height);
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            int top, bottom, left, right;
+            for (int y = fromRow; y < toRow; y++) {
+                top = Math.max(0, y - radius);
+                bottom = Math.min(height, y + radius + 1);
+                for (int x = 0; x < width; x++) {
+                    left = Math.max(0, x - radius);
+                    right = Math.min(width, x + radius + 1);
+                    newImage.setRGB(x, y, integral.average(left, top, right - left, bottom - top));
+                }
+            }
+        });
+        return newImage;
+    }
+
+    /**
+     * Blurs the given image with a Gaussian kernel.
+     *
+     * @param image the {@code Image} object to blur
+     * @param sigma the standard deviation of the Gaussian, in pixels
+     * @return a new {@code Image} object holding the blurred image
+     * @throws IllegalArgumentException if sigma is not positive
+     */
+    public static Image gaussianBlur(Image image, double sigma) {
+        return gaussianBlur(image, sigma, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Blurs the given image with a Gaussian kernel, processing its rows as decided by {@code bands}.
+     * The kernel is separable, so it is run as two one-dimensional passes. Pixels past the edges
+     * repeat the pixels on the edge.
+     *
+     * @param image the {@code Image} object to blur
+     * @param sigma the standard deviation of the Gaussian, in pixels
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the blurred image
+     * @throws IllegalArgumentException if sigma is not positive
+     */
+    public static Image gaussianBlur(Image image, double sigma, RowBands bands) {
+        return Convolution.convolve(image, ConvolutionKernel.gaussian(sigma), EdgePolicy.CLAMP, bands);
+    }
+
+    /**
+     * Sharpens the given image.
+     *
+     * @param image the {@code Image} object to sharpen
+     * @return a new {@code Image} object holding the sharpened image
+     */
+    public static Image sharpen(Image image) {
+        return sharpen(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Sharpens the given image with {@link ConvolutionKernel#SHARPEN}, processing its rows as
+     * decided by {@code bands}. Pixels past the edges repeat the pixels on the edge.
+     *
+     * @param image the {@code Image} object to sharpen
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the sharpened image
+     */
+    public static Image sharpen(Image image, RowBands bands) {
+        return Convolution.convolve(image, ConvolutionKernel.SHARPEN, EdgePolicy.CLAMP, bands);
+    }
+
+    /**
+     * Detects the edges of the given image with the Sobel operator.
+     *
+     * @param image the {@code Image} object to process
+     * @return a new {@code Image} object holding the gradient magnitude of each channel
+     */
+    public static Image sobel(Image image) {
+        return sobel(image, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Detects the edges of the given image with the Sobel operator, processing its rows as decided
+     * by {@code bands}. Each channel of the result is the magnitude of the gradient of that
+     * channel, clamped to 255. Pixels past the edges repeat the pixels on the edge.
+     *
+     * @param image the {@code Image} object to process
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the gradient magnitude of each channel
+     */
+    public static Image sobel(Image image, RowBands bands) {
+        return Convolution.gradientMagnitude(image, ConvolutionKernel.SOBEL_X, ConvolutionKernel.SOBEL_Y,
+            EdgePolicy.CLAMP, bands);
+    }
+
+    /**
+     * Resizes the given image to any width and height.
+     *
+     * @param image the {@code Image} object to resize
+     * @param width the width of the result
+     * @param height the height of the result
+     * @param filter the filter to interpolate with
+     * @return a new {@code Image} object holding the resized image
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public static Image resize(Image image, int width, int height, ResizeFilter filter) {
+        return resize(image, width, height, filter, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Resizes the given image to any width and height, processing its rows as decided by
+     * {@code bands}.
+     * <p>
+     * The image is resized along its rows first and then along its columns. Each pass reads its
+     * weights from a {@link WeightTable} computed once, and sums the channels in fixed point. The
+     * result rows are computed in strips of {@link #RESIZE_STRIP_ROWS} rows: the source rows a
+     * strip reads are resized to the result width into a buffer, which keeps each channel with
+     * {@link #RESIZE_EXTRA_BITS} fractional bits and without clamping, so the values are only
+     * rounded and clamped once, in the result. The buffer holds a few strips of rows instead of
+     * a whole intermediate image, so resizing an off-heap image does not need a heap copy of
+     * it. The edges of the image are handled by normalizing the weights of the pixels inside it.
+     * </p>
+     *
+     * @param image the {@code Image} object to resize
+     * @param width the width of the result
+     * @param height the height of the result
+     * @param filter the filter to interpolate with
+     * @param bands decides how the rows are processed
+     * @return a new {@code Image} object holding the resized image
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public static Image resize(Image image, int width, int height, ResizeFilter filter, RowBands bands) {
+        assert width > 0;
+        assert height > 0;
+
+        WeightTable columns = new WeightTable(filter, image.width(), width);
+        WeightTable rows = new WeightTable(filter, image.height(), height);
+        Image newImage = image.createCompatible(width, height);
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            int[] strip = new int[0];
+            int stripEnd, first, last, offset, weight, start;
+            int red, green, blue;
+            for (int stripStart = fromRow; stripStart < toRow; stripStart = stripEnd) {
+                stripEnd = Math.min(toRow, stripStart + RESIZE_STRIP_ROWS);
+
+                // Pass along the rows: the source rows read by the strip, at the result width
+                first = rows.start(stripStart);
+                last = first;
+                for (int y = stripStart; y < stripEnd; y++) {
+                    first = Math.min(first, rows.start(y));
+                    last = Math.max(last, rows.start(y) + rows.count(y));
+                }
+                if (strip.length < 3 * width * (last - first)) {
+                    strip = new int[3 * width * (last - first)];
+                }
+                resizeRows(image, columns, width, first, last, strip);
+
+                // Pass along the columns: every result row mixes a few buffered rows
+                for (int y = stripStart; y < stripEnd; y++) {
+                    start = rows.start(y) - first;
+                    for (int x = 0; x < width; x++) {
+                        red = RESIZE_HALF;
+                        green = RESIZE_HALF;
+                        blue = RESIZE_HALF;
+                        for (int k = 0; k < rows.count(y); k++) {
+                            offset = 3 * ((start + k) * width + x);
+                            weight = rows.weight(y, k);
+                            red = red + weight * strip[offset];
+                            green = green + weight * strip[offset + 1];
+                            blue = blue + weight * strip[offset + 2];
+                        }
+                        newImage.setRGB(x, y, Color.pack(clampChannel(red >> RESIZE_SHIFT),
+                                                         clampChannel(green >> RESIZE_SHIFT),
+                                                         clampChannel(blue >> RESIZE_SHIFT)));
                     }
                 }
+            }
+        });
+        return newImage;
+    }
 
-                red = red/9;
-                green = green/9;
-                blue = blue/9;
-                newImage.setPixel(x, y, new Color(red, green, blue));
+    /**
+     * Resizes the source rows {@code first} to {@code last} (exclusive) of an image along the
+     * rows, writing the red, green and blue values of each result pixel to three consecutive
+     * entries of {@code strip}, row by row, with {@link #RESIZE_EXTRA_BITS} fractional bits.
+     * The values are not clamped, so filters with negative weights may leave them outside the
+     * range of a channel.
+     *
+     * @param image the {@code Image} object to read
+     * @param columns the weights along the rows
+     * @param width the width of the result
+     * @param first the first source row to resize
+     * @param last the row after the last source row to resize
+     * @param strip the buffer receiving the channels
+     */
+    private static void resizeRows(Image image, WeightTable columns, int width, int first, int last, int[] strip) {
+        int pixel, weight, start, offset;
+        int red, green, blue;
+        offset = 0;
+        for (int y = first; y < last; y++) {
+            for (int x = 0; x < width; x++) {
+                start = columns.start(x);
+                red = ROW_HALF;
+                green = ROW_HALF;
+                blue = ROW_HALF;
+                for (int k = 0; k < columns.count(x); k++) {
+                    pixel = image.getRGB(start + k, y);
+                    weight = columns.weight(x, k);
+                    red = red + weight * Color.red(pixel);
+                    green = green + weight * Color.green(pixel);
+                    blue = blue + weight * Color.blue(pixel);
+                }
+                strip[offset] = red >> ROW_SHIFT;
+                strip[offset + 1] = green >> ROW_SHIFT;
+                strip[offset + 2] = blue >> ROW_SHIFT;
+                offset = offset + 3;
             }
         }
-        return newImage;
+    }
+
+    /**
+     * Clamps an interpolated channel value, which filters with negative weights can push
+     * outside the valid range, to 0 to 255.
+     *
+     * @param value the channel value
+     * @return the value clamped to 0 to 255
+     */
+    private static int clampChannel(int value) {
+        return Math.max(0, Math.min(255, value));
     }
 }
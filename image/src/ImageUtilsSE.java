@@ -14,12 +14,12 @@ public class ImageUtilsSE {
     public static void flipHorizontal(Image image) {
         int width = image.width();
         int height = image.height();
-        Color temp;
+        int temp;
         for (int y = 0; y < height/2; y++) {
             for (int x = 0; x < width; x++) {
-                temp = image.pixel(x, y);
-                image.setPixel(x, y, image.pixel(x, height-1-y));
-                image.setPixel(x, height-1-y, temp);
+                temp = image.getRGB(x, y);
+                image.setRGB(x, y, image.getRGB(x, height-1-y));
+                image.setRGB(x, height-1-y, temp);
             }
         }
     }
@@ -33,12 +33,12 @@ public class ImageUtilsSE {
     public static void flipVirtical(Image image) {
         int width = image.width();
         int height = image.height();
-        Color temp;
+        int temp;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width/2; x++) {
-                temp = image.pixel(x, y);
-                image.setPixel(x, y, image.pixel(width-1-x, y));
-                image.setPixel(width-1-x, y, temp);
+                temp = image.getRGB(x, y);
+                image.setRGB(x, y, image.getRGB(width-1-x, y));
+                image.setRGB(width-1-x, y, temp);
             }
         }
     }
@@ -52,12 +52,120 @@ public class ImageUtilsSE {
     public static void rotateHalf(Image image) {
         int width = image.width();
         int height = image.height();
-        Color temp;
+        int temp;
         for (int y = 0; y < height/2; y++) {
             for (int x = 0; x < width/2; x++) {
-                temp = image.pixel(x, y);
-                image.setPixel(x, y, image.pixel(width - 1 - x, height - 1 - y));
-                image.setPixel(width - 1 - x, height - 1 - y, temp);
+                temp = image.getRGB(x, y);
+                image.setRGB(x, y, image.getRGB(width - 1 - x, height - 1 - y));
+                image.setRGB(width - 1 - x, height - 1 - y, temp);
+            }
+        }
+    }
+
+    /**
+     * Rotates the given image 90 degrees counterclockwise (left), like
+     * {@link ImageUtils#rotateLeft(Image)}. This operation modifies the image in-place,
+     * swapping its width and height.
+     * <p>
+     * Cost: the out-of-place {@code ImageUtils.rotateLeft} needs a second raster of the same size
+     * as the image, but reads and writes memory in cache-friendly tiles. This method keeps peak
+     * memory at one raster. A square image is rotated ring by ring with four-way swaps and needs
+     * no extra memory at all. Any other image is rotated by following the cycles of the pixel
+     * permutation, which takes one extra bit per pixel (1/32 of the raster) to remember which
+     * pixels have been moved, and visits the raster in an order that is mostly cache misses, so
+     * it is slower than the out-of-place version on images that fit in memory twice.
+     * </p>
+     *
+     * @param image the image to be rotated.
+     */
+    public static void rotateLeft(Image image) {
+        rotateQuarter(image, true);
+    }
+
+    /**
+     * Rotates the given image 90 degrees clockwise (right), like
+     * {@link ImageUtils#rotateRight(Image)}. This operation modifies the image in-place,
+     * swapping its width and height.
+     * <p>
+     * Cost: the same as {@link #rotateLeft(Image)}.
+     * </p>
+     *
+     * @param image the image to be rotated.
+     */
+    public static void rotateRight(Image image) {
+        rotateQuarter(image, false);
+    }
+
+    /**
+     * Rotates the given image by a quarter turn in-place.
+     *
+     * @param image the image to be rotated.
+     * @param left {@code true} to rotate like {@link #rotateLeft(Image)}, {@code false} to rotate
+     *        like {@link #rotateRight(Image)}
+     */
+    private static void rotateQuarter(Image image, boolean left) {
+        int width = image.width();
+        int height = image.height();
+
+        if (width == height) {
+            rotateSquare(image, left);
+            return;
+        }
+
+        // Pixel i = y*width + x moves to j = x*height + (height-1-y) when rotating left,
+        // and to j = (width-1-x)*height + y when rotating right
+        long size = (long)width * height;
+        long[] moved = new long[(int)((size + 63) >>> 6)];
+        long index, next;
+        int value, temp;
+        for (long start = 0; start < size; start++) {
+            if ((moved[(int)(start >>> 6)] & (1L << start)) != 0) {
+                continue;
+            }
+            index = start;
+            value = image.get(start);
+            do {
+                if (left) {
+                    next = (index % width) * height + (height-1 - index / width);
+                } else {
+                    next = (width-1 - index % width) * height + index / width;
+                }
+                temp = image.get(next);
+                image.set(next, value);
+                value = temp;
+                moved[(int)(next >>> 6)] |= 1L << next;
+                index = next;
+            } while (index != start);
+        }
+        image.swapDimensions();
+    }
+
+    /**
+     * Rotates a square image by a quarter turn in-place, moving four pixels at a time.
+     *
+     * @param image the image to be rotated.
+     * @param left {@code true} to rotate left, {@code false} to rotate right
+     */
+    private static void rotateSquare(Image image, boolean left) {
+        int size = image.width();
+        int temp;
+        for (int y = 0; y < size/2; y++) {
+            for (int x = y; x < size-1 - y; x++) {
+                // When rotating left, the pixel at (x, y) moves to (size-1-y, x), that one
+                // moves to (size-1-x, size-1-y), that one to (y, size-1-x), and that one back
+                if (left) {
+                    temp = image.getRGB(y, size-1 - x);
+                    image.setRGB(y, size-1 - x, image.getRGB(size-1 - x, size-1 - y));
+                    image.setRGB(size-1 - x, size-1 - y, image.getRGB(size-1 - y, x));
+                    image.setRGB(size-1 - y, x, image.getRGB(x, y));
+                    image.setRGB(x, y, temp);
+                } else {
+                    temp = image.getRGB(x, y);
+                    image.setRGB(x, y, image.getRGB(size-1 - y, x));
+                    image.setRGB(size-1 - y, x, image.getRGB(size-1 - x, size-1 - y));
+                    image.setRGB(size-1 - x, size-1 - y, image.getRGB(y, size-1 - x));
+                    image.setRGB(y, size-1 - x, temp);
+                }
             }
         }
     }
@@ -69,15 +177,21 @@ public class ImageUtilsSE {
      * @param image the image whose red and green channels are to be swapped.
      */
     public static void switchRedGreen(Image image) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            PixelKernels.switchRedGreen(pixels, pixels, 0, pixels.length);
+            return;
+        }
+
         int width = image.width();
         int height = image.height();
-        Color CurrentColor;
-        Color newColor;
+        int currentColor;
+        int newColor;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                CurrentColor = image.pixel(x, y);
-                newColor = new Color(CurrentColor.green(), CurrentColor.red(), CurrentColor.blue());
-                image.setPixel(x, y, newColor);
+                currentColor = image.getRGB(x, y);
+                newColor = Color.pack(Color.green(currentColor), Color.red(currentColor), Color.blue(currentColor));
+                image.setRGB(x, y, newColor);
             }
         }
     }
@@ -89,15 +203,21 @@ public class ImageUtilsSE {
      * @param image the image whose red and blue channels are to be swapped.
      */
     public static void switchRedBlue(Image image) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            PixelKernels.switchRedBlue(pixels, pixels, 0, pixels.length);
+            return;
+        }
+
         int width = image.width();
         int height = image.height();
-        Color CurrentColor;
-        Color newColor;
+        int currentColor;
+        int newColor;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                CurrentColor = image.pixel(x, y);
-                newColor = new Color(CurrentColor.blue(), CurrentColor.green(), CurrentColor.red());
-                image.setPixel(x, y, newColor);
+                currentColor = image.getRGB(x, y);
+                newColor = Color.pack(Color.blue(currentColor), Color.green(currentColor), Color.red(currentColor));
+                image.setRGB(x, y, newColor);
             }
         }
     }
@@ -109,15 +229,21 @@ public class ImageUtilsSE {
      * @param image the image whose green and blue channels are to be swapped.
      */
     public static void switchGreenBlue(Image image) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            PixelKernels.switchGreenBlue(pixels, pixels, 0, pixels.length);
+            return;
+        }
+
         int width = image.width();
         int height = image.height();
-        Color CurrentColor;
-        Color newColor;
+        int currentColor;
+        int newColor;
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                CurrentColor = image.pixel(x, y);
-                newColor = new Color(CurrentColor.red(), CurrentColor.blue(), CurrentColor.green());
-                image.setPixel(x, y, newColor);
+                currentColor = image.getRGB(x, y);
+                newColor = Color.pack(Color.red(currentColor), Color.blue(currentColor), Color.green(currentColor));
+                image.setRGB(x, y, newColor);
             }
         }
     }
@@ -129,16 +255,25 @@ public class ImageUtilsSE {
      * @param image the image to be converted to grayscale.
      */
     public static void grayscaleAverage(Image image) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            PixelKernels.grayscaleAverage(pixels, pixels, 0, pixels.length);
+            return;
+        }
+
         int width = image.width();
         int height = image.height();
-        int red, green, blue;
+        int rgb, red, green, blue;
+        int currentColor;
 
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                red = image.pixel(x, y).red();
-                green = image.pixel(x, y).green();
-                blue = image.pixel(x, y).blue();
-                image.setPixel(x, y, new Color(blue, green, red));
+                currentColor = image.getRGB(x, y);
+                red = Color.red(currentColor);
+                green = Color.green(currentColor);
+                blue = Color.blue(currentColor);
+                rgb = (red+green+blue)/3;
+                image.setRGB(x, y, Color.pack(rgb, rgb, rgb));
             }
         }
     }
@@ -150,22 +285,28 @@ public class ImageUtilsSE {
      * @param image the image to be converted to grayscale.
      */
     public static void grayscaleLightness(Image image) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            PixelKernels.grayscaleLightness(pixels, pixels, 0, pixels.length);
+            return;
+        }
+
         int width = image.width();
         int height = image.height();
         int rgb, min, max;
-        Color currentColor;
+        int currentColor;
 
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                currentColor = image.pixel(x, y);
-                max = Math.max(currentColor.red(), Math.max(
-                    currentColor.green(), 
-                    currentColor.blue()));
-                min = Math.min(currentColor.red(), Math.min(
-                    currentColor.green(),
-                    currentColor.blue()));
+                currentColor = image.getRGB(x, y);
+                max = Math.max(Color.red(currentColor), Math.max(
+                    Color.green(currentColor), 
+                    Color.blue(currentColor)));
+                min = Math.min(Color.red(currentColor), Math.min(
+                    Color.green(currentColor),
+                    Color.blue(currentColor)));
                 rgb = (min+max)/2;
-                image.setPixel(x, y, new Color(rgb, rgb, rgb));
+                image.setRGB(x, y, Color.pack(rgb, rgb, rgb));
             }
         }
     }
@@ -177,26 +318,56 @@ public class ImageUtilsSE {
      * @param image the image to be converted to grayscale.
      */
     public static void grayscaleLuminosity(Image image) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            PixelKernels.grayscaleLuminosity(pixels, pixels, 0, pixels.length);
+            return;
+        }
+
         int width = image.width();
         int height = image.height();
         double red, green, blue;
         int rgb;
-        Color currentColor;
+        int currentColor;
 
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
-                currentColor = image.pixel(x, y);
-                red = (double)currentColor.red()*0.3;
-                green = (double)currentColor.green()*0.59;
-                blue = (double)currentColor.blue()*0.11;
+                currentColor = image.getRGB(x, y);
+                red = (double)Color.red(currentColor)*0.3;
+                green = (double)Color.green(currentColor)*0.59;
+                blue = (double)Color.blue(currentColor)*0.11;
                 rgb = (int)(red+green+blue);
-                image.setPixel(x, y, new Color(rgb, rgb, rgb));
+                image.setRGB(x, y, Color.pack(rgb, rgb, rgb));
+            }
+        }
+    }
+
+    /**
+     * Maps the color channels of the image through a tone curve, in place, with one table lookup
+     * per channel. Curves are built by {@link ToneCurve}, for example from the {@link Histogram}
+     * of the image.
+     *
+     * @param image the image to be adjusted.
+     * @param curve the curve to map the channels through.
+     */
+    public static void applyCurve(Image image, ToneCurve curve) {
+        int[] pixels = image.writableRaster();
+        if (pixels != null) {
+            curve.apply(pixels, pixels, 0, pixels.length);
+            return;
+        }
+        int width = image.width();
+        int height = image.height();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, curve.apply(image.getRGB(x, y)));
             }
         }
     }
 
     /**
      * Adds a filled rectangle to the image with the specified top-left corner, width, height, and color.
+     * The rectangle is filled one row at a time by {@link Shapes#fillRectangle(Image, int, int, int, int, Color)}.
      * 
      * @param image the image to which the rectangle will be added.
      * @param x the x-coordinate of the top-left corner of the rectangle.
@@ -209,16 +380,14 @@ public class ImageUtilsSE {
         assert x >= 0 && x+width < image.width();
         assert y >= 0 && y+height < image.height();
 
-        for (int i = 0; i <= height; i++) {
-            for (int j = 0; j <= width; j++) {
-                image.setPixel(x+j, y+i, color);
-            }
-        }
+        // The rectangle covers the pixels from x to x+width and from y to y+height, both included
+        Shapes.fillRectangle(image, x, y, width + 1, height + 1, color);
     }
 
     /**
      * Adds a filled circle to the image with the specified center, radius, and color.
-     * The circle is drawn using Bresenham's Midpoint Circle algorithm.
+     * The circle covers the pixels of Bresenham's Midpoint Circle algorithm, and is filled one
+     * row at a time by {@link Shapes#fillCircle(Image, int, int, int, Color)}.
      * 
      * @param image the image to which the circle will be added.
      * @param centerX the x-coordinate of the circle's center.
@@ -227,35 +396,10 @@ public class ImageUtilsSE {
      * @param color the color of the circle.
      */
     public static void addCircle(Image image, int centerX, int centerY, int radius, Color color) {
-        // Bresenham's Midpoint Circle algorithm
         assert radius > 0;
         assert centerX - radius >= 0 && centerX + radius < image.width();
         assert centerY - radius >= 0 && centerY + radius < image.height();
 
-        int x = radius;
-        int y = 0;
-        int t = 1 - radius;
-
-        while (x >= y) {
-            for (int i = centerX - x; i <= centerX + x; i++) {
-                image.setPixel(i, centerY + y, color);
-                image.setPixel(i, centerY - y, color);
-            }
-            if (y != x) {
-                for (int i = centerX - y; i <= centerX + y; i++) {
-                    image.setPixel(i, centerY + x, color);
-                    image.setPixel(i, centerY - x, color);
-                }
-            }
-            y++;
-
-            if (t < 0) {
-                t = t + 2 * y + 1;
-            } else {
-                x--;
-                t = t + 2 * (y - x) + 1;
-            }
-        }
-
+        Shapes.fillCircle(image, centerX, centerY, radius, color);
     }
 }
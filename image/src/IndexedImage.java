@@ -0,0 +1,470 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code IndexedImage} class represents an image whose pixels are indices into a palette of
+ * up to 256 colors, stored as one byte per pixel. It takes a quarter of the memory of an
+ * {@link Image} holding packed RGB pixels, which suits thumbnails and other images kept in large
+ * numbers.
+ * <p>
+ * {@link #quantize(Image, int, RowBands)} converts an image, choosing its palette with the median
+ * cut algorithm: the colors of the image, counted with 5 bits per channel, are split into boxes
+ * along the channel where they are the most spread, at the median pixel, until there are as many
+ * boxes as palette entries. Each pixel is then given the entry closest to its color, looked up in
+ * a {@link PaletteTree} once for each counted color rather than once per pixel, and each entry is
+ * finally set to the exact average color of the pixels given to it. Both passes over the pixels
+ * process the rows as decided by a {@link RowBands} argument. {@link #toImage()} converts back to
+ * packed RGB.
+ * </p>
+ * <p>
+ * An indexed image lives on the heap, so it holds at most 2<sup>31</sup>-1 pixels.
+ * </p>
+ */
+public class IndexedImage {
+
+    /** The largest number of colors in a palette. */
+    public static final int MAX_COLORS = 256;
+
+    // Colors are counted and looked up with this many bits per channel
+    private static final int BITS = 5;
+    private static final int LEVELS = 1 << BITS;
+
+    private final int width;
+    private final int height;
+    private final byte[] indices;
+    private final int[] palette;
+    private final PaletteTree tree;
+
+    /**
+     * Constructs an {@code IndexedImage} object of the specified width and height, with every
+     * pixel set to the first entry of the palette.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param palette the packed RGB colors of the palette, which are copied
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero, the
+     *         image holds too many pixels, or the palette is empty or has more than
+     *         {@link #MAX_COLORS} colors
+     */
+    public IndexedImage(int width, int height, int[] palette) {
+        this(width, height, palette.clone(), new byte[checkSize(width, height)]);
+    }
+
+    /**
+     * Constructs an {@code IndexedImage} object from its pixels and palette, taking ownership
+     * of both arrays.
+     */
+    private IndexedImage(int width, int height, int[] palette, byte[] indices) {
+        assert palette.length > 0 && palette.length <= MAX_COLORS;
+
+        this.width = width;
+        this.height = height;
+        this.palette = palette;
+        this.indices = indices;
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = palette[i] & 0xffffff;
+        }
+        this.tree = new PaletteTree(palette);
+    }
+
+    /**
+     * Converts an image to an indexed image with a palette of up to 256 colors, processing its
+     * rows sequentially.
+     *
+     * @param image the image to convert
+     * @return a new {@code IndexedImage} object
+     * @throws IllegalArgumentException if the image holds too many pixels
+     */
+    public static IndexedImage quantize(Image image) {
+        return quantize(image, MAX_COLORS, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Converts an image to an indexed image, choosing a palette of up to {@code colors} colors
+     * with the median cut algorithm, and processing its rows as decided by {@code bands}. The
+     * palette is smaller when the image has fewer distinct colors at 5 bits per channel.
+     *
+     * @param image the image to convert
+     * @param colors the largest number of colors in the palette, from 1 to {@link #MAX_COLORS}
+     * @param bands decides how the rows are processed
+     * @return a new {@code IndexedImage} object
+     * @throws IllegalArgumentException if the number of colors is out of range or the image holds
+     *         too many pixels
+     */
+    public static IndexedImage quantize(Image image, int colors, RowBands bands) {
+        assert colors > 0 && colors <= MAX_COLORS;
+
+        int width = image.width();
+        int height = image.height();
+        byte[] indices = new byte[checkSize(width, height)];
+        int[] pixels = image.raster();
+
+        // First pass: count the colors, each band into a partial count of its own
+        int[] counts = new int[LEVELS * LEVELS * LEVELS];
+        bands.forEach(height, (fromRow, toRow) -> {
+            int[] partial = new int[counts.length];
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    partial[cell(pixels != null ? pixels[y*width + x] : image.getRGB(x, y))]++;
+                }
+            }
+            synchronized (counts) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += partial[i];
+                }
+            }
+        });
+
+        int[] palette = medianCut(counts, colors);
+        PaletteTree tree = new PaletteTree(palette);
+
+        // The entry of each counted color, looked up once for all the pixels of that color
+        byte[] lookup = new byte[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                lookup[i] = (byte)tree.nearest(center(i));
+            }
+        }
+
+        // Second pass: give each pixel the entry of its color, and sum the exact colors of the
+        // pixels of each entry
+        long[] sums = new long[palette.length * 4];
+        bands.forEach(height, (fromRow, toRow) -> {
+            long[] partial = new long[sums.length];
+            int pixel, index;
+            for (int y = fromRow; y < toRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    pixel = pixels != null ? pixels[y*width + x] : image.getRGB(x, y);
+                    index = lookup[cell(pixel)] & 0xff;
+                    indices[y*width + x] = (byte)index;
+                    partial[4*index] += Color.red(pixel);
+                    partial[4*index + 1] += Color.green(pixel);
+                    partial[4*index + 2] += Color.blue(pixel);
+                    partial[4*index + 3]++;
+                }
+            }
+            synchronized (sums) {
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += partial[i];
+                }
+            }
+        });
+
+        // Each entry becomes the exact average color of its pixels, which the counted colors
+        // only approximate
+        long count;
+        for (int i = 0; i < palette.length; i++) {
+            count = sums[4*i + 3];
+            if (count > 0) {
+                palette[i] = Color.pack((int)((sums[4*i] + count/2) / count),
+                                        (int)((sums[4*i + 1] + count/2) / count),
+                                        (int)((sums[4*i + 2] + count/2) / count));
+            }
+        }
+        return new IndexedImage(width, height, palette, indices);
+    }
+
+    /**
+     * Returns the width of the image.
+     *
+     * @return the width of the image
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     *
+     * @return the height of the image
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns the number of colors in the palette.
+     *
+     * @return the size of the palette, from 1 to {@link #MAX_COLORS}
+     */
+    public int paletteSize() {
+        return palette.length;
+    }
+
+    /**
+     * Returns the colors of the palette.
+     *
+     * @return a new array holding the packed RGB colors of the palette
+     */
+    public int[] palette() {
+        return palette.clone();
+    }
+
+    /**
+     * Returns the palette index of the pixel at the specified coordinates.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @return the index of the color of the pixel in the palette
+     * @throws IllegalArgumentException if the coordinates are outside the image
+     */
+    public int getIndex(int x, int y) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+
+        return indices[y*width + x] & 0xff;
+    }
+
+    /**
+     * Sets the palette index of the pixel at the specified coordinates.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @param index the index of the new color of the pixel in the palette
+     * @throws IllegalArgumentException if the coordinates are outside the image or the index is
+     *         not in the palette
+     */
+    public void setIndex(int x, int y, int index) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+        assert index >= 0 && index < palette.length;
+
+        indices[y*width + x] = (byte)index;
+    }
+
+    /**
+     * Returns the color of the pixel at the specified coordinates.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @return the packed RGB color of the pixel
+     * @throws IllegalArgumentException if the coordinates are outside the image
+     */
+    public int getRGB(int x, int y) {
+        return palette[getIndex(x, y)];
+    }
+
+    /**
+     * Sets the pixel at the specified coordinates to the palette entry closest to a color.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @param rgb the packed RGB color to approximate
+     * @throws IllegalArgumentException if the coordinates are outside the image
+     */
+    public void setRGB(int x, int y, int rgb) {
+        setIndex(x, y, tree.nearest(rgb));
+    }
+
+    /**
+     * Returns the index of the palette entry closest to a color.
+     *
+     * @param rgb the packed RGB color
+     * @return the index of the closest entry in the palette
+     */
+    public int nearestIndex(int rgb) {
+        return tree.nearest(rgb);
+    }
+
+    /**
+     * Converts the image back to packed RGB pixels, processing its rows sequentially.
+     *
+     * @return a new heap {@code Image} object
+     */
+    public Image toImage() {
+        return toImage(RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Converts the image back to packed RGB pixels, processing its rows as decided by
+     * {@code bands}.
+     *
+     * @param bands decides how the rows are processed
+     * @return a new heap {@code Image} object
+     */
+    public Image toImage(RowBands bands) {
+        Image image = new Image(width, height);
+        int[] pixels = image.raster();
+        bands.forEach(height, (fromRow, toRow) -> {
+            for (int i = fromRow * width; i < toRow * width; i++) {
+                pixels[i] = palette[indices[i] & 0xff];
+            }
+        });
+        return image;
+    }
+
+    /**
+     * Chooses a palette with the median cut algorithm.
+     *
+     * @param counts the number of pixels of each color, counted with {@link #BITS} bits per channel
+     * @param colors the largest number of colors in the palette
+     * @return the packed RGB colors of the palette
+     */
+    private static int[] medianCut(int[] counts, int colors) {
+        int used = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                used++;
+            }
+        }
+        int[] cells = new int[used];
+        used = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                cells[used++] = i;
+            }
+        }
+
+        List<Box> boxes = new ArrayList<>();
+        boxes.add(new Box(cells, counts, 0, cells.length));
+        Box largest;
+        while (boxes.size() < colors) {
+            // Split the box with the most pixels times the longest side, so that both crowded
+            // and widely spread boxes are split
+            largest = null;
+            for (Box box : boxes) {
+                if (box.to - box.from > 1 && (largest == null || box.priority() > largest.priority())) {
+                    largest = box;
+                }
+            }
+            if (largest == null) {
+                break;
+            }
+            boxes.remove(largest);
+            boxes.addAll(largest.split(cells, counts));
+        }
+
+        int[] palette = new int[boxes.size()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = boxes.get(i).average(cells, counts);
+        }
+        return palette;
+    }
+
+    /**
+     * A box of the color cube, holding the counted colors {@code cells[from]} to
+     * {@code cells[to-1]}.
+     */
+    private static final class Box {
+        final int from;
+        final int to;
+        final long pixels;
+        final int[] min = {LEVELS, LEVELS, LEVELS};
+        final int[] max = {-1, -1, -1};
+
+        Box(int[] cells, int[] counts, int from, int to) {
+            this.from = from;
+            this.to = to;
+            long pixels = 0;
+            for (int i = from; i < to; i++) {
+                pixels = pixels + counts[cells[i]];
+                for (int c = 0; c < 3; c++) {
+                    min[c] = Math.min(min[c], level(cells[i], c));
+                    max[c] = Math.max(max[c], level(cells[i], c));
+                }
+            }
+            this.pixels = pixels;
+        }
+
+        /** Returns the channel along which the colors of the box are the most spread. */
+        int axis() {
+            int axis = 0;
+            for (int c = 1; c < 3; c++) {
+                if (max[c] - min[c] > max[axis] - min[axis]) {
+                    axis = c;
+                }
+            }
+            return axis;
+        }
+
+        double priority() {
+            int axis = axis();
+            return (double)pixels * (max[axis] - min[axis] + 1);
+        }
+
+        /**
+         * Sorts the colors of the box along its longest side and splits them in two at the
+         * median pixel, keeping at least one color on each side.
+         */
+        List<Box> split(int[] cells, int[] counts) {
+            int axis = axis();
+
+            // Sort by the level along the axis, kept above the cell in the same int
+            int[] keys = new int[to - from];
+            for (int i = from; i < to; i++) {
+                keys[i - from] = level(cells[i], axis) << (3 * BITS) | cells[i];
+            }
+            Arrays.sort(keys);
+            for (int i = from; i < to; i++) {
+                cells[i] = keys[i - from] & ((1 << (3 * BITS)) - 1);
+            }
+
+            long half = 0;
+            int middle = from + 1;
+            for (int i = from; i < to - 1; i++) {
+                half = half + counts[cells[i]];
+                middle = i + 1;
+                if (2 * half >= pixels) {
+                    break;
+                }
+            }
+            return List.of(new Box(cells, counts, from, middle), new Box(cells, counts, middle, to));
+        }
+
+        /** Returns the average color of the pixels in the box. */
+        int average(int[] cells, int[] counts) {
+            long[] sums = new long[3];
+            for (int i = from; i < to; i++) {
+                for (int c = 0; c < 3; c++) {
+                    sums[c] = sums[c] + (long)counts[cells[i]] * channel(center(cells[i]), c);
+                }
+            }
+            return Color.pack((int)Math.round((double)sums[0] / pixels),
+                              (int)Math.round((double)sums[1] / pixels),
+                              (int)Math.round((double)sums[2] / pixels));
+        }
+    }
+
+    /**
+     * Returns the cell of a color, its channels reduced to {@link #BITS} bits each.
+     */
+    private static int cell(int rgb) {
+        return ((rgb >>> (24 - BITS)) & (LEVELS - 1)) << (2 * BITS)
+             | ((rgb >>> (16 - BITS)) & (LEVELS - 1)) << BITS
+             | ((rgb >>> (8 - BITS)) & (LEVELS - 1));
+    }
+
+    /**
+     * Returns the level of a channel of a cell, from 0 to {@code LEVELS-1}.
+     */
+    private static int level(int cell, int channel) {
+        return (cell >>> (BITS * (2 - channel))) & (LEVELS - 1);
+    }
+
+    /**
+     * Returns the color at the center of a cell.
+     */
+    private static int center(int cell) {
+        int half = 1 << (7 - BITS);
+        return Color.pack(level(cell, 0) << (8 - BITS) | half,
+                          level(cell, 1) << (8 - BITS) | half,
+                          level(cell, 2) << (8 - BITS) | half);
+    }
+
+    private static int channel(int rgb, int channel) {
+        return (rgb >>> (16 - 8*channel)) & 0xff;
+    }
+
+    /**
+     * Checks that an indexed image of the given dimensions fits in an array.
+     *
+     * @return the number of pixels
+     */
+    private static int checkSize(int width, int height) {
+        assert width > 0 && height > 0;
+        assert (long)width * height <= Integer.MAX_VALUE;
+
+        return width * height;
+    }
+}
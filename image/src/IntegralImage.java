@@ -0,0 +1,270 @@
+/**
+ * The {@code IntegralImage} class holds the summed-area tables of an image: for every position,
+ * the sum of each color channel over all pixels above and to the left of it.
+ * <p>
+ * Building the tables takes one pass over the image. Afterwards the sum, and so the average, of
+ * any rectangle of pixels is found with four lookups, whatever its size. This makes operations
+ * that average many regions, such as {@link ImageUtils#boxBlur(Image, int)}, cost the same for
+ * any radius, and lets many region queries on the same image share a single pass.
+ * </p>
+ * <p>
+ * The tables can also hold the sums of the squared channel values, which are needed for the
+ * {@link #variance(int, int, int, int, int)} of a region. They are only built on request, since
+ * they double the memory used. Every table holds {@code long} values, one per pixel plus one extra
+ * row and column, so an image of {@code w x h} pixels takes {@code 24*(w+1)*(h+1)} bytes, or
+ * twice that with squares.
+ * </p>
+ * <p>
+ * The tables reflect the image at the time they were built; later changes to the image are not
+ * seen.
+ * </p>
+ */
+public class IntegralImage {
+
+    /** Selects the red channel. */
+    public static final int RED = 0;
+
+    /** Selects the green channel. */
+    public static final int GREEN = 1;
+
+    /** Selects the blue channel. */
+    public static final int BLUE = 2;
+
+    private final Image source;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final long[][] sums;
+    private final long[][] squares;
+
+    /**
+     * Constructs the summed-area tables of the given image, without squares.
+     *
+     * @param image the image to build the tables of
+     * @throws IllegalArgumentException if the tables would have more than {@code Integer.MAX_VALUE} entries
+     */
+    public IntegralImage(Image image) {
+        this(image, false, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Constructs the summed-area tables of the given image, processing its rows as decided by
+     * {@code bands}.
+     *
+     * @param image the image to build the tables of
+     * @param squares {@code true} to also build the tables of squared values, needed by
+     *                {@link #variance(int, int, int, int, int)}
+     * @param bands decides how the rows are processed
+     * @throws IllegalArgumentException if the tables would have more than {@code Integer.MAX_VALUE} entries
+     */
+    public IntegralImage(Image image, boolean squares, RowBands bands) {
+        assert (long)(image.width() + 1) * (image.height() + 1) <= Integer.MAX_VALUE;
+
+        this.source = image;
+        this.width = image.width();
+        this.height = image.height();
+        this.stride = width + 1;
+
+        int size = stride * (height + 1);
+        this.sums = new long[][] {new long[size], new long[size], new long[size]};
+        this.squares = squares ? new long[][] {new long[size], new long[size], new long[size]} : null;
+
+        // First pass: running sums along each row, stored one row down and one column right
+        bands.forEach(height, (fromRow, toRow) -> {
+            int pixel, index;
+            int red, green, blue;
+            for (int y = fromRow; y < toRow; y++) {
+                index = (y + 1) * stride + 1;
+                for (int x = 0; x < width; x++) {
+                    pixel = image.getRGB(x, y);
+                    red = Color.red(pixel);
+                    green = Color.green(pixel);
+                    blue = Color.blue(pixel);
+
+                    sums[RED][index] = sums[RED][index - 1] + red;
+                    sums[GREEN][index] = sums[GREEN][index - 1] + green;
+                    sums[BLUE][index] = sums[BLUE][index - 1] + blue;
+                    if (this.squares != null) {
+                        this.squares[RED][index] = this.squares[RED][index - 1] + red * red;
+                        this.squares[GREEN][index] = this.squares[GREEN][index - 1] + green * green;
+                        this.squares[BLUE][index] = this.squares[BLUE][index - 1] + blue * blue;
+                    }
+                    index++;
+                }
+            }
+        });
+
+        // Second pass: add up the rows, each band of columns going down the whole table
+        bands.forEach(stride, (fromColumn, toColumn) -> {
+            for (int y = 2; y <= height; y++) {
+                for (int x = fromColumn; x < toColumn; x++) {
+                    addRowAbove(sums, y * stride + x);
+                    if (this.squares != null) {
+                        addRowAbove(this.squares, y * stride + x);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the width of the image the tables were built from.
+     *
+     * @return the width of the image
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image the tables were built from.
+     *
+     * @return the height of the image
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns whether the tables of squared values were built.
+     *
+     * @return {@code true} if {@link #variance(int, int, int, int, int)} can be used
+     */
+    public boolean hasSquares() {
+        return squares != null;
+    }
+
+    /**
+     * Returns the image the tables were built from.
+     *
+     * @return the source image
+     */
+    Image source() {
+        return source;
+    }
+
+    /**
+     * Returns the sum of a color channel over a rectangle of pixels.
+     *
+     * @param channel the channel to sum, {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the sum of the channel over the rectangle
+     * @throws IllegalArgumentException if the channel is invalid or the rectangle is not inside the image
+     */
+    public long sum(int channel, int x, int y, int width, int height) {
+        assert channel >= RED && channel <= BLUE;
+        checkRegion(x, y, width, height);
+
+        return lookup(sums[channel], x, y, width, height);
+    }
+
+    /**
+     * Returns the average color of a rectangle of pixels. Each channel is rounded down, the same
+     * way as {@link ImageUtils#averageColor(Image)}.
+     *
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the combined RGB value of the average color
+     * @throws IllegalArgumentException if the rectangle is empty or not inside the image
+     */
+    public int average(int x, int y, int width, int height) {
+        assert width > 0 && height > 0;
+        checkRegion(x, y, width, height);
+
+        long count = (long)width * height;
+        return Color.pack((int)(lookup(sums[RED], x, y, width, height)/count),
+                          (int)(lookup(sums[GREEN], x, y, width, height)/count),
+                          (int)(lookup(sums[BLUE], x, y, width, height)/count));
+    }
+
+    /**
+     * Returns the mean of a color channel over a rectangle of pixels.
+     *
+     * @param channel the channel, {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the mean value of the channel, from 0 to 255
+     * @throws IllegalArgumentException if the channel is invalid, or the rectangle is empty or not inside the image
+     */
+    public double mean(int channel, int x, int y, int width, int height) {
+        assert width > 0 && height > 0;
+
+        return (double)sum(channel, x, y, width, height) / ((long)width * height);
+    }
+
+    /**
+     * Returns the population variance of a color channel over a rectangle of pixels.
+     *
+     * @param channel the channel, {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the variance of the channel
+     * @throws IllegalArgumentException if the channel is invalid, or the rectangle is empty or not inside the image
+     * @throws IllegalStateException if the tables of squared values were not built
+     */
+    public double variance(int channel, int x, int y, int width, int height) {
+        if (squares == null) {
+            throw new IllegalStateException("Integral image was built without squares");
+        }
+        assert width > 0 && height > 0;
+
+        long count = (long)width * height;
+        long sum = sum(channel, x, y, width, height);
+        long sumOfSquares = lookup(squares[channel], x, y, width, height);
+
+        // Computed in double, since count * sumOfSquares can overflow a long on large regions
+        double mean = (double)sum / count;
+        return Math.max(0.0, (double)sumOfSquares / count - mean * mean);
+    }
+
+    /**
+     * Returns the population standard deviation of a color channel over a rectangle of pixels.
+     *
+     * @param channel the channel, {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the standard deviation of the channel
+     * @throws IllegalArgumentException if the channel is invalid, or the rectangle is empty or not inside the image
+     * @throws IllegalStateException if the tables of squared values were not built
+     */
+    public double standardDeviation(int channel, int x, int y, int width, int height) {
+        return Math.sqrt(variance(channel, x, y, width, height));
+    }
+
+    /**
+     * Adds the entry one row up to the entry at the given index, in every channel.
+     */
+    private void addRowAbove(long[][] tables, int index) {
+        for (long[] table : tables) {
+            table[index] = table[index] + table[index - stride];
+        }
+    }
+
+    /**
+     * Returns the sum stored in a table over a rectangle, from the entries at its four corners.
+     */
+    private long lookup(long[] table, int x, int y, int width, int height) {
+        int top = y * stride;
+        int bottom = (y + height) * stride;
+        return table[bottom + x + width] - table[top + x + width] - table[bottom + x] + table[top + x];
+    }
+
+    /**
+     * Checks that a rectangle lies inside the image.
+     */
+    private void checkRegion(int x, int y, int width, int height) {
+        assert x >= 0 && width >= 0 && x + width <= this.width;
+        assert y >= 0 && height >= 0 && y + height <= this.height;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * The {@code PaletteTree} class finds the palette entry closest to a color, the distance between
+ * two colors being the Euclidean distance between their red, green and blue values.
+ * <p>
+ * The entries are arranged in a k-d tree: every node splits the entries below it into those
+ * before and those after its own along the channel where they are the most spread. A search
+ * walks down to the entry nearest in that order, then only visits the other side of a node if
+ * the splitting plane is closer than the best entry found so far, so that most searches look
+ * at a handful of entries instead of the whole palette.
+ * </p>
+ */
+class PaletteTree {
+
+    private final int[] palette;
+
+    // The tree is stored implicitly: the node of the range from lo to hi exclusive is the entry
+    // at the middle of the range, and its two halves are the subtrees before and after it
+    private final int[] entries;
+    private final int[] axes;
+
+    /**
+     * Builds the tree of a palette.
+     *
+     * @param palette the packed RGB colors of the palette, which must not be changed afterwards
+     */
+    PaletteTree(int[] palette) {
+        assert palette.length > 0;
+
+        this.palette = palette;
+        this.entries = new int[palette.length];
+        this.axes = new int[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            entries[i] = i;
+        }
+        build(0, palette.length);
+    }
+
+    /**
+     * Returns the index of the palette entry closest to a color. When several entries are as
+     * close, any one of them is returned.
+     *
+     * @param rgb the packed RGB color
+     * @return the index of the closest entry
+     */
+    int nearest(int rgb) {
+        // best[0] is the index of the best entry found, best[1] its squared distance
+        int[] best = {entries[0], Integer.MAX_VALUE};
+        search(0, entries.length, Color.red(rgb), Color.green(rgb), Color.blue(rgb), best);
+        return best[0];
+    }
+
+    /**
+     * Arranges the entries of a range so that its middle entry splits the others along the
+     * channel where they are the most spread, and does the same for both halves.
+     */
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+
+        int[] min = {255, 255, 255};
+        int[] max = {0, 0, 0};
+        int value;
+        for (int i = lo; i < hi; i++) {
+            for (int c = 0; c < 3; c++) {
+                value = channel(palette[entries[i]], c);
+                min[c] = Math.min(min[c], value);
+                max[c] = Math.max(max[c], value);
+            }
+        }
+        int axis = 0;
+        for (int c = 1; c < 3; c++) {
+            if (max[c] - min[c] > max[axis] - min[axis]) {
+                axis = c;
+            }
+        }
+
+        // Insertion sort along the axis; ranges hold at most 256 entries
+        int entry, j;
+        for (int i = lo + 1; i < hi; i++) {
+            entry = entries[i];
+            value = channel(palette[entry], axis);
+            for (j = i - 1; j >= lo && channel(palette[entries[j]], axis) > value; j--) {
+                entries[j + 1] = entries[j];
+            }
+            entries[j + 1] = entry;
+        }
+
+        int middle = (lo + hi) >>> 1;
+        axes[middle] = axis;
+        build(lo, middle);
+        build(middle + 1, hi);
+    }
+
+    /**
+     * Searches a range of the tree for an entry closer than the best one found so far.
+     */
+    private void search(int lo, int hi, int red, int green, int blue, int[] best) {
+        if (lo >= hi) {
+            return;
+        }
+
+        int middle = (lo + hi) >>> 1;
+        int color = palette[entries[middle]];
+        int dr = Color.red(color) - red;
+        int dg = Color.green(color) - green;
+        int db = Color.blue(color) - blue;
+        int distance = dr*dr + dg*dg + db*db;
+        if (distance < best[1]) {
+            best[0] = entries[middle];
+            best[1] = distance;
+        }
+
+        int axis = axes[middle];
+        int offset = (axis == 0 ? red : axis == 1 ? green : blue) - channel(color, axis);
+        if (offset < 0) {
+            search(lo, middle, red, green, blue, best);
+            if (offset * offset < best[1]) {
+                search(middle + 1, hi, red, green, blue, best);
+            }
+        } else {
+            search(middle + 1, hi, red, green, blue, best);
+            if (offset * offset < best[1]) {
+                search(lo, middle, red, green, blue, best);
+            }
+        }
+    }
+
+    private static int channel(int rgb, int channel) {
+        return (rgb >>> (16 - 8*channel)) & 0xff;
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * The {@code PerceptualHash} class computes 64-bit perceptual hashes of images, which stay the
+ * same or nearly the same when an image is resized, recompressed or slightly retouched, so that
+ * near-duplicate images can be found by comparing hashes instead of pixels.
+ * <p>
+ * Every hash is computed from a small grayscale copy of the image: the image is reduced with
+ * {@link ImageUtils#resize(Image, int, int, ResizeFilter)}, which averages every source pixel
+ * into the result, and each pixel of the copy is turned into its luminosity. Each hash then sets
+ * one bit per feature of the copy, the first feature in the highest bit:
+ * </p>
+ * <ul>
+ *     <li>{@link #averageHash(Image)} compares each pixel of an 8x8 copy to their mean</li>
+ *     <li>{@link #differenceHash(Image)} compares each pixel of a 9x8 copy to the pixel on its
+ *     right</li>
+ *     <li>{@link #perceptualHash(Image)} compares the 64 lowest frequencies of the discrete
+ *     cosine transform of a 32x32 copy to their median</li>
+ * </ul>
+ * <p>
+ * Two images are similar when the {@link #distance(long, long)} between their hashes, the number
+ * of bits that differ, is small; a distance up to about 10 usually means the same picture. Only
+ * hashes of the same kind can be compared. {@link HashIndex} finds the stored hashes within a
+ * distance of a hash without comparing it to all of them.
+ * </p>
+ */
+public class PerceptualHash {
+
+    /** The width and height of the features a hash is made of; a hash has {@code SIZE*SIZE} bits. */
+    public static final int SIZE = 8;
+
+    /** The width and height of the grayscale copy transformed by {@link #perceptualHash(Image)}. */
+    public static final int DCT_SIZE = 32;
+
+    // COSINES[u * DCT_SIZE + x] is the weight of sample x in the frequency u of the transform
+    private static final double[] COSINES = new double[SIZE * DCT_SIZE];
+
+    static {
+        for (int u = 0; u < SIZE; u++) {
+            for (int x = 0; x < DCT_SIZE; x++) {
+                COSINES[u * DCT_SIZE + x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * DCT_SIZE));
+            }
+        }
+    }
+
+    /**
+     * Computes the average hash of an image: bit {@code y*8+x}, counted from the highest, is set
+     * when the pixel at {@code (x, y)} of an 8x8 grayscale copy of the image is brighter than the
+     * mean of the copy. It is the fastest hash, and the most sensitive to changes of brightness
+     * and contrast that are not uniform.
+     *
+     * @param image the {@code Image} object to hash
+     * @return the 64-bit hash
+     */
+    public static long averageHash(Image image) {
+        double[] gray = grayscale(image, SIZE, SIZE);
+        double mean = 0;
+        for (int i = 0; i < gray.length; i++) {
+            mean = mean + gray[i];
+        }
+        mean = mean / gray.length;
+
+        long hash = 0;
+        for (int i = 0; i < gray.length; i++) {
+            hash = (hash << 1) | (gray[i] > mean ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the difference hash of an image: bit {@code y*8+x}, counted from the highest, is
+     * set when the pixel at {@code (x, y)} of a 9x8 grayscale copy of the image is brighter than
+     * the pixel at {@code (x+1, y)}. It follows the gradients of the image, so it does not change
+     * with its brightness or contrast.
+     *
+     * @param image the {@code Image} object to hash
+     * @return the 64-bit hash
+     */
+    public static long differenceHash(Image image) {
+        double[] gray = grayscale(image, SIZE + 1, SIZE);
+
+        long hash = 0;
+        int i;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                i = y * (SIZE + 1) + x;
+                hash = (hash << 1) | (gray[i] > gray[i + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the perceptual hash of an image: bit {@code v*8+u}, counted from the highest, is
+     * set when the coefficient of the horizontal frequency {@code u} and the vertical frequency
+     * {@code v} of the discrete cosine transform of a 32x32 grayscale copy of the image is greater
+     * than the median of the 64 lowest coefficients, the constant one excepted. It only looks at
+     * the coarse structure of the image, so it is the hash that best resists blurring, noise,
+     * recompression and changes of brightness or contrast, and the slowest.
+     *
+     * @param image the {@code Image} object to hash
+     * @return the 64-bit hash
+     */
+    public static long perceptualHash(Image image) {
+        double[] gray = grayscale(image, DCT_SIZE, DCT_SIZE);
+
+        // The transform is separable: the rows are transformed first, keeping their 8 lowest
+        // frequencies, and then the columns of the result
+        double[] rows = new double[DCT_SIZE * SIZE];
+        double sum;
+        for (int y = 0; y < DCT_SIZE; y++) {
+            for (int u = 0; u < SIZE; u++) {
+                sum = 0;
+                for (int x = 0; x < DCT_SIZE; x++) {
+                    sum = sum + COSINES[u * DCT_SIZE + x] * gray[y * DCT_SIZE + x];
+                }
+                rows[y * SIZE + u] = sum;
+            }
+        }
+        double[] coefficients = new double[SIZE * SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            for (int u = 0; u < SIZE; u++) {
+                sum = 0;
+                for (int y = 0; y < DCT_SIZE; y++) {
+                    sum = sum + COSINES[v * DCT_SIZE + y] * rows[y * SIZE + u];
+                }
+                coefficients[v * SIZE + u] = sum;
+            }
+        }
+
+        // The constant coefficient only measures the brightness, and would skew the median
+        double[] sorted = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            hash = (hash << 1) | (coefficients[i] > median ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the Hamming distance between two hashes, the number of bits in which they differ.
+     *
+     * @param hash the first hash
+     * @param other the second hash
+     * @return the distance, from 0 for equal hashes to 64
+     */
+    public static int distance(long hash, long other) {
+        return Long.bitCount(hash ^ other);
+    }
+
+    /**
+     * Reduces an image to the given size and returns the luminosity of each pixel of the result,
+     * row by row, computed as in {@link ImageUtils#grayscaleLuminosity(Image)} but not rounded.
+     */
+    private static double[] grayscale(Image image, int width, int height) {
+        Image small = ImageUtils.resize(image, width, height, ResizeFilter.BILINEAR);
+        double[] gray = new double[width * height];
+        int rgb;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rgb = small.getRGB(x, y);
+                gray[y * width + x] = Color.red(rgb) * 0.3 + Color.green(rgb) * 0.59 + Color.blue(rgb) * 0.11;
+            }
+        }
+        return gray;
+    }
+}
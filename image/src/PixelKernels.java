@@ -0,0 +1,150 @@
+/**
+ * The {@code PixelKernels} class applies the color operations of {@link PixelOps} to whole runs
+ * of packed pixels at once.
+ * <p>
+ * Each kernel reads the pixels {@code src[from]} to {@code src[to-1]} and writes the results to
+ * the same positions of {@code dst}; {@code src} and {@code dst} may be the same array. When the
+ * {@code jdk.incubator.vector} module is present, which requires running with
+ * {@code --add-modules jdk.incubator.vector}, the kernels process as many pixels per instruction
+ * as the vector registers of the processor hold. Otherwise they fall back to calling
+ * {@code PixelOps} on one pixel at a time. Both paths give exactly the same results.
+ * </p>
+ */
+public class PixelKernels {
+
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * A kernel applying a color operation to a run of packed pixels.
+     */
+    @FunctionalInterface
+    public interface Kernel {
+
+        /**
+         * Applies the operation to the pixels {@code src[from]} to {@code src[to-1]}.
+         *
+         * @param src the packed RGB pixels to read
+         * @param dst the array the results are written to, at the same positions
+         * @param from the index of the first pixel, inclusive
+         * @param to the index of the last pixel, exclusive
+         */
+        void apply(int[] src, int[] dst, int from, int to);
+    }
+
+    /**
+     * Returns whether the kernels use the Vector API.
+     *
+     * @return {@code true} if the {@code jdk.incubator.vector} module is present
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Switches the red and green channels of a run of pixels, like {@link PixelOps#switchRedGreen(int)}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public static void switchRedGreen(int[] src, int[] dst, int from, int to) {
+        if (VECTORIZED) {
+            VectorPixelKernels.switchRedGreen(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = PixelOps.switchRedGreen(src[i]);
+        }
+    }
+
+    /**
+     * Switches the red and blue channels of a run of pixels, like {@link PixelOps#switchRedBlue(int)}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public static void switchRedBlue(int[] src, int[] dst, int from, int to) {
+        if (VECTORIZED) {
+            VectorPixelKernels.switchRedBlue(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = PixelOps.switchRedBlue(src[i]);
+        }
+    }
+
+    /**
+     * Switches the green and blue channels of a run of pixels, like {@link PixelOps#switchGreenBlue(int)}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public static void switchGreenBlue(int[] src, int[] dst, int from, int to) {
+        if (VECTORIZED) {
+            VectorPixelKernels.switchGreenBlue(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = PixelOps.switchGreenBlue(src[i]);
+        }
+    }
+
+    /**
+     * Converts a run of pixels to gray, like {@link PixelOps#grayscaleAverage(int)}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public static void grayscaleAverage(int[] src, int[] dst, int from, int to) {
+        if (VECTORIZED) {
+            VectorPixelKernels.grayscaleAverage(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = PixelOps.grayscaleAverage(src[i]);
+        }
+    }
+
+    /**
+     * Converts a run of pixels to gray, like {@link PixelOps#grayscaleLightness(int)}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public static void grayscaleLightness(int[] src, int[] dst, int from, int to) {
+        if (VECTORIZED) {
+            VectorPixelKernels.grayscaleLightness(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = PixelOps.grayscaleLightness(src[i]);
+        }
+    }
+
+    /**
+     * Converts a run of pixels to gray, like {@link PixelOps#grayscaleLuminosity(int)}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public static void grayscaleLuminosity(int[] src, int[] dst, int from, int to) {
+        if (VECTORIZED) {
+            VectorPixelKernels.grayscaleLuminosity(src, dst, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            dst[i] = PixelOps.grayscaleLuminosity(src[i]);
+        }
+    }
+}
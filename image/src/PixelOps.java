@@ -0,0 +1,82 @@
+/**
+ * The {@code PixelOps} class collects the per-pixel color operations used by {@link ImageUtils}.
+ * <p>
+ * Each method maps the packed RGB value of one pixel to a new packed RGB value, without looking
+ * at any other pixel. Keeping them in one place lets whole-image operations and fused pipelines
+ * such as {@link ImagePipeline} share the exact same arithmetic.
+ * </p>
+ */
+public class PixelOps {
+
+    /**
+     * Switches the red and green channels of a packed RGB value.
+     *
+     * @param rgb the combined RGB value
+     * @return the combined RGB value with the red and green channels swapped
+     */
+    public static int switchRedGreen(int rgb) {
+        return Color.pack(Color.green(rgb), Color.red(rgb), Color.blue(rgb));
+    }
+
+    /**
+     * Switches the red and blue channels of a packed RGB value.
+     *
+     * @param rgb the combined RGB value
+     * @return the combined RGB value with the red and blue channels swapped
+     */
+    public static int switchRedBlue(int rgb) {
+        return Color.pack(Color.blue(rgb), Color.green(rgb), Color.red(rgb));
+    }
+
+    /**
+     * Switches the green and blue channels of a packed RGB value.
+     *
+     * @param rgb the combined RGB value
+     * @return the combined RGB value with the green and blue channels swapped
+     */
+    public static int switchGreenBlue(int rgb) {
+        return Color.pack(Color.red(rgb), Color.blue(rgb), Color.green(rgb));
+    }
+
+    /**
+     * Converts a packed RGB value to gray using the average of its channels.
+     *
+     * @param rgb the combined RGB value
+     * @return the combined RGB value of the gray color
+     */
+    public static int grayscaleAverage(int rgb) {
+        int gray = (Color.red(rgb) + Color.green(rgb) + Color.blue(rgb))/3;
+        return Color.pack(gray, gray, gray);
+    }
+
+    /**
+     * Converts a packed RGB value to gray using the average of its largest and smallest channel.
+     *
+     * @param rgb the combined RGB value
+     * @return the combined RGB value of the gray color
+     */
+    public static int grayscaleLightness(int rgb) {
+        int red = Color.red(rgb);
+        int green = Color.green(rgb);
+        int blue = Color.blue(rgb);
+        int max = Math.max(red, Math.max(green, blue));
+        int min = Math.min(red, Math.min(green, blue));
+        int gray = (min+max)/2;
+        return Color.pack(gray, gray, gray);
+    }
+
+    /**
+     * Converts a packed RGB value to gray using the weighted sum of its channels
+     * (0.3 for red, 0.59 for green, and 0.11 for blue).
+     *
+     * @param rgb the combined RGB value
+     * @return the combined RGB value of the gray color
+     */
+    public static int grayscaleLuminosity(int rgb) {
+        double red = (double)Color.red(rgb)*0.3;
+        double green = (double)Color.green(rgb)*0.59;
+        double blue = (double)Color.blue(rgb)*0.11;
+        int gray = (int)(red+green+blue);
+        return Color.pack(gray, gray, gray);
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code RasterFile} class reads and writes images in a raw raster file format that can be
+ * mapped straight into memory.
+ * <p>
+ * Decoding a PNG or JPEG file means reading and decompressing all of it onto the heap. A raster
+ * file instead stores the pixels exactly as an {@code Image} keeps them, so opening one only maps
+ * the file: the operating system loads pages of pixels on demand, the first time they are read,
+ * and writes modified pages back to the file.
+ * </p>
+ * <p>
+ * A raster file starts with a header of {@link #HEADER_SIZE} bytes holding little-endian
+ * {@code int} values:
+ * </p>
+ * <ul>
+ *     <li>the magic number {@link #MAGIC}, the characters {@code RAST}</li>
+ *     <li>the format version, {@link #VERSION}</li>
+ *     <li>the width of the image</li>
+ *     <li>the height of the image</li>
+ *     <li>the channel layout of a pixel; {@link #LAYOUT_XRGB} is the only one defined</li>
+ * </ul>
+ * <p>
+ * The rest of the header is zero. It is followed by the pixels, row by row, each pixel being a
+ * little-endian packed RGB value.
+ * </p>
+ */
+public class RasterFile {
+
+    /** The magic number a raster file starts with. */
+    public static final int MAGIC = 0x52415354;
+
+    /** The version of the format written by this class. */
+    public static final int VERSION = 1;
+
+    /** The size of the header in bytes. The pixels start right after it. */
+    public static final int HEADER_SIZE = 64;
+
+    /** Channel layout of a pixel stored as one 32-bit value {@code 0x00RRGGBB}, whose top byte is ignored. */
+    public static final int LAYOUT_XRGB = 1;
+
+    private static final ValueLayout.OfInt HEADER_INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private static final long MAGIC_OFFSET = 0;
+    private static final long VERSION_OFFSET = 4;
+    private static final long WIDTH_OFFSET = 8;
+    private static final long HEIGHT_OFFSET = 12;
+    private static final long LAYOUT_OFFSET = 16;
+
+    /**
+     * Opens a raster file by mapping it into memory.
+     *
+     * @param path the raster file to open
+     * @param writable {@code true} to map the file read-write, {@code false} to map it read-only
+     * @return an {@code Image} object backed by the mapped file, which must be closed to release
+     *         the mapping
+     * @throws IOException if the file can not be read or is not a raster file
+     */
+    public static Image open(Path path, boolean writable) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException(path + " is too short to be a raster file");
+            }
+
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            MemorySegment file = channel.map(mode, 0, fileSize, arena);
+            checkHeader(file, path);
+            int width = file.get(HEADER_INT, WIDTH_OFFSET);
+            int height = file.get(HEADER_INT, HEIGHT_OFFSET);
+
+            if (fileSize < HEADER_SIZE + pixelBytes(width, height)) {
+                throw new IOException(path + " is truncated");
+            }
+
+            MemorySegment pixels = file.asSlice(HEADER_SIZE, pixelBytes(width, height));
+            return new Image(width, height, pixels, arena, file);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new raster file of the given dimensions, with every pixel black, and maps it
+     * read-write into memory. The file is replaced if it already exists.
+     *
+     * @param path the raster file to create
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return an {@code Image} object backed by the mapped file, which must be closed to release
+     *         the mapping
+     * @throws IOException if the file can not be written
+     */
+    public static Image create(Path path, int width, int height) throws IOException {
+        assert width > 0;
+        assert height > 0;
+
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = HEADER_SIZE + pixelBytes(width, height);
+            MemorySegment file = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize, arena);
+
+            file.set(HEADER_INT, MAGIC_OFFSET, MAGIC);
+            file.set(HEADER_INT, VERSION_OFFSET, VERSION);
+            writeDimensions(file, width, height);
+            file.set(HEADER_INT, LAYOUT_OFFSET, LAYOUT_XRGB);
+
+            MemorySegment pixels = file.asSlice(HEADER_SIZE, pixelBytes(width, height));
+            return new Image(width, height, pixels, arena, file);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Saves an image to a raster file, replacing the file if it already exists.
+     *
+     * @param image the image to save
+     * @param path the raster file to write
+     * @throws IOException if the file can not be written
+     */
+    public static void save(Image image, Path path) throws IOException {
+        long count = (long)image.width() * image.height();
+        long rowBytes = image.width() * Image.PIXEL.byteSize();
+
+        try (Image file = create(path, image.width(), image.height())) {
+            if (image.rowOffset(0) == 0 && image.rowOffset(1) == image.width()) {
+                MemorySegment.copy(image.memory(), image.layout(), 0, file.memory(), Image.PIXEL, 0, count);
+                return;
+            }
+            // The rows of a view are apart in the memory of its parent, so they are copied one by one
+            for (int y = 0; y < image.height(); y++) {
+                MemorySegment.copy(image.memory(), image.layout(), image.rowOffset(y) * Image.PIXEL.byteSize(),
+                                   file.memory(), Image.PIXEL, y * rowBytes, image.width());
+            }
+        }
+    }
+
+    /**
+     * Reads and checks the header of a raster file from a channel, leaving the channel at the
+     * first pixel. Used to stream the pixels without mapping the file.
+     *
+     * @param channel the channel to read from
+     * @return the width and height of the image, as {@code {width, height}}
+     * @throws IOException if the channel can not be read or does not hold a raster file
+     */
+    static int[] readHeader(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Stream is too short to be a raster file");
+            }
+        }
+
+        MemorySegment header = MemorySegment.ofBuffer(buffer.clear());
+        checkHeader(header, "Stream");
+        return new int[] {header.get(HEADER_INT, WIDTH_OFFSET), header.get(HEADER_INT, HEIGHT_OFFSET)};
+    }
+
+    /**
+     * Writes the header of a raster file to a channel. The pixels must be written right after it.
+     *
+     * @param channel the channel to write to
+     * @param width the width of the image
+     * @param height the height of the image
+     * @throws IOException if the channel can not be written
+     */
+    static void writeHeader(WritableByteChannel channel, int width, int height) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        MemorySegment header = MemorySegment.ofBuffer(buffer);
+
+        header.set(HEADER_INT, MAGIC_OFFSET, MAGIC);
+        header.set(HEADER_INT, VERSION_OFFSET, VERSION);
+        writeDimensions(header, width, height);
+        header.set(HEADER_INT, LAYOUT_OFFSET, LAYOUT_XRGB);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Checks the magic number, version, channel layout and dimensions in a raster file header.
+     *
+     * @param header the header, at least {@link #HEADER_SIZE} bytes long
+     * @param source the file or stream the header comes from, used in error messages
+     * @throws IOException if the header is not a valid raster file header
+     */
+    private static void checkHeader(MemorySegment header, Object source) throws IOException {
+        int width = header.get(HEADER_INT, WIDTH_OFFSET);
+        int height = header.get(HEADER_INT, HEIGHT_OFFSET);
+
+        if (header.get(HEADER_INT, MAGIC_OFFSET) != MAGIC) {
+            throw new IOException(source + " is not a raster file");
+        }
+        if (header.get(HEADER_INT, VERSION_OFFSET) != VERSION) {
+            throw new IOException(source + " has unsupported raster file version " + header.get(HEADER_INT, VERSION_OFFSET));
+        }
+        if (header.get(HEADER_INT, LAYOUT_OFFSET) != LAYOUT_XRGB) {
+            throw new IOException(source + " has unsupported channel layout " + header.get(HEADER_INT, LAYOUT_OFFSET));
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IOException(source + " has invalid dimensions " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Writes new dimensions into the header of a mapped raster file, used when an image is
+     * rotated in-place.
+     *
+     * @param file the mapped raster file
+     * @param width the new width of the image
+     * @param height the new height of the image
+     */
+    static void writeDimensions(MemorySegment file, int width, int height) {
+        file.set(HEADER_INT, WIDTH_OFFSET, width);
+        file.set(HEADER_INT, HEIGHT_OFFSET, height);
+    }
+
+    /**
+     * Returns the number of bytes taken by the pixels of an image.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the size of the pixels in bytes
+     */
+    private static long pixelBytes(int width, int height) {
+        return (long)width * height * Image.PIXEL.byteSize();
+    }
+}
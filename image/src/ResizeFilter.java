@@ -0,0 +1,68 @@
+/**
+ * The {@code ResizeFilter} enum lists the filters {@link ImageUtils#resize(Image, int, int, ResizeFilter)}
+ * can interpolate with, from the fastest to the sharpest.
+ * <p>
+ * Each filter is a weight function of the distance, in source pixels, between a source pixel and
+ * the point being interpolated. When an image is reduced, the function is widened by the reduction
+ * factor, so that every source pixel contributes to the result.
+ * </p>
+ */
+public enum ResizeFilter {
+
+    /** Takes the source pixel closest to each result pixel, without averaging. */
+    NEAREST(0.5),
+
+    /** Interpolates linearly between the two closest source pixels along each axis. */
+    BILINEAR(1.0),
+
+    /** Interpolates with the cubic convolution of Keys, with {@code a = -0.5}, over four source pixels. */
+    BICUBIC(2.0),
+
+    /** Interpolates with a Lanczos window of three lobes over six source pixels. */
+    LANCZOS3(3.0);
+
+    private final double support;
+
+    ResizeFilter(double support) {
+        this.support = support;
+    }
+
+    /**
+     * Returns the distance beyond which the weight function is zero.
+     *
+     * @return the radius of the filter, in source pixels
+     */
+    public double support() {
+        return support;
+    }
+
+    /**
+     * Returns the weight of a source pixel at the given distance from the interpolated point.
+     *
+     * @param x the signed distance, in source pixels
+     * @return the weight of the source pixel, before normalization
+     */
+    public double weight(double x) {
+        double t = Math.abs(x);
+        switch (this) {
+            case NEAREST:
+                return x >= -0.5 && x < 0.5 ? 1.0 : 0.0;
+            case BILINEAR:
+                return t < 1.0 ? 1.0 - t : 0.0;
+            case BICUBIC:
+                if (t < 1.0) {
+                    return (1.5*t - 2.5)*t*t + 1.0;
+                }
+                return t < 2.0 ? ((-0.5*t + 2.5)*t - 4.0)*t + 2.0 : 0.0;
+            default:
+                if (t == 0.0) {
+                    return 1.0;
+                }
+                return t < 3.0 ? sinc(t) * sinc(t / 3.0) : 0.0;
+        }
+    }
+
+    private static double sinc(double x) {
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+}
@@ -0,0 +1,460 @@
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@code ResultCache} class remembers the results of image operations, so that applying the
+ * same operation to an image with the same pixels again returns the stored result instead of
+ * computing it.
+ * <p>
+ * A result is found by the content of its source and the name of the operation: the width, the
+ * height and a 128-bit hash of the RGB values of the pixels of the source, computed in one pass
+ * over them, and a string naming the operation and its parameters, such as
+ * {@code "gaussianBlur(2.0)"} or {@code "grayscaleLuminosity|rotateLeft"} for a chain. The caller chooses the names, and must
+ * give different names to operations with different results.
+ * </p>
+ * <p>
+ * Results are kept in memory up to a budget of bytes, the least recently used being evicted
+ * first. With a spill directory, evicted results are written there as {@link RasterFile raster
+ * files}, up to a second budget, and read back on the next request for them. The cache counts
+ * the requests answered from memory, from disk and by computing, and the bytes it holds in each
+ * tier.
+ * </p>
+ * <p>
+ * A hit returns a {@link Image#view(int, int, int, int) view} of the stored result, which copies
+ * its pixels before its first change, so the result can be used and changed like a computed one
+ * without affecting the cache. Any number of threads may use a cache at once; the operations run
+ * outside its lock, so two threads asking for the same missing result both compute it.
+ * </p>
+ */
+public class ResultCache implements AutoCloseable {
+
+    /** The suffix of the files results are spilled to. */
+    public static final String SPILL_SUFFIX = ".rast";
+
+    private static final long MULTIPLIER_0 = 0x9e3779b97f4a7c15L;
+    private static final long MULTIPLIER_1 = 0xc2b2ae3d27d4eb4fL;
+    private static final ValueLayout.OfLong TWO_PIXELS = ValueLayout.JAVA_LONG_UNALIGNED;
+    // Only the RGB bits of the pixels are hashed, so that a top byte left by a conversion does
+    // not change the key
+    private static final long TWO_RGB_VALUES = 0x00ffffff00ffffffL;
+
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final long diskBudget;
+
+    // Both maps are in access order, so their first entry is the least recently used one
+    private final LinkedHashMap<Key, Image> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, Path> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private long spillCount;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * The content of a source and the name of an operation applied to it.
+     */
+    private static final class Key {
+        private final int width;
+        private final int height;
+        private final long hash0;
+        private final long hash1;
+        private final String operation;
+
+        private Key(int width, int height, long hash0, long hash1, String operation) {
+            this.width = width;
+            this.height = height;
+            this.hash0 = hash0;
+            this.hash1 = hash1;
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key)other;
+            return width == key.width && height == key.height && hash0 == key.hash0
+                && hash1 == key.hash1 && operation.equals(key.operation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash0) * 31 + operation.hashCode();
+        }
+    }
+
+    /**
+     * Constructs a {@code ResultCache} object keeping results in memory only.
+     *
+     * @param memoryBudget the largest number of bytes of pixels kept in memory
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public ResultCache(long memoryBudget) {
+        assert memoryBudget >= 0;
+
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = null;
+        this.diskBudget = 0;
+    }
+
+    /**
+     * Constructs a {@code ResultCache} object spilling the results evicted from memory to a
+     * directory. The spilled files are deleted when the cache is closed.
+     *
+     * @param memoryBudget the largest number of bytes of pixels kept in memory
+     * @param spillDirectory the directory the evicted results are written to, created if needed
+     * @param diskBudget the largest number of bytes of files kept in the directory
+     * @throws IllegalArgumentException if a budget is negative
+     * @throws IOException if the directory can not be created
+     */
+    public ResultCache(long memoryBudget, Path spillDirectory, long diskBudget) throws IOException {
+        assert memoryBudget >= 0;
+        assert diskBudget >= 0;
+
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = Files.createDirectories(spillDirectory);
+        this.diskBudget = diskBudget;
+    }
+
+    /**
+     * Returns the result of an operation on an image, from the cache if the same operation was
+     * applied to an image with the same pixels before, and otherwise by applying it and storing
+     * the result.
+     *
+     * @param image the {@code Image} object to process
+     * @param operation the name of the operation and its parameters
+     * @param function the operation, which must not change its source
+     * @return the result of the operation
+     */
+    public Image apply(Image image, String operation, UnaryOperator<Image> function) {
+        return apply(image, operation, function, RowBands.SEQUENTIAL);
+    }
+
+    /**
+     * Returns the result of an operation on an image like {@link #apply(Image, String, UnaryOperator)},
+     * hashing the rows of the image as decided by {@code bands}.
+     *
+     * @param image the {@code Image} object to process
+     * @param operation the name of the operation and its parameters
+     * @param function the operation, which must not change its source
+     * @param bands decides how the rows are hashed
+     * @return the result of the operation
+     */
+    public Image apply(Image image, String operation, UnaryOperator<Image> function, RowBands bands) {
+        Key key = key(image, operation, bands);
+        Image cached;
+        Path spilled = null;
+        synchronized (this) {
+            cached = memory.get(key);
+            if (cached == null) {
+                spilled = disk.get(key);
+            }
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached.view(0, 0, cached.width(), cached.height());
+        }
+
+        if (spilled != null) {
+            cached = readSpilled(key, spilled);
+            if (cached != null) {
+                diskHits.increment();
+                store(key, cached);
+                return cached.view(0, 0, cached.width(), cached.height());
+            }
+        }
+
+        misses.increment();
+        Image result = function.apply(image);
+        // A new heap image is stored as it is, and the caller gets a view of it; a result
+        // sharing the storage of the source, such as the source itself or a view of it, or an
+        // off-heap image stays the caller's, and a copy is stored
+        if (!result.sharesPixels(image) && result.raster() != null) {
+            store(key, result);
+            return result.view(0, 0, result.width(), result.height());
+        }
+        store(key, heapCopy(result));
+        return result;
+    }
+
+    /**
+     * Returns the number of requests answered from memory.
+     *
+     * @return the number of memory hits
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests answered from the spill directory.
+     *
+     * @return the number of disk hits
+     */
+    public long diskHits() {
+        return diskHits.sum();
+    }
+
+    /**
+     * Returns the number of requests answered by applying the operation.
+     *
+     * @return the number of misses
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of results evicted from memory, whether they were spilled or dropped.
+     * A result larger than the whole memory budget counts as evicted as soon as it is stored.
+     *
+     * @return the number of evictions
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the fraction of the requests answered from memory or from disk.
+     *
+     * @return the hit rate, from 0 to 1, or 0 if there was no request
+     */
+    public double hitRate() {
+        long found = hits() + diskHits();
+        long requests = found + misses();
+        return requests == 0 ? 0 : (double)found / requests;
+    }
+
+    /**
+     * Returns the number of bytes of pixels kept in memory.
+     *
+     * @return the bytes used of the memory budget
+     */
+    public synchronized long memoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Returns the number of bytes of files kept in the spill directory.
+     *
+     * @return the bytes used of the disk budget
+     */
+    public synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d hits, %d disk hits, %d misses (%.1f%% hit rate), %d evictions, %.1f MB in memory, %.1f MB on disk",
+                             hits(), diskHits(), misses(), hitRate() * 100, evictions(),
+                             memoryBytes() / 1e6, diskBytes() / 1e6);
+    }
+
+    /**
+     * Empties the cache and deletes the files it spilled.
+     */
+    @Override
+    public void close() {
+        List<Path> files;
+        synchronized (this) {
+            files = new ArrayList<>(disk.values());
+            memory.clear();
+            disk.clear();
+            memoryBytes = 0;
+            diskBytes = 0;
+        }
+        for (Path file : files) {
+            delete(file);
+        }
+    }
+
+    /**
+     * Stores a result in memory, and evicts the least recently used results until the memory
+     * budget is met, spilling them. A result larger than the whole budget is spilled at once.
+     */
+    private void store(Key key, Image result) {
+        long bytes = pixelBytes(result.width(), result.height());
+        List<Map.Entry<Key, Image>> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (bytes > memoryBudget) {
+                evicted.add(Map.entry(key, result));
+                evictions.increment();
+            } else if (memory.put(key, result) == null) {
+                memoryBytes = memoryBytes + bytes;
+            }
+
+            Iterator<Map.Entry<Key, Image>> entries = memory.entrySet().iterator();
+            Map.Entry<Key, Image> entry;
+            while (memoryBytes > memoryBudget && entries.hasNext()) {
+                entry = entries.next();
+                entries.remove();
+                memoryBytes = memoryBytes - pixelBytes(entry.getKey().width, entry.getKey().height);
+                evicted.add(entry);
+                evictions.increment();
+            }
+        }
+        for (Map.Entry<Key, Image> entry : evicted) {
+            spill(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes an evicted result to the spill directory, unless it is already there, and deletes
+     * the least recently used files until the disk budget is met. The file is written outside
+     * the lock; a result that can not be written is dropped.
+     */
+    private void spill(Key key, Image result) {
+        long bytes = RasterFile.HEADER_SIZE + pixelBytes(key.width, key.height);
+        Path file;
+        synchronized (this) {
+            if (spillDirectory == null || bytes > diskBudget || disk.containsKey(key)) {
+                return;
+            }
+            file = spillDirectory.resolve("result-" + spillCount + SPILL_SUFFIX);
+            spillCount++;
+        }
+
+        try {
+            RasterFile.save(result, file);
+        } catch (IOException e) {
+            delete(file);
+            return;
+        }
+
+        List<Path> deleted = new ArrayList<>();
+        synchronized (this) {
+            Path previous = disk.put(key, file);
+            if (previous != null) {
+                // Another thread spilled the same result meanwhile
+                deleted.add(previous);
+            } else {
+                diskBytes = diskBytes + bytes;
+            }
+
+            Iterator<Map.Entry<Key, Path>> entries = disk.entrySet().iterator();
+            Map.Entry<Key, Path> entry;
+            while (diskBytes > diskBudget && entries.hasNext()) {
+                entry = entries.next();
+                entries.remove();
+                diskBytes = diskBytes - RasterFile.HEADER_SIZE - pixelBytes(entry.getKey().width, entry.getKey().height);
+                deleted.add(entry.getValue());
+            }
+        }
+        for (Path path : deleted) {
+            delete(path);
+        }
+    }
+
+    /**
+     * Reads a spilled result back onto the heap, or forgets it if its file can not be read, as
+     * when it was deleted by an eviction meanwhile.
+     *
+     * @return the result, or {@code null} if it could not be read
+     */
+    private Image readSpilled(Key key, Path file) {
+        try (Image mapped = RasterFile.open(file, false)) {
+            return heapCopy(mapped);
+        } catch (IOException e) {
+            synchronized (this) {
+                if (file.equals(disk.get(key))) {
+                    disk.remove(key);
+                    diskBytes = diskBytes - RasterFile.HEADER_SIZE - pixelBytes(key.width, key.height);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Computes the key of an operation on an image. Each row is hashed on its own, two pixels
+     * at a time, into two 64-bit hashes with different multipliers, and the hashes of the rows
+     * are then combined in order.
+     */
+    private static Key key(Image image, String operation, RowBands bands) {
+        int width = image.width();
+        int height = image.height();
+        long[] rowHashes = new long[2 * height];
+        MemorySegment memory = image.memory();
+        long pixelSize = image.layout().byteSize();
+
+        bands.forEach(height, (fromRow, toRow) -> {
+            long start, value, h0, h1;
+            int x;
+            for (int y = fromRow; y < toRow; y++) {
+                start = image.rowOffset(y) * pixelSize;
+                h0 = y;
+                h1 = ~y;
+                for (x = 0; x + 1 < width; x += 2) {
+                    value = memory.get(TWO_PIXELS, start + x * pixelSize) & TWO_RGB_VALUES;
+                    h0 = Long.rotateLeft(h0 ^ value, 29) * MULTIPLIER_0;
+                    h1 = Long.rotateLeft(h1 + value, 31) * MULTIPLIER_1;
+                }
+                if (x < width) {
+                    value = image.getRGB(x, y) & 0xffffff;
+                    h0 = Long.rotateLeft(h0 ^ value, 29) * MULTIPLIER_0;
+                    h1 = Long.rotateLeft(h1 + value, 31) * MULTIPLIER_1;
+                }
+                rowHashes[2 * y] = h0;
+                rowHashes[2 * y + 1] = h1;
+            }
+        });
+
+        long hash0 = width;
+        long hash1 = height;
+        for (int y = 0; y < height; y++) {
+            hash0 = Long.rotateLeft(hash0 ^ rowHashes[2 * y], 29) * MULTIPLIER_0;
+            hash1 = Long.rotateLeft(hash1 + rowHashes[2 * y + 1], 31) * MULTIPLIER_1;
+        }
+        return new Key(width, height, mix(hash0), mix(hash1), operation);
+    }
+
+    /**
+     * Spreads every bit of a hash over all the others, as the finalizer of MurmurHash3.
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Copies an image into a new heap image holding only its own pixels.
+     */
+    private static Image heapCopy(Image image) {
+        Image copy = new Image(image.width(), image.height());
+        int[] pixels = copy.raster();
+        for (int y = 0; y < image.height(); y++) {
+            MemorySegment.copy(image.memory(), image.layout(), image.rowOffset(y) * image.layout().byteSize(),
+                               pixels, y * image.width(), image.width());
+        }
+        return copy;
+    }
+
+    private static long pixelBytes(int width, int height) {
+        return (long)width * height * Integer.BYTES;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // The file is left behind; the cache no longer refers to it
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code RowBands} class decides how the rows of an image are processed.
+ * <p>
+ * An operation that computes every row independently describes its work as a {@link Band},
+ * a function that processes a contiguous range of rows. {@link #SEQUENTIAL} runs the whole
+ * range at once on the calling thread, while {@link #parallel()} splits the range into bands
+ * that are processed on a {@code ForkJoinPool}. Because every row is computed the same way in
+ * both cases, the result does not depend on which one is used.
+ * </p>
+ * <p>
+ * Splitting stops once a band holds no more than the minimum grain size, so small images are
+ * not split into more tasks than they are worth.
+ * </p>
+ */
+public class RowBands {
+
+    /** The default minimum number of rows in a band processed in parallel. */
+    public static final int DEFAULT_GRAIN = 32;
+
+    /** Processes all rows on the calling thread. */
+    public static final RowBands SEQUENTIAL = new RowBands(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int grain;
+
+    /**
+     * A function that processes a contiguous range of rows.
+     */
+    @FunctionalInterface
+    public interface Band {
+
+        /**
+         * Processes the rows from {@code fromRow} (inclusive) to {@code toRow} (exclusive).
+         *
+         * @param fromRow the first row to process
+         * @param toRow the row after the last row to process
+         */
+        void apply(int fromRow, int toRow);
+    }
+
+    /**
+     * Constructs a {@code RowBands} object running on the given pool.
+     *
+     * @param pool the pool to run bands on, or {@code null} to run on the calling thread
+     * @param grain the minimum number of rows in a band
+     */
+    private RowBands(ForkJoinPool pool, int grain) {
+        assert grain > 0;
+
+        this.pool = pool;
+        this.grain = grain;
+    }
+
+    /**
+     * Returns a {@code RowBands} object that processes rows on the common {@code ForkJoinPool},
+     * using the default grain size.
+     *
+     * @return a parallel {@code RowBands} object
+     */
+    public static RowBands parallel() {
+        return parallel(DEFAULT_GRAIN);
+    }
+
+    /**
+     * Returns a {@code RowBands} object that processes rows on the common {@code ForkJoinPool}.
+     *
+     * @param grain the minimum number of rows in a band
+     * @return a parallel {@code RowBands} object
+     * @throws IllegalArgumentException if the grain size is less than or equal to zero
+     */
+    public static RowBands parallel(int grain) {
+        return parallel(ForkJoinPool.commonPool(), grain);
+    }
+
+    /**
+     * Returns a {@code RowBands} object that processes rows on the given {@code ForkJoinPool}.
+     *
+     * @param pool the pool to run bands on
+     * @param grain the minimum number of rows in a band
+     * @return a parallel {@code RowBands} object
+     * @throws IllegalArgumentException if the grain size is less than or equal to zero
+     */
+    public static RowBands parallel(ForkJoinPool pool, int grain) {
+        assert pool != null;
+
+        return new RowBands(pool, grain);
+    }
+
+    /**
+     * Returns whether this object processes rows on more than one thread.
+     *
+     * @return {@code true} if bands may run in parallel
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Processes the rows from zero (inclusive) to {@code rows} (exclusive), and returns once
+     * every row has been processed.
+     *
+     * @param rows the number of rows to process
+     * @param band the function processing a range of rows
+     */
+    public void forEach(int rows, Band band) {
+        if (pool == null || rows <= grain) {
+            band.apply(0, rows);
+        } else {
+            pool.invoke(new BandTask(band, 0, rows, grain));
+        }
+    }
+
+    /**
+     * A task that splits its range of rows in half until it is no larger than the grain size.
+     */
+    private static class BandTask extends RecursiveAction {
+
+        // Tasks are never serialized; RecursiveAction merely happens to be Serializable
+        private static final long serialVersionUID = 1L;
+
+        private final transient Band band;
+        private final int fromRow;
+        private final int toRow;
+        private final int grain;
+
+        BandTask(Band band, int fromRow, int toRow, int grain) {
+            this.band = band;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= grain) {
+                band.apply(fromRow, toRow);
+                return;
+            }
+
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(
+                new BandTask(band, fromRow, middle, grain),
+                new BandTask(band, middle, toRow, grain)
+            );
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/**
+ * The {@code Shapes} class draws filled and outlined shapes onto images, in place.
+ * <p>
+ * Every shape is first reduced to one horizontal span per row, the pixels from a left to a right
+ * x-coordinate, and each span is then set with a single bulk fill of the row instead of one
+ * {@code setRGB} call per pixel. No pixel is set twice. An outline is the set of pixels of the
+ * filled shape that have one of their four neighbors outside it, which is at most two spans per
+ * row, so outlines are drawn the same way and are always closed and one pixel thick.
+ * </p>
+ * <p>
+ * Shapes may reach past the edges of the image; the parts outside it are clipped, and rows
+ * outside the image are not computed.
+ * </p>
+ */
+public class Shapes {
+
+    /**
+     * Draws a filled rectangle.
+     *
+     * @param image the image to draw onto
+     * @param x the x-coordinate of the top-left corner of the rectangle
+     * @param y the y-coordinate of the top-left corner of the rectangle
+     * @param width the width of the rectangle, in pixels
+     * @param height the height of the rectangle, in pixels
+     * @param color the color of the rectangle
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public static void fillRectangle(Image image, int x, int y, int width, int height, Color color) {
+        fill(image, rectangle(image, x, y, width, height), color.rgb());
+    }
+
+    /**
+     * Draws the outline of a rectangle.
+     *
+     * @param image the image to draw onto
+     * @param x the x-coordinate of the top-left corner of the rectangle
+     * @param y the y-coordinate of the top-left corner of the rectangle
+     * @param width the width of the rectangle, in pixels
+     * @param height the height of the rectangle, in pixels
+     * @param color the color of the outline
+     * @throws IllegalArgumentException if the width or height is less than or equal to zero
+     */
+    public static void drawRectangle(Image image, int x, int y, int width, int height, Color color) {
+        outline(image, rectangle(image, x, y, width, height), color.rgb());
+    }
+
+    /**
+     * Draws a filled circle, covering the same pixels as Bresenham's midpoint circle algorithm.
+     *
+     * @param image the image to draw onto
+     * @param centerX the x-coordinate of the center of the circle
+     * @param centerY the y-coordinate of the center of the circle
+     * @param radius the radius of the circle, in pixels
+     * @param color the color of the circle
+     * @throws IllegalArgumentException if the radius is less than or equal to zero
+     */
+    public static void fillCircle(Image image, int centerX, int centerY, int radius, Color color) {
+        fill(image, circle(image, centerX, centerY, radius), color.rgb());
+    }
+
+    /**
+     * Draws the outline of a circle.
+     *
+     * @param image the image to draw onto
+     * @param centerX the x-coordinate of the center of the circle
+     * @param centerY the y-coordinate of the center of the circle
+     * @param radius the radius of the circle, in pixels
+     * @param color the color of the outline
+     * @throws IllegalArgumentException if the radius is less than or equal to zero
+     */
+    public static void drawCircle(Image image, int centerX, int centerY, int radius, Color color) {
+        outline(image, circle(image, centerX, centerY, radius), color.rgb());
+    }
+
+    /**
+     * Draws a filled ellipse with axes parallel to the edges of the image. A pixel is inside the
+     * ellipse when its offset {@code (dx, dy)} from the center satisfies
+     * {@code (dx/radiusX)^2 + (dy/radiusY)^2 <= 1}.
+     *
+     * @param image the image to draw onto
+     * @param centerX the x-coordinate of the center of the ellipse
+     * @param centerY the y-coordinate of the center of the ellipse
+     * @param radiusX the horizontal radius of the ellipse, in pixels
+     * @param radiusY the vertical radius of the ellipse, in pixels
+     * @param color the color of the ellipse
+     * @throws IllegalArgumentException if a radius is less than or equal to zero
+     */
+    public static void fillEllipse(Image image, int centerX, int centerY, int radiusX, int radiusY, Color color) {
+        fill(image, ellipse(image, centerX, centerY, radiusX, radiusY), color.rgb());
+    }
+
+    /**
+     * Draws the outline of an ellipse with axes parallel to the edges of the image.
+     *
+     * @param image the image to draw onto
+     * @param centerX the x-coordinate of the center of the ellipse
+     * @param centerY the y-coordinate of the center of the ellipse
+     * @param radiusX the horizontal radius of the ellipse, in pixels
+     * @param radiusY the vertical radius of the ellipse, in pixels
+     * @param color the color of the outline
+     * @throws IllegalArgumentException if a radius is less than or equal to zero
+     */
+    public static void drawEllipse(Image image, int centerX, int centerY, int radiusX, int radiusY, Color color) {
+        outline(image, ellipse(image, centerX, centerY, radiusX, radiusY), color.rgb());
+    }
+
+    /**
+     * Draws a filled convex polygon. Vertices lie on the corners between pixels, so the polygon
+     * with vertices {@code (0, 0)}, {@code (4, 0)}, {@code (4, 3)} and {@code (0, 3)} covers the
+     * same 4x3 pixels as {@code fillRectangle(image, 0, 0, 4, 3, color)}; a pixel is inside the
+     * polygon when its center is. Each row of a polygon that is not convex is filled from its
+     * leftmost to its rightmost edge.
+     *
+     * @param image the image to draw onto
+     * @param xs the x-coordinates of the vertices, in order around the polygon
+     * @param ys the y-coordinates of the vertices, in the same order
+     * @param color the color of the polygon
+     * @throws IllegalArgumentException if there are fewer than three vertices, or the arrays have
+     *         different lengths
+     */
+    public static void fillPolygon(Image image, int[] xs, int[] ys, Color color) {
+        fill(image, polygon(image, xs, ys), color.rgb());
+    }
+
+    /**
+     * Draws the outline of a convex polygon, with vertices as for
+     * {@link #fillPolygon(Image, int[], int[], Color)}.
+     *
+     * @param image the image to draw onto
+     * @param xs the x-coordinates of the vertices, in order around the polygon
+     * @param ys the y-coordinates of the vertices, in the same order
+     * @param color the color of the outline
+     * @throws IllegalArgumentException if there are fewer than three vertices, or the arrays have
+     *         different lengths
+     */
+    public static void drawPolygon(Image image, int[] xs, int[] ys, Color color) {
+        outline(image, polygon(image, xs, ys), color.rgb());
+    }
+
+    /**
+     * The span of each row of a shape, from {@code lefts[i]} to {@code rights[i]} exclusive for
+     * row {@code top + i}. Rows are only kept from one row above the image to one row below it,
+     * the rows outside being needed to tell which pixels of the edge rows are on an outline. A
+     * row the shape does not cover has an empty span.
+     */
+    private static final class Spans {
+        final int top;
+        final int[] lefts;
+        final int[] rights;
+
+        /**
+         * Constructs empty spans for the rows of a shape from {@code fromRow} to {@code toRow}
+         * exclusive, keeping only the rows near the image.
+         */
+        Spans(Image image, int fromRow, int toRow) {
+            this.top = Math.max(fromRow, -1);
+            int rows = Math.max(0, Math.min(toRow, image.height() + 1) - top);
+            this.lefts = new int[rows];
+            this.rights = new int[rows];
+        }
+    }
+
+    /**
+     * Computes the spans of a rectangle.
+     */
+    private static Spans rectangle(Image image, int x, int y, int width, int height) {
+        assert width > 0 && height > 0;
+
+        Spans spans = new Spans(image, y, y + height);
+        for (int i = 0; i < spans.lefts.length; i++) {
+            spans.lefts[i] = x;
+            spans.rights[i] = x + width;
+        }
+        return spans;
+    }
+
+    /**
+     * Computes the spans of a circle with the midpoint algorithm. The algorithm walks one eighth
+     * of the circle, and each of its steps gives the half width of two pairs of rows; the widest
+     * half width found for a row is kept.
+     */
+    private static Spans circle(Image image, int centerX, int centerY, int radius) {
+        assert radius > 0;
+
+        int[] halfWidths = new int[radius + 1];
+        int x = radius;
+        int y = 0;
+        int t = 1 - radius;
+        while (x >= y) {
+            halfWidths[y] = Math.max(halfWidths[y], x);
+            halfWidths[x] = Math.max(halfWidths[x], y);
+            y++;
+
+            if (t < 0) {
+                t = t + 2 * y + 1;
+            } else {
+                x--;
+                t = t + 2 * (y - x) + 1;
+            }
+        }
+
+        Spans spans = new Spans(image, centerY - radius, centerY + radius + 1);
+        int halfWidth;
+        for (int i = 0; i < spans.lefts.length; i++) {
+            halfWidth = halfWidths[Math.abs(spans.top + i - centerY)];
+            spans.lefts[i] = centerX - halfWidth;
+            spans.rights[i] = centerX + halfWidth + 1;
+        }
+        return spans;
+    }
+
+    /**
+     * Computes the spans of an ellipse. The half width of each row is the largest {@code dx} with
+     * {@code dx^2 * radiusY^2 + dy^2 * radiusX^2 <= radiusX^2 * radiusY^2}, estimated with a
+     * square root and corrected in exact integer arithmetic.
+     */
+    private static Spans ellipse(Image image, int centerX, int centerY, int radiusX, int radiusY) {
+        assert radiusX > 0 && radiusY > 0;
+
+        long rx2 = (long)radiusX * radiusX;
+        long ry2 = (long)radiusY * radiusY;
+        Spans spans = new Spans(image, centerY - radiusY, centerY + radiusY + 1);
+        long dy, limit, dx;
+        for (int i = 0; i < spans.lefts.length; i++) {
+            dy = spans.top + i - centerY;
+            limit = rx2 * ry2 - dy * dy * rx2;
+            dx = (long)(radiusX * Math.sqrt(Math.max(0.0, 1.0 - (double)(dy * dy) / ry2)));
+            while (dx > 0 && dx * dx * ry2 > limit) {
+                dx--;
+            }
+            while ((dx + 1) * (dx + 1) * ry2 <= limit) {
+                dx++;
+            }
+            spans.lefts[i] = (int)(centerX - dx);
+            spans.rights[i] = (int)(centerX + dx + 1);
+        }
+        return spans;
+    }
+
+    /**
+     * Computes the spans of a polygon: each row is filled between the leftmost and the rightmost
+     * point where the edges cross the horizontal line through the centers of its pixels.
+     */
+    private static Spans polygon(Image image, int[] xs, int[] ys) {
+        assert xs.length >= 3 && xs.length == ys.length;
+
+        int minY = ys[0];
+        int maxY = ys[0];
+        for (int i = 1; i < ys.length; i++) {
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        Spans spans = new Spans(image, minY, maxY);
+        double center, left, right, crossing;
+        int x0, y0, x1, y1;
+        for (int i = 0; i < spans.lefts.length; i++) {
+            center = spans.top + i + 0.5;
+            left = Double.POSITIVE_INFINITY;
+            right = Double.NEGATIVE_INFINITY;
+            for (int j = 0, previous = xs.length - 1; j < xs.length; previous = j, j++) {
+                x0 = xs[previous];
+                y0 = ys[previous];
+                x1 = xs[j];
+                y1 = ys[j];
+                if (center < Math.min(y0, y1) || center >= Math.max(y0, y1)) {
+                    continue;
+                }
+                crossing = x0 + (center - y0) * (x1 - x0) / (y1 - y0);
+                left = Math.min(left, crossing);
+                right = Math.max(right, crossing);
+            }
+            // A pixel is filled when its center is at or after the left crossing and before the right one
+            if (left <= right) {
+                spans.lefts[i] = (int)Math.ceil(left - 0.5);
+                spans.rights[i] = (int)Math.ceil(right - 0.5);
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Fills the spans of a shape, clipped to the image.
+     */
+    private static void fill(Image image, Spans spans, int rgb) {
+        int y;
+        for (int i = 0; i < spans.lefts.length; i++) {
+            y = spans.top + i;
+            if (y >= 0 && y < image.height()) {
+                fillClipped(image, y, spans.lefts[i], spans.rights[i], rgb);
+            }
+        }
+    }
+
+    /**
+     * Fills the outline of a shape, clipped to the image. The inside of a row is the part of its
+     * span whose pixels have both horizontal neighbors in the span and both vertical neighbors in
+     * the spans of the rows above and below; the rest of the span is on the outline.
+     */
+    private static void outline(Image image, Spans spans, int rgb) {
+        int y, left, right, insideLeft, insideRight;
+        for (int i = 0; i < spans.lefts.length; i++) {
+            y = spans.top + i;
+            if (y < 0 || y >= image.height()) {
+                continue;
+            }
+            left = spans.lefts[i];
+            right = spans.rights[i];
+            if (i == 0 || i == spans.lefts.length - 1) {
+                // The first and last rows kept are the first and last rows of the shape, or
+                // lie outside the image
+                fillClipped(image, y, left, right, rgb);
+                continue;
+            }
+
+            insideLeft = left + 1;
+            insideRight = right - 1;
+            if (spans.lefts[i - 1] < spans.rights[i - 1]) {
+                insideLeft = Math.max(insideLeft, spans.lefts[i - 1]);
+                insideRight = Math.min(insideRight, spans.rights[i - 1]);
+            } else {
+                insideRight = insideLeft;
+            }
+            if (spans.lefts[i + 1] < spans.rights[i + 1]) {
+                insideLeft = Math.max(insideLeft, spans.lefts[i + 1]);
+                insideRight = Math.min(insideRight, spans.rights[i + 1]);
+            } else {
+                insideRight = insideLeft;
+            }
+
+            if (insideLeft >= insideRight) {
+                fillClipped(image, y, left, right, rgb);
+            } else {
+                fillClipped(image, y, left, insideLeft, rgb);
+                fillClipped(image, y, insideRight, right, rgb);
+            }
+        }
+    }
+
+    /**
+     * Fills a span of a row, clipped to the width of the image.
+     */
+    private static void fillClipped(Image image, int y, int fromX, int toX, int rgb) {
+        fromX = Math.max(fromX, 0);
+        toX = Math.min(toX, image.width());
+        if (fromX < toX) {
+            image.fillSpan(y, fromX, toX, rgb);
+        }
+    }
+}
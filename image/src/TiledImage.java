@@ -0,0 +1,729 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@code TiledImage} class represents an image too large to be held in memory, stored in a
+ * file as square tiles that are loaded on demand.
+ * <p>
+ * The image is split into tiles of {@code tileSize x tileSize} pixels; the tiles on the right
+ * and bottom edges are smaller when the dimensions are not a multiple of the tile size. Each tile
+ * is loaded from the backing file as an ordinary {@code Image} the first time it is needed, and
+ * kept in a cache holding at most a fixed number of tiles. When the cache is full, the least
+ * recently used tile is evicted, and written back to the file first if it has been modified.
+ * The cache counts its hits, misses, evictions and write-backs.
+ * </p>
+ * <p>
+ * Operations work on one tile at a time: {@link #map(UnaryOperator)} and
+ * {@link #forEachTile(Consumer)} apply {@code ImageUtils} and {@code ImageUtilsSE} color operations
+ * to every tile, while {@link #rotateLeft(Path)} and the other geometric operations build a new
+ * tiled image, one result tile at a time, from the matching region of the source. Only the tiles in
+ * the cache are ever in memory.
+ * </p>
+ * <p>
+ * The backing file starts with a header of {@link #HEADER_SIZE} bytes holding little-endian
+ * {@code int} values: the magic number {@link #MAGIC}, the version {@link #VERSION}, the width,
+ * the height, the tile size and the channel layout {@link RasterFile#LAYOUT_XRGB}. The tiles follow,
+ * row of tiles by row of tiles, each one taking a full {@code tileSize x tileSize} slot of
+ * little-endian packed RGB values.
+ * </p>
+ * <p>
+ * A {@code TiledImage} must be closed to write back modified tiles, and is not safe for use by
+ * several threads at once.
+ * </p>
+ */
+public class TiledImage implements AutoCloseable {
+
+    /** The magic number a tiled image file starts with, the characters {@code TILE}. */
+    public static final int MAGIC = 0x54494c45;
+
+    /** The version of the format written by this class. */
+    public static final int VERSION = 1;
+
+    /** The size of the header in bytes. The tiles start right after it. */
+    public static final int HEADER_SIZE = 64;
+
+    /** The default width and height of a tile, in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesAcross;
+    private final int tilesDown;
+    private final int cacheCapacity;
+    private final ByteBuffer slot;
+    private final LinkedHashMap<Long, Tile> cache;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long writeBacks = 0;
+
+    /**
+     * A tile held in the cache.
+     */
+    private static class Tile {
+        final int tileX;
+        final int tileY;
+        final Image image;
+        boolean dirty = false;
+
+        Tile(int tileX, int tileY, Image image) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.image = image;
+        }
+    }
+
+    /**
+     * A function giving the source region needed to compute a region of a result.
+     */
+    @FunctionalInterface
+    private interface RegionMapping {
+
+        /**
+         * Returns the source region needed to compute the given result region.
+         *
+         * @param x the x-coordinate of the result region
+         * @param y the y-coordinate of the result region
+         * @param width the width of the result region
+         * @param height the height of the result region
+         * @return the source region as {@code {x, y, width, height}}
+         */
+        int[] sourceOf(int x, int y, int width, int height);
+    }
+
+    /**
+     * Constructs a {@code TiledImage} object on top of an open file.
+     */
+    private TiledImage(FileChannel channel, boolean writable, int width, int height, int tileSize, int cacheCapacity) {
+        assert width > 0;
+        assert height > 0;
+        assert tileSize > 0;
+        assert cacheCapacity > 0;
+
+        this.channel = channel;
+        this.writable = writable;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesAcross = (width + tileSize - 1) / tileSize;
+        this.tilesDown = (height + tileSize - 1) / tileSize;
+        this.cacheCapacity = cacheCapacity;
+        this.slot = ByteBuffer.allocateDirect(tileSize * tileSize * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates a new tiled image file of the given dimensions, with every pixel black. The file is
+     * replaced if it already exists.
+     *
+     * @param path the file to create
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param tileSize the width and height of a tile, in pixels
+     * @param cacheCapacity the maximum number of tiles held in memory
+     * @return a writable {@code TiledImage} object backed by the file
+     * @throws IOException if the file can not be written
+     */
+    public static TiledImage create(Path path, int width, int height, int tileSize, int cacheCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(tileSize).putInt(RasterFile.LAYOUT_XRGB);
+            header.clear();
+            writeFully(channel, header, 0);
+
+            // Tiles that were never written read back as black
+            return new TiledImage(channel, true, width, height, tileSize, cacheCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing tiled image file.
+     *
+     * @param path the file to open
+     * @param writable {@code true} to allow modifying the image, {@code false} to open it read-only
+     * @param cacheCapacity the maximum number of tiles held in memory
+     * @return a {@code TiledImage} object backed by the file
+     * @throws IOException if the file can not be read or is not a tiled image file
+     */
+    public static TiledImage open(Path path, boolean writable, int cacheCapacity) throws IOException {
+        FileChannel channel = writable
+            ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < HEADER_SIZE) {
+                throw new IOException(path + " is too short to be a tiled image file");
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a tiled image file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported tiled image file version " + version);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int tileSize = header.getInt();
+            int layout = header.getInt();
+            if (layout != RasterFile.LAYOUT_XRGB) {
+                throw new IOException(path + " has unsupported channel layout " + layout);
+            }
+            if (width <= 0 || height <= 0 || tileSize <= 0) {
+                throw new IOException(path + " has invalid dimensions " + width + "x" + height + " or tile size " + tileSize);
+            }
+            return new TiledImage(channel, writable, width, height, tileSize, cacheCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a tiled image file holding a copy of an image.
+     *
+     * @param image the image to copy
+     * @param path the file to create
+     * @param tileSize the width and height of a tile, in pixels
+     * @param cacheCapacity the maximum number of tiles held in memory
+     * @return a writable {@code TiledImage} object backed by the file
+     * @throws IOException if the file can not be written
+     */
+    public static TiledImage fromImage(Image image, Path path, int tileSize, int cacheCapacity) throws IOException {
+        TiledImage tiled = create(path, image.width(), image.height(), tileSize, cacheCapacity);
+        tiled.forEachTile((tileX, tileY, tile) -> {
+            for (int y = 0; y < tile.height(); y++) {
+                for (int x = 0; x < tile.width(); x++) {
+                    tile.setRGB(x, y, image.getRGB(tileX * tileSize + x, tileY * tileSize + y));
+                }
+            }
+        });
+        return tiled;
+    }
+
+    /**
+     * Returns the width of the image.
+     *
+     * @return the width of the image
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     *
+     * @return the height of the image
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns the width and height of a tile, in pixels.
+     *
+     * @return the tile size
+     */
+    public int tileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns the number of tiles in a row of tiles.
+     *
+     * @return the number of tiles across the image
+     */
+    public int tilesAcross() {
+        return tilesAcross;
+    }
+
+    /**
+     * Returns the number of rows of tiles.
+     *
+     * @return the number of tiles down the image
+     */
+    public int tilesDown() {
+        return tilesDown;
+    }
+
+    /**
+     * Returns the packed RGB value of the pixel at the specified coordinates, loading its tile
+     * if needed.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @return the combined RGB value of the specified pixel
+     * @throws IllegalArgumentException if the x or y coordinate is out of bounds
+     */
+    public int getRGB(int x, int y) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+
+        Tile tile = load(x / tileSize, y / tileSize);
+        return tile.image.getRGB(x % tileSize, y % tileSize);
+    }
+
+    /**
+     * Sets the packed RGB value of the pixel at the specified coordinates, loading its tile
+     * if needed.
+     *
+     * @param x the x-coordinate of the pixel
+     * @param y the y-coordinate of the pixel
+     * @param rgb the combined RGB value to store
+     * @throws IllegalArgumentException if the x or y coordinate is out of bounds
+     * @throws UnsupportedOperationException if the image was opened read-only
+     */
+    public void setRGB(int x, int y, int rgb) {
+        assert x >= 0 && x < width;
+        assert y >= 0 && y < height;
+        checkWritable();
+
+        Tile tile = load(x / tileSize, y / tileSize);
+        tile.image.setRGB(x % tileSize, y % tileSize, rgb);
+        tile.dirty = true;
+    }
+
+    /**
+     * Returns a copy of a tile. Changes made to the returned image are not written to the file.
+     *
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return a new {@code Image} object holding the pixels of the tile
+     */
+    public Image tile(int tileX, int tileY) {
+        Image image = load(tileX, tileY).image;
+        Image copy = new Image(image.width(), image.height());
+        System.arraycopy(image.raster(), 0, copy.writableRaster(), 0, image.width() * image.height());
+        return copy;
+    }
+
+    /**
+     * A function working on one tile at a time.
+     */
+    @FunctionalInterface
+    public interface TileConsumer {
+
+        /**
+         * Processes a tile.
+         *
+         * @param tileX the column of the tile
+         * @param tileY the row of the tile
+         * @param tile the pixels of the tile, which may be modified in place
+         */
+        void accept(int tileX, int tileY, Image tile);
+    }
+
+    /**
+     * Runs an in-place operation on every tile, such as {@code ImageUtilsSE::grayscaleLuminosity}.
+     * Every tile is marked as modified. The operation must keep the width and height of the
+     * tile, so an in-place rotation, which swaps them on the tiles that are not square, can not
+     * be used.
+     *
+     * @param operation the operation to run on each tile
+     * @throws UnsupportedOperationException if the image was opened read-only
+     * @throws IllegalStateException if the operation changes the size of a tile
+     */
+    public void forEachTile(Consumer<Image> operation) {
+        forEachTile((tileX, tileY, tile) -> operation.accept(tile));
+    }
+
+    /**
+     * Runs an in-place operation on every tile, row of tiles by row of tiles, telling it the
+     * position of the tile. Every tile is marked as modified. The operation must keep the width
+     * and height of the tile, since the tile is written back to a slot of that size. A tile whose
+     * size was changed is dropped from the cache without being written back, so the file keeps
+     * its last written content, and the exception is thrown.
+     *
+     * @param operation the operation to run on each tile
+     * @throws UnsupportedOperationException if the image was opened read-only
+     * @throws IllegalStateException if the operation changes the size of a tile
+     */
+    public void forEachTile(TileConsumer operation) {
+        checkWritable();
+
+        Tile tile;
+        int tileWidth, tileHeight;
+        for (int tileY = 0; tileY < tilesDown; tileY++) {
+            for (int tileX = 0; tileX < tilesAcross; tileX++) {
+                tile = load(tileX, tileY);
+                tileWidth = tile.image.width();
+                tileHeight = tile.image.height();
+                operation.accept(tileX, tileY, tile.image);
+                if (tile.image.width() != tileWidth || tile.image.height() != tileHeight) {
+                    cache.remove(tileKey(tileX, tileY));
+                    throw new IllegalStateException("Operation changed the size of tile (" + tileX + ", " + tileY + ")");
+                }
+                tile.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Replaces every tile with the result of an operation returning an image of the same size,
+     * such as {@code ImageUtils::grayscaleLuminosity}. The operation must compute each pixel from
+     * the pixel at the same position, since it only sees one tile at a time.
+     *
+     * @param operation the operation to apply to each tile
+     * @throws UnsupportedOperationException if the image was opened read-only
+     */
+    public void map(UnaryOperator<Image> operation) {
+        forEachTile((tileX, tileY, tile) -> {
+            Image result = operation.apply(tile);
+            assert result.width() == tile.width() && result.height() == tile.height();
+            for (int y = 0; y < tile.height(); y++) {
+                for (int x = 0; x < tile.width(); x++) {
+                    tile.setRGB(x, y, result.getRGB(x, y));
+                }
+            }
+        });
+    }
+
+    /**
+     * Copies a rectangular region of the image into a new {@code Image}, one tile at a time.
+     *
+     * @param x the x-coordinate of the region
+     * @param y the y-coordinate of the region
+     * @param width the width of the region
+     * @param height the height of the region
+     * @return a new {@code Image} object holding the pixels of the region
+     * @throws IllegalArgumentException if the region is not inside the image
+     */
+    public Image region(int x, int y, int width, int height) {
+        assert x >= 0 && width > 0 && x + width <= this.width;
+        assert y >= 0 && height > 0 && y + height <= this.height;
+
+        Image region = new Image(width, height);
+        Tile tile;
+        int fromX, fromY, toX, toY;
+        for (int tileY = y / tileSize; tileY <= (y + height - 1) / tileSize; tileY++) {
+            for (int tileX = x / tileSize; tileX <= (x + width - 1) / tileSize; tileX++) {
+                tile = load(tileX, tileY);
+                fromX = Math.max(x, tileX * tileSize);
+                fromY = Math.max(y, tileY * tileSize);
+                toX = Math.min(x + width, (tileX + 1) * tileSize);
+                toY = Math.min(y + height, (tileY + 1) * tileSize);
+                for (int py = fromY; py < toY; py++) {
+                    for (int px = fromX; px < toX; px++) {
+                        region.setRGB(px - x, py - y, tile.image.getRGB(px - tileX * tileSize, py - tileY * tileSize));
+                    }
+                }
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Flips the image horizontally into a new tiled image file, like
+     * {@link ImageUtils#flipHorizontal(Image)}.
+     *
+     * @param path the file to create for the result
+     * @return the flipped image, with the same tile size and cache capacity as this one
+     * @throws IOException if the file can not be written
+     */
+    public TiledImage flipHorizontal(Path path) throws IOException {
+        return transform(path, width, height,
+            (x, y, w, h) -> new int[] {x, height - y - h, w, h},
+            ImageUtils::flipHorizontal);
+    }
+
+    /**
+     * Flips the image vertically into a new tiled image file, like
+     * {@link ImageUtils#flipVirtical(Image)}.
+     *
+     * @param path the file to create for the result
+     * @return the flipped image, with the same tile size and cache capacity as this one
+     * @throws IOException if the file can not be written
+     */
+    public TiledImage flipVirtical(Path path) throws IOException {
+        return transform(path, width, height,
+            (x, y, w, h) -> new int[] {width - x - w, y, w, h},
+            ImageUtils::flipVirtical);
+    }
+
+    /**
+     * Rotates the image into a new tiled image file, like {@link ImageUtils#rotateLeft(Image)}.
+     *
+     * @param path the file to create for the result
+     * @return the rotated image, with the same tile size and cache capacity as this one
+     * @throws IOException if the file can not be written
+     */
+    public TiledImage rotateLeft(Path path) throws IOException {
+        return transform(path, height, width,
+            (x, y, w, h) -> new int[] {y, height - x - w, h, w},
+            ImageUtils::rotateLeft);
+    }
+
+    /**
+     * Rotates the image into a new tiled image file, like {@link ImageUtils#rotateRight(Image)}.
+     *
+     * @param path the file to create for the result
+     * @return the rotated image, with the same tile size and cache capacity as this one
+     * @throws IOException if the file can not be written
+     */
+    public TiledImage rotateRight(Path path) throws IOException {
+        return transform(path, height, width,
+            (x, y, w, h) -> new int[] {width - y - h, x, h, w},
+            ImageUtils::rotateRight);
+    }
+
+    /**
+     * Rotates the image into a new tiled image file, like {@link ImageUtils#rotateHalf(Image)}.
+     *
+     * @param path the file to create for the result
+     * @return the rotated image, with the same tile size and cache capacity as this one
+     * @throws IOException if the file can not be written
+     */
+    public TiledImage rotateHalf(Path path) throws IOException {
+        return transform(path, width, height,
+            (x, y, w, h) -> new int[] {width - x - w, height - y - h, w, h},
+            ImageUtils::rotateHalf);
+    }
+
+    /**
+     * Builds a new tiled image one tile at a time. Each result tile is computed by applying an
+     * {@code ImageUtils} operation to the source region it comes from.
+     *
+     * @param path the file to create for the result
+     * @param newWidth the width of the result
+     * @param newHeight the height of the result
+     * @param mapping gives the source region of each result tile
+     * @param operation turns a source region into the matching result tile
+     * @return the new tiled image
+     * @throws IOException if the file can not be written
+     */
+    private TiledImage transform(Path path, int newWidth, int newHeight,
+                                 RegionMapping mapping, UnaryOperator<Image> operation) throws IOException {
+        TiledImage result = create(path, newWidth, newHeight, tileSize, cacheCapacity);
+        try {
+            result.forEachTile((tileX, tileY, tile) -> {
+                int[] source = mapping.sourceOf(tileX * tileSize, tileY * tileSize, tile.width(), tile.height());
+                Image transformed = operation.apply(region(source[0], source[1], source[2], source[3]));
+                for (int y = 0; y < tile.height(); y++) {
+                    for (int x = 0; x < tile.width(); x++) {
+                        tile.setRGB(x, y, transformed.getRGB(x, y));
+                    }
+                }
+            });
+            return result;
+        } catch (RuntimeException e) {
+            result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of tile lookups answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long cacheHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of tile lookups that had to load the tile from the file.
+     *
+     * @return the number of cache misses
+     */
+    public long cacheMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of tiles removed from the cache to make room for another one.
+     *
+     * @return the number of cache evictions
+     */
+    public long cacheEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of modified tiles written back to the file.
+     *
+     * @return the number of tile writes
+     */
+    public long cacheWriteBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * Writes every modified tile in the cache back to the file. The tiles stay in the cache.
+     *
+     * @throws UncheckedIOException if the file can not be written
+     */
+    public void flush() {
+        for (Tile tile : cache.values()) {
+            if (tile.dirty) {
+                store(tile);
+            }
+        }
+    }
+
+    /**
+     * Writes every modified tile back to the file and closes it.
+     *
+     * @throws UncheckedIOException if the file can not be written
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            cache.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns a tile from the cache, loading it from the file on a miss and evicting the least
+     * recently used tile if the cache is full.
+     *
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return the cached tile
+     * @throws UncheckedIOException if the file can not be read or written
+     */
+    private Tile load(int tileX, int tileY) {
+        assert tileX >= 0 && tileX < tilesAcross;
+        assert tileY >= 0 && tileY < tilesDown;
+
+        long key = tileKey(tileX, tileY);
+        Tile tile = cache.get(key);
+        if (tile != null) {
+            hits++;
+            return tile;
+        }
+
+        misses++;
+        if (cache.size() >= cacheCapacity) {
+            Iterator<Map.Entry<Long, Tile>> eldest = cache.entrySet().iterator();
+            Tile evicted = eldest.next().getValue();
+            if (evicted.dirty) {
+                store(evicted);
+            }
+            eldest.remove();
+            evictions++;
+        }
+
+        int tileWidth = Math.min(tileSize, width - tileX * tileSize);
+        int tileHeight = Math.min(tileSize, height - tileY * tileSize);
+        tile = new Tile(tileX, tileY, new Image(tileWidth, tileHeight));
+
+        slot.clear();
+        try {
+            long position = slotPosition(tileX, tileY);
+            while (slot.hasRemaining() && channel.read(slot, position + slot.position()) >= 0) {
+                // Keep reading until the slot is full or the end of the file is reached
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Bytes past the end of the file are left at zero, which reads as black
+        while (slot.hasRemaining()) {
+            slot.put((byte)0);
+        }
+        IntBuffer ints = slot.flip().asIntBuffer();
+        int[] pixels = tile.image.raster();
+        for (int y = 0; y < tileHeight; y++) {
+            ints.position(y * tileSize);
+            ints.get(pixels, y * tileWidth, tileWidth);
+        }
+
+        cache.put(key, tile);
+        return tile;
+    }
+
+    /**
+     * Returns the key of a tile in the cache.
+     *
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return the position of the tile, row of tiles by row of tiles
+     */
+    private long tileKey(int tileX, int tileY) {
+        return (long)tileY * tilesAcross + tileX;
+    }
+
+    /**
+     * Writes a tile back to its slot in the file.
+     *
+     * @param tile the tile to write
+     * @throws UncheckedIOException if the file can not be written
+     */
+    private void store(Tile tile) {
+        int tileWidth = tile.image.width();
+        int[] pixels = tile.image.raster();
+
+        slot.clear();
+        IntBuffer ints = slot.asIntBuffer();
+        for (int y = 0; y < tile.image.height(); y++) {
+            ints.position(y * tileSize);
+            ints.put(pixels, y * tileWidth, tileWidth);
+        }
+
+        try {
+            writeFully(channel, slot, slotPosition(tile.tileX, tile.tileY));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        tile.dirty = false;
+        writeBacks++;
+    }
+
+    /**
+     * Returns the position in the file of the slot of a tile.
+     *
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return the offset of the slot in bytes
+     */
+    private long slotPosition(int tileX, int tileY) {
+        return HEADER_SIZE + ((long)tileY * tilesAcross + tileX) * tileSize * tileSize * Integer.BYTES;
+    }
+
+    /**
+     * Throws an exception if the image was opened read-only.
+     */
+    private void checkWritable() {
+        if (!writable) {
+            throw new UnsupportedOperationException("Tiled image was opened read-only");
+        }
+    }
+
+    /**
+     * Writes the whole content of a buffer at the given position of a file.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
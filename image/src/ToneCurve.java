@@ -0,0 +1,313 @@
+/**
+ * The {@code ToneCurve} class maps the values of the color channels of pixels through lookup
+ * tables, one table of 256 entries per channel.
+ * <p>
+ * A tone operation such as a gamma correction computes its result once for each of the 256
+ * possible values, when the curve is built, so that applying it costs one table lookup per
+ * channel instead of the arithmetic of the operation. Curves are composed with
+ * {@link #then(ToneCurve)}, which collapses the two tables of each channel into one, so a chain of
+ * operations is still applied with one lookup per channel.
+ * </p>
+ * <p>
+ * Curves built from a {@link Histogram}, {@link #equalize(Histogram)} and
+ * {@link #autoLevels(Histogram)}, adapt to the image the histogram was computed from. Curves are
+ * immutable.
+ * </p>
+ */
+public class ToneCurve {
+
+    /** The number of entries of each table. */
+    public static final int SIZE = 256;
+
+    /** The default fraction of the darkest and of the brightest pixels ignored by auto-levels. */
+    public static final double DEFAULT_CLIP = 0.001;
+
+    private static final int CHANNELS = 3;
+
+    private static final ToneCurve IDENTITY = new ToneCurve(ramp(), ramp(), ramp());
+
+    // The tables hold the values already shifted to the position of their channel, so that
+    // the three lookups of a pixel only need to be combined with a bitwise or
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+
+    /**
+     * Constructs a {@code ToneCurve} object from its tables, which are copied.
+     *
+     * @param red the new red value of each red value
+     * @param green the new green value of each green value
+     * @param blue the new blue value of each blue value
+     */
+    private ToneCurve(int[] red, int[] green, int[] blue) {
+        this.red = new int[SIZE];
+        this.green = new int[SIZE];
+        this.blue = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            this.red[v] = red[v] << 16;
+            this.green[v] = green[v] << 8;
+            this.blue[v] = blue[v];
+        }
+    }
+
+    /**
+     * Returns the curve that leaves every value unchanged.
+     *
+     * @return the identity curve
+     */
+    public static ToneCurve identity() {
+        return IDENTITY;
+    }
+
+    /**
+     * Returns a curve mapping each channel through the same table.
+     *
+     * @param table the new value of each value, 256 values from 0 to 255
+     * @return the curve
+     * @throws IllegalArgumentException if the table does not have 256 values from 0 to 255
+     */
+    public static ToneCurve of(int[] table) {
+        return of(table, table, table);
+    }
+
+    /**
+     * Returns a curve mapping each channel through its own table.
+     *
+     * @param red the new red value of each red value
+     * @param green the new green value of each green value
+     * @param blue the new blue value of each blue value
+     * @return the curve
+     * @throws IllegalArgumentException if a table does not have 256 values from 0 to 255
+     */
+    public static ToneCurve of(int[] red, int[] green, int[] blue) {
+        assert isTable(red) && isTable(green) && isTable(blue);
+
+        return new ToneCurve(red, green, blue);
+    }
+
+    /**
+     * Returns a gamma correction curve, mapping each value {@code v} to
+     * {@code 255 * (v/255)^(1/gamma)}, rounded. A gamma greater than one brightens the mid-tones,
+     * and a gamma less than one darkens them; black and white are left unchanged.
+     *
+     * @param gamma the gamma
+     * @return the curve
+     * @throws IllegalArgumentException if the gamma is not positive
+     */
+    public static ToneCurve gamma(double gamma) {
+        assert gamma > 0;
+
+        int[] table = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            table[v] = clamp(255 * Math.pow(v / 255.0, 1 / gamma));
+        }
+        return new ToneCurve(table, table, table);
+    }
+
+    /**
+     * Returns a contrast curve, moving each value away from or towards the middle gray by a
+     * factor: {@code v} is mapped to {@code (v - 127.5) * factor + 127.5}, rounded and clamped to
+     * the range 0 to 255. A factor greater than one increases the contrast, and a factor less
+     * than one reduces it.
+     *
+     * @param factor the contrast factor
+     * @return the curve
+     * @throws IllegalArgumentException if the factor is negative
+     */
+    public static ToneCurve contrast(double factor) {
+        assert factor >= 0;
+
+        int[] table = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            table[v] = clamp((v - 127.5) * factor + 127.5);
+        }
+        return new ToneCurve(table, table, table);
+    }
+
+    /**
+     * Returns a levels curve, stretching the values from {@code black} to {@code white} over the
+     * whole range: values up to {@code black} become 0, values from {@code white} on become 255,
+     * and the values between are spread linearly.
+     *
+     * @param black the value mapped to 0
+     * @param white the value mapped to 255
+     * @return the curve
+     * @throws IllegalArgumentException if the values are not in the range 0 to 255, or
+     *         {@code black} is not less than {@code white}
+     */
+    public static ToneCurve levels(int black, int white) {
+        assert black >= 0 && black < white && white < SIZE;
+
+        int[] table = levelsTable(black, white);
+        return new ToneCurve(table, table, table);
+    }
+
+    /**
+     * Returns an auto-levels curve ignoring the {@link #DEFAULT_CLIP} darkest and brightest
+     * pixels of each channel.
+     *
+     * @param histogram the histogram of the image to adjust
+     * @return the curve
+     */
+    public static ToneCurve autoLevels(Histogram histogram) {
+        return autoLevels(histogram, DEFAULT_CLIP);
+    }
+
+    /**
+     * Returns an auto-levels curve, stretching each color channel separately so that its
+     * darkest pixels become 0 and its brightest pixels become 255. The given fraction of the
+     * pixels at each end of a channel is ignored when looking for its darkest and brightest
+     * values, so that a few outliers do not prevent the stretch. A channel with a single value
+     * is left unchanged.
+     *
+     * @param histogram the histogram of the image to adjust
+     * @param clip the fraction of the pixels ignored at each end, from 0 to less than 0.5
+     * @return the curve
+     * @throws IllegalArgumentException if the fraction is out of range
+     */
+    public static ToneCurve autoLevels(Histogram histogram, double clip) {
+        assert clip >= 0 && clip < 0.5;
+
+        int[][] tables = new int[CHANNELS][];
+        int black, white;
+        for (int c = 0; c < CHANNELS; c++) {
+            black = histogram.quantile(c, clip);
+            white = histogram.quantile(c, 1 - clip);
+            tables[c] = black < white ? levelsTable(black, white) : ramp();
+        }
+        return new ToneCurve(tables[Histogram.RED], tables[Histogram.GREEN], tables[Histogram.BLUE]);
+    }
+
+    /**
+     * Returns a histogram equalization curve, spreading the luminance of the pixels evenly over
+     * the range 0 to 255. The table is computed from the cumulative luminance histogram, and the
+     * same table is applied to the three channels, which keeps gray pixels gray. An image with a
+     * single luminance is left unchanged.
+     *
+     * @param histogram the histogram of the image to adjust
+     * @return the curve
+     */
+    public static ToneCurve equalize(Histogram histogram) {
+        long[] counts = histogram.counts(Histogram.LUMINANCE);
+        long total = histogram.total();
+
+        // The pixels darker than or as dark as the darkest value present are not spread
+        long darkest = 0;
+        for (int v = 0; v < SIZE && darkest == 0; v++) {
+            darkest = counts[v];
+        }
+        if (darkest == total) {
+            return IDENTITY;
+        }
+
+        int[] table = new int[SIZE];
+        long cumulative = 0;
+        for (int v = 0; v < SIZE; v++) {
+            cumulative = cumulative + counts[v];
+            table[v] = clamp((double)Math.max(0, cumulative - darkest) * 255 / (total - darkest));
+        }
+        return new ToneCurve(table, table, table);
+    }
+
+    /**
+     * Returns the curve applying this curve and then another one, as a single table per channel.
+     *
+     * @param next the curve applied to the results of this one
+     * @return the composed curve
+     */
+    public ToneCurve then(ToneCurve next) {
+        int[] red = new int[SIZE];
+        int[] green = new int[SIZE];
+        int[] blue = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            red[v] = next.value(Histogram.RED, value(Histogram.RED, v));
+            green[v] = next.value(Histogram.GREEN, value(Histogram.GREEN, v));
+            blue[v] = next.value(Histogram.BLUE, value(Histogram.BLUE, v));
+        }
+        return new ToneCurve(red, green, blue);
+    }
+
+    /**
+     * Returns the new value of a value of a channel.
+     *
+     * @param channel {@link Histogram#RED}, {@link Histogram#GREEN} or {@link Histogram#BLUE}
+     * @param value the value, from 0 to 255
+     * @return the new value, from 0 to 255
+     * @throws IllegalArgumentException if the channel or the value does not exist
+     */
+    public int value(int channel, int value) {
+        assert channel >= 0 && channel < CHANNELS;
+        assert value >= 0 && value < SIZE;
+
+        switch (channel) {
+            case Histogram.RED:
+                return red[value] >>> 16;
+            case Histogram.GREEN:
+                return green[value] >>> 8;
+            default:
+                return blue[value];
+        }
+    }
+
+    /**
+     * Maps the channels of a packed RGB pixel through the curve.
+     *
+     * @param rgb the packed RGB pixel
+     * @return the new packed RGB pixel
+     */
+    public int apply(int rgb) {
+        return red[(rgb >>> 16) & 0xff] | green[(rgb >>> 8) & 0xff] | blue[rgb & 0xff];
+    }
+
+    /**
+     * Maps the pixels {@code src[from]} to {@code src[to-1]} through the curve, as a
+     * {@link PixelKernels.Kernel}.
+     *
+     * @param src the packed RGB pixels to read
+     * @param dst the array the results are written to, at the same positions; may be {@code src}
+     * @param from the index of the first pixel, inclusive
+     * @param to the index of the last pixel, exclusive
+     */
+    public void apply(int[] src, int[] dst, int from, int to) {
+        int rgb;
+        for (int i = from; i < to; i++) {
+            rgb = src[i];
+            dst[i] = red[(rgb >>> 16) & 0xff] | green[(rgb >>> 8) & 0xff] | blue[rgb & 0xff];
+        }
+    }
+
+    private static int[] levelsTable(int black, int white) {
+        int[] table = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            table[v] = clamp((double)(v - black) * 255 / (white - black));
+        }
+        return table;
+    }
+
+    private static int[] ramp() {
+        int[] table = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            table[v] = v;
+        }
+        return table;
+    }
+
+    private static boolean isTable(int[] table) {
+        if (table.length != SIZE) {
+            return false;
+        }
+        for (int v = 0; v < SIZE; v++) {
+            if (table[v] < 0 || table[v] > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rounds a value to the nearest channel value between 0 and 255.
+     */
+    private static int clamp(double value) {
+        return (int)Math.max(0, Math.min(255, Math.round(value)));
+    }
+}
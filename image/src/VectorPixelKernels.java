@@ -0,0 +1,150 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Vector API implementation of {@link PixelKernels}. This class is only loaded when the
+ * {@code jdk.incubator.vector} module is present.
+ * <p>
+ * Every kernel handles as many whole vectors as fit in the run, then finishes the remaining
+ * pixels one at a time with {@link PixelOps}.
+ * </p>
+ */
+class VectorPixelKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /*
+     * The luminosity is computed with doubles, in the same order as PixelOps, so that the result
+     * is identical. A double takes two ints of space, so only the lower lanes of an int vector,
+     * as many as a double vector has, are converted and stored back at each step. The kernel uses
+     * the int species of the other kernels rather than int vectors of half the size: when the
+     * methods of IntVector see two vector classes, the JIT compiler boxes the vectors of both, and
+     * every kernel allocates several objects per pixel.
+     */
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorMask<Integer> LOWER_LANES = INTS.indexInRange(0, DOUBLES.length());
+    /*
+     * (sum * AVERAGE_MULTIPLIER) >>> AVERAGE_SHIFT equals sum / 3 for every sum of three channels
+     * (0 to 765), and avoids a vector division, which most processors do not have.
+     */
+    private static final int AVERAGE_MULTIPLIER = 0xaaab;
+    private static final int AVERAGE_SHIFT = 17;
+
+    static void switchRedGreen(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        int upper = from + INTS.loopBound(to - from);
+        IntVector rgb;
+        for (; i < upper; i += INTS.length()) {
+            rgb = IntVector.fromArray(INTS, src, i);
+            pack(green(rgb), red(rgb), blue(rgb)).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] = PixelOps.switchRedGreen(src[i]);
+        }
+    }
+
+    static void switchRedBlue(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        int upper = from + INTS.loopBound(to - from);
+        IntVector rgb;
+        for (; i < upper; i += INTS.length()) {
+            rgb = IntVector.fromArray(INTS, src, i);
+            pack(blue(rgb), green(rgb), red(rgb)).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] = PixelOps.switchRedBlue(src[i]);
+        }
+    }
+
+    static void switchGreenBlue(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        int upper = from + INTS.loopBound(to - from);
+        IntVector rgb;
+        for (; i < upper; i += INTS.length()) {
+            rgb = IntVector.fromArray(INTS, src, i);
+            pack(red(rgb), blue(rgb), green(rgb)).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] = PixelOps.switchGreenBlue(src[i]);
+        }
+    }
+
+    static void grayscaleAverage(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        int upper = from + INTS.loopBound(to - from);
+        IntVector rgb, gray;
+        for (; i < upper; i += INTS.length()) {
+            rgb = IntVector.fromArray(INTS, src, i);
+            gray = red(rgb).add(green(rgb)).add(blue(rgb))
+                .mul(AVERAGE_MULTIPLIER)
+                .lanewise(VectorOperators.LSHR, AVERAGE_SHIFT);
+            packGray(gray).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] = PixelOps.grayscaleAverage(src[i]);
+        }
+    }
+
+    static void grayscaleLightness(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        int upper = from + INTS.loopBound(to - from);
+        IntVector rgb, red, green, blue, gray;
+        for (; i < upper; i += INTS.length()) {
+            rgb = IntVector.fromArray(INTS, src, i);
+            red = red(rgb);
+            green = green(rgb);
+            blue = blue(rgb);
+            gray = red.max(green).max(blue)
+                .add(red.min(green).min(blue))
+                .lanewise(VectorOperators.LSHR, 1);
+            packGray(gray).intoArray(dst, i);
+        }
+        for (; i < to; i++) {
+            dst[i] = PixelOps.grayscaleLightness(src[i]);
+        }
+    }
+
+    static void grayscaleLuminosity(int[] src, int[] dst, int from, int to) {
+        int i = from;
+        IntVector rgb, gray;
+        DoubleVector red, green, blue;
+        for (; i + INTS.length() <= to; i += DOUBLES.length()) {
+            rgb = IntVector.fromArray(INTS, src, i);
+            red = (DoubleVector)red(rgb).convertShape(VectorOperators.I2D, DOUBLES, 0);
+            green = (DoubleVector)green(rgb).convertShape(VectorOperators.I2D, DOUBLES, 0);
+            blue = (DoubleVector)blue(rgb).convertShape(VectorOperators.I2D, DOUBLES, 0);
+            gray = (IntVector)red.mul(0.3).add(green.mul(0.59)).add(blue.mul(0.11))
+                .convertShape(VectorOperators.D2I, INTS, 0);
+            packGray(gray).intoArray(dst, i, LOWER_LANES);
+        }
+        for (; i < to; i++) {
+            dst[i] = PixelOps.grayscaleLuminosity(src[i]);
+        }
+    }
+
+    private static IntVector red(IntVector rgb) {
+        return rgb.lanewise(VectorOperators.LSHR, 16).and(0xff);
+    }
+
+    private static IntVector green(IntVector rgb) {
+        return rgb.lanewise(VectorOperators.LSHR, 8).and(0xff);
+    }
+
+    private static IntVector blue(IntVector rgb) {
+        return rgb.and(0xff);
+    }
+
+    private static IntVector pack(IntVector red, IntVector green, IntVector blue) {
+        return red.lanewise(VectorOperators.LSHL, 16)
+            .or(green.lanewise(VectorOperators.LSHL, 8))
+            .or(blue);
+    }
+
+    /** Packs a gray level from 0 to 255 into all three channels. */
+    private static IntVector packGray(IntVector gray) {
+        return gray.mul(0x010101);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * The {@code WeightTable} class holds the precomputed weights of a resize along one axis: for
+ * each result coordinate, the first source coordinate it reads and the weight of each source
+ * pixel from there on.
+ * <p>
+ * Weights are stored in fixed point with {@link #PRECISION} fractional bits, and the weights of
+ * each result coordinate add up to exactly {@code 1 << PRECISION}, so that a flat area keeps its
+ * exact color. Computing the table once per axis means the filter function is evaluated once per
+ * row or column instead of once per pixel.
+ * </p>
+ */
+class WeightTable {
+
+    /** The number of fractional bits of a fixed-point weight. */
+    static final int PRECISION = 14;
+
+    /** Half of one in fixed point, added before shifting to round to the nearest integer. */
+    static final int HALF = 1 << (PRECISION - 1);
+
+    private final int[] starts;
+    private final int[] counts;
+    private final int[] weights;
+    private final int taps;
+
+    /**
+     * Computes the weights to resize an axis from {@code sourceLength} to {@code resultLength} pixels.
+     *
+     * @param filter the filter to interpolate with
+     * @param sourceLength the number of source pixels along the axis
+     * @param resultLength the number of result pixels along the axis
+     */
+    WeightTable(ResizeFilter filter, int sourceLength, int resultLength) {
+        assert sourceLength > 0 && resultLength > 0;
+
+        double scale = (double)sourceLength / resultLength;
+        // The filter is widened when reducing, so that every source pixel is read
+        double filterScale = filter == ResizeFilter.NEAREST ? 1.0 : Math.max(scale, 1.0);
+        double support = filter.support() * filterScale;
+
+        this.taps = filter == ResizeFilter.NEAREST ? 1 : (int)Math.ceil(support) * 2 + 2;
+        this.starts = new int[resultLength];
+        this.counts = new int[resultLength];
+        this.weights = new int[resultLength * taps];
+
+        double center, total;
+        double[] exact = new double[taps];
+        int left, right, sum, largest;
+        for (int i = 0; i < resultLength; i++) {
+            center = (i + 0.5) * scale;
+            if (filter == ResizeFilter.NEAREST) {
+                starts[i] = Math.min(sourceLength - 1, (int)center);
+                counts[i] = 1;
+                weights[i * taps] = 1 << PRECISION;
+                continue;
+            }
+
+            left = Math.max(0, (int)Math.floor(center - support));
+            right = Math.min(sourceLength, (int)Math.ceil(center + support));
+            right = Math.min(right, left + taps);
+
+            total = 0;
+            for (int j = left; j < right; j++) {
+                exact[j - left] = filter.weight((j + 0.5 - center) / filterScale);
+                total = total + exact[j - left];
+            }
+
+            // Round to fixed point, then give the rounding error to the largest weight
+            sum = 0;
+            largest = 0;
+            for (int j = 0; j < right - left; j++) {
+                weights[i*taps + j] = (int)Math.round(exact[j] / total * (1 << PRECISION));
+                sum = sum + weights[i*taps + j];
+                if (weights[i*taps + j] > weights[i*taps + largest]) {
+                    largest = j;
+                }
+            }
+            weights[i*taps + largest] += (1 << PRECISION) - sum;
+
+            starts[i] = left;
+            counts[i] = right - left;
+        }
+    }
+
+    /**
+     * Returns the first source coordinate read by a result coordinate.
+     *
+     * @param i the result coordinate
+     * @return the first source coordinate
+     */
+    int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     * Returns the number of source pixels read by a result coordinate.
+     *
+     * @param i the result coordinate
+     * @return the number of source pixels, from {@code start(i)} on
+     */
+    int count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Returns the fixed-point weight of a source pixel for a result coordinate.
+     *
+     * @param i the result coordinate
+     * @param k the index of the source pixel, from {@code 0} to {@code count(i)-1}
+     * @return the weight, with {@link #PRECISION} fractional bits
+     */
+    int weight(int i, int k) {
+        return weights[i*taps + k];
+    }
+}
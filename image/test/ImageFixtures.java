@@ -0,0 +1,79 @@
+import java.util.Random;
+
+/**
+ * The {@code ImageFixtures} class builds the images the tests work on and reads their pixels
+ * back for comparison.
+ */
+class ImageFixtures {
+
+    /**
+     * Creates a heap image of random packed RGB pixels.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param seed the seed of the random pixels, so that equal seeds give equal images
+     * @return a new {@code Image} object
+     */
+    static Image random(int width, int height, long seed) {
+        Random random = new Random(seed);
+        Image image = new Image(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt() & 0xffffff);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Copies an image into a new off-heap image, which must be closed.
+     *
+     * @param image the image to copy
+     * @return a new off-heap {@code Image} object with the same pixels
+     */
+    static Image offHeapCopy(Image image) {
+        Image copy = Image.allocateOffHeap(image.width(), image.height());
+        for (int y = 0; y < image.height(); y++) {
+            for (int x = 0; x < image.width(); x++) {
+                copy.setRGB(x, y, image.getRGB(x, y));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copies a rectangle of an image into a new heap image, pixel by pixel.
+     *
+     * @param image the image to copy from
+     * @param x the x-coordinate of the rectangle
+     * @param y the y-coordinate of the rectangle
+     * @param width the width of the rectangle
+     * @param height the height of the rectangle
+     * @return a new {@code Image} object holding the pixels of the rectangle
+     */
+    static Image copy(Image image, int x, int y, int width, int height) {
+        Image copy = new Image(width, height);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                copy.setRGB(i, j, image.getRGB(x + i, y + j));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the pixels of an image row by row, whatever its storage.
+     *
+     * @param image the image to read
+     * @return the packed RGB pixels, {@code width() * height()} of them
+     */
+    static int[] pixels(Image image) {
+        int[] pixels = new int[image.width() * image.height()];
+        for (int y = 0; y < image.height(); y++) {
+            for (int x = 0; x < image.width(); x++) {
+                pixels[y * image.width() + x] = image.getRGB(x, y);
+            }
+        }
+        return pixels;
+    }
+}
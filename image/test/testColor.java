@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+public class testColor {
+
+    private static final int[] NAMED = {
+        Color.BLACK, Color.WHITE, Color.GRAY, Color.RED, Color.MAROON, Color.LIME, Color.GREEN,
+        Color.NAVY, Color.YELLOW, Color.MAGENTA, Color.CYAN, Color.PINK, Color.ORANGE
+    };
+
+    @Test
+    void testHighBitsAreIgnored() {
+        Random random = new Random(1);
+        int rgb;
+        for (int i = 0; i < 1000; i++) {
+            rgb = random.nextInt() & 0xffffff;
+            assertEquals(Color.of(rgb), Color.of(0xff000000 | rgb));
+            assertEquals(Color.of(rgb).hashCode(), Color.of(0xff000000 | rgb).hashCode());
+            assertEquals(new Color(rgb), new Color(0x80000000 | rgb));
+            assertEquals(new Color(rgb).hashCode(), new Color(0x80000000 | rgb).hashCode());
+            assertEquals(rgb, Color.of(0xff000000 | rgb).rgb());
+        }
+    }
+
+    @Test
+    void testGraysAndNamedColorsAreCached() {
+        for (int level = 0; level < 256; level++) {
+            assertSame(Color.of(level * 0x010101), Color.of(level, level, level));
+            assertSame(Color.of(level * 0x010101), Color.of(0xff000000 | level * 0x010101));
+        }
+        for (int rgb : NAMED) {
+            assertSame(Color.of(rgb), Color.of(rgb));
+            assertSame(Color.of(rgb), Color.of(Color.red(rgb), Color.green(rgb), Color.blue(rgb)));
+            assertEquals(rgb, Color.of(rgb).rgb());
+        }
+    }
+
+    @Test
+    void testOtherColorsAreEqualButNotCached() {
+        Color color = Color.of(0x123456);
+        assertNotSame(color, Color.of(0x123456));
+        assertEquals(color, Color.of(0x123456));
+        assertEquals(color, new Color(0x12, 0x34, 0x56));
+        assertNotEquals(color, Color.of(0x123457));
+        assertEquals("#123456", color.toString());
+    }
+
+    @Test
+    void testComponents() {
+        Color color = Color.of(0xffa51c);
+        assertEquals(0xff, color.red());
+        assertEquals(0xa5, color.green());
+        assertEquals(0x1c, color.blue());
+        assertEquals(0xffa51c, Color.pack(0xff, 0xa5, 0x1c));
+        assertEquals(0xa5, Color.green(0x7fffa51c));
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class testHashIndex {
+
+    private static final int[] DISTANCES = {0, 1, 3, 4, 7, 10, 13, 20, 64};
+
+    @Test
+    void testSearchMatchesBruteForce() {
+        List<Long> hashes = new ArrayList<>();
+        HashIndex index = build(hashes, 6);
+        Random random = new Random(7);
+        for (int query = 0; query < 50; query++) {
+            long hash = query % 2 == 0 ? near(hashes.get(random.nextInt(hashes.size())), random) : random.nextLong();
+            for (int distance : DISTANCES) {
+                assertEquals(bruteForce(hashes, hash, distance), found(index, hash, distance));
+            }
+        }
+    }
+
+    @Test
+    void testMatchesReportDistance() {
+        List<Long> hashes = new ArrayList<>();
+        HashIndex index = build(hashes, 8);
+        long hash = hashes.get(3) ^ 0b1011;
+        for (HashIndex.Match match : index.search(hash, 10)) {
+            assertEquals((long)hashes.get((int)match.id()), match.hash());
+            assertEquals(PerceptualHash.distance(hash, match.hash()), match.distance());
+        }
+    }
+
+    @Test
+    void testSearchAfterSaveAndLoad(@TempDir Path directory) throws IOException {
+        List<Long> hashes = new ArrayList<>();
+        HashIndex index = build(hashes, 9);
+        Path file = directory.resolve("hashes.phix");
+        index.save(file);
+        HashIndex loaded = HashIndex.load(file);
+        assertEquals(index.size(), loaded.size());
+
+        Random random = new Random(10);
+        long hash;
+        for (int query = 0; query < 50; query++) {
+            hash = near(hashes.get(random.nextInt(hashes.size())), random);
+            for (int distance : DISTANCES) {
+                assertEquals(bruteForce(hashes, hash, distance), found(loaded, hash, distance));
+            }
+        }
+    }
+
+    /**
+     * Builds an index of random hashes, with groups of near-duplicates and repeated hashes, the
+     * id of each hash being its position in {@code hashes}.
+     */
+    private static HashIndex build(List<Long> hashes, long seed) {
+        Random random = new Random(seed);
+        HashIndex index = new HashIndex();
+        long hash;
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0 && i % 5 == 0) {
+                hash = near(hashes.get(random.nextInt(i)), random);
+            } else if (i > 0 && i % 97 == 0) {
+                hash = hashes.get(random.nextInt(i));
+            } else {
+                hash = random.nextLong();
+            }
+            hashes.add(hash);
+            index.add(hash, i);
+        }
+        return index;
+    }
+
+    /**
+     * Returns a hash differing from another in up to 12 random bits.
+     */
+    private static long near(long hash, Random random) {
+        int bits = random.nextInt(13);
+        for (int i = 0; i < bits; i++) {
+            hash = hash ^ (1L << random.nextInt(Long.SIZE));
+        }
+        return hash;
+    }
+
+    private static Set<Long> bruteForce(List<Long> hashes, long hash, int maxDistance) {
+        Set<Long> ids = new TreeSet<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            if (PerceptualHash.distance(hash, hashes.get(i)) <= maxDistance) {
+                ids.add((long)i);
+            }
+        }
+        return ids;
+    }
+
+    private static Set<Long> found(HashIndex index, long hash, int maxDistance) {
+        Set<Long> ids = new TreeSet<>();
+        for (HashIndex.Match match : index.search(hash, maxDistance)) {
+            // Every stored hash is reported at most once
+            assertTrue(ids.add(match.id()));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+public class testHistogram {
+
+    private static final int[][] SIZES = {{1, 1}, {1, 37}, {37, 1}, {2, 3}, {37, 23}, {65, 64}};
+
+    private static final int[] CHANNELS = {Histogram.RED, Histogram.GREEN, Histogram.BLUE, Histogram.LUMINANCE};
+
+    @Test
+    void testCountsMatchBruteForce() {
+        Image image = ImageFixtures.random(37, 23, 1);
+        long[][] expected = new long[4][Histogram.BINS];
+        int r, g, b;
+        for (int pixel : ImageFixtures.pixels(image)) {
+            r = Color.red(pixel);
+            g = Color.green(pixel);
+            b = Color.blue(pixel);
+            expected[Histogram.RED][r]++;
+            expected[Histogram.GREEN][g]++;
+            expected[Histogram.BLUE][b]++;
+            expected[Histogram.LUMINANCE][(int)((double)r*0.3 + (double)g*0.59 + (double)b*0.11)]++;
+        }
+
+        Histogram histogram = new Histogram(image);
+        assertEquals(37 * 23, histogram.total());
+        for (int channel : CHANNELS) {
+            assertArrayEquals(expected[channel], histogram.counts(channel));
+            for (int v = 0; v < Histogram.BINS; v++) {
+                assertEquals(expected[channel][v], histogram.count(channel, v));
+            }
+        }
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        Image image;
+        Histogram sequential, parallel;
+        for (int[] size : SIZES) {
+            image = ImageFixtures.random(size[0], size[1], size[0] * 1000 + size[1]);
+            sequential = new Histogram(image, RowBands.SEQUENTIAL);
+            parallel = new Histogram(image, RowBands.parallel(1));
+            assertEquals(sequential.total(), parallel.total());
+            for (int channel : CHANNELS) {
+                assertArrayEquals(sequential.counts(channel), parallel.counts(channel), size[0] + "x" + size[1]);
+            }
+        }
+    }
+
+    @Test
+    void testOffHeapViewMatchesCopy() {
+        Image image = ImageFixtures.random(40, 30, 2);
+        Histogram expected = new Histogram(ImageFixtures.copy(image, 3, 4, 20, 15));
+        Histogram histogram;
+        try (Image offHeap = ImageFixtures.offHeapCopy(image)) {
+            histogram = new Histogram(offHeap.view(3, 4, 20, 15), RowBands.parallel(1));
+        }
+        for (int channel : CHANNELS) {
+            assertArrayEquals(expected.counts(channel), histogram.counts(channel));
+        }
+    }
+
+    @Test
+    void testQuantileAndMean() {
+        Image image = new Image(4, 1);
+        image.setRGB(0, 0, 0x000000);
+        image.setRGB(1, 0, 0x100000);
+        image.setRGB(2, 0, 0x200000);
+        image.setRGB(3, 0, 0xff0000);
+        Histogram histogram = new Histogram(image);
+
+        assertEquals(0x00, histogram.quantile(Histogram.RED, 0));
+        assertEquals(0x10, histogram.quantile(Histogram.RED, 0.5));
+        assertEquals(0x20, histogram.quantile(Histogram.RED, 0.75));
+        assertEquals(0xff, histogram.quantile(Histogram.RED, 1));
+        assertEquals(0, histogram.quantile(Histogram.GREEN, 1));
+        assertEquals((0x10 + 0x20 + 0xff) / 4.0, histogram.mean(Histogram.RED), 1e-12);
+    }
+}
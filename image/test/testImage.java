@@ -0,0 +1,199 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+
+public class testImage {
+
+    @Test
+    void testFromBufferedImageDropsAlpha() {
+        BufferedImage argb = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+        argb.setRGB(0, 0, 0x80123456);
+        argb.setRGB(1, 0, 0xff654321);
+        argb.setRGB(2, 1, 0x01abcdef);
+
+        Image image = Image.fromBufferedImage(argb);
+        assertEquals(0x123456, image.getRGB(0, 0));
+        assertEquals(0x654321, image.getRGB(1, 0));
+        assertEquals(0xabcdef, image.getRGB(2, 1));
+        assertEquals(0x000000, image.getRGB(0, 1));
+    }
+
+    @Test
+    void testFromBufferedImageCopies() {
+        BufferedImage rgb = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        rgb.setRGB(1, 1, 0x112233);
+
+        Image image = Image.fromBufferedImage(rgb);
+        rgb.setRGB(1, 1, 0x445566);
+        assertEquals(0x112233, image.getRGB(1, 1));
+    }
+
+    @Test
+    void testWrapSharesPixelsBothWays() {
+        BufferedImage rgb = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        Image image = Image.wrap(rgb);
+
+        rgb.setRGB(2, 1, 0x123456);
+        assertEquals(0x123456, image.getRGB(2, 1));
+
+        image.setRGB(3, 2, 0x654321);
+        assertEquals(0x654321, rgb.getRGB(3, 2) & 0xffffff);
+    }
+
+    @Test
+    void testWrapRejectsOtherTypes() {
+        BufferedImage argb = new BufferedImage(4, 3, BufferedImage.TYPE_INT_ARGB);
+        assertThrows(IllegalArgumentException.class, () -> Image.wrap(argb));
+    }
+
+    @Test
+    void testToBufferedImageSharesPixelsBothWays() {
+        Image image = ImageFixtures.random(5, 4, 1);
+        BufferedImage shared = image.toBufferedImage();
+        assertEquals(image.getRGB(4, 3), shared.getRGB(4, 3) & 0xffffff);
+
+        shared.setRGB(0, 0, 0xabcdef);
+        assertEquals(0xabcdef, image.getRGB(0, 0));
+
+        image.setRGB(1, 1, 0x102030);
+        assertEquals(0x102030, shared.getRGB(1, 1) & 0xffffff);
+    }
+
+    @Test
+    void testOperationsOnViewMatchCopy() {
+        Image image = ImageFixtures.random(60, 40, 1);
+        Image view = image.view(7, 5, 31, 22);
+        Image copy = ImageFixtures.copy(image, 7, 5, 31, 22);
+
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        assertArrayEquals(ImageFixtures.pixels(ImageUtils.grayscaleLuminosity(copy)), ImageFixtures.pixels(ImageUtils.grayscaleLuminosity(view)));
+        assertArrayEquals(ImageFixtures.pixels(ImageUtils.rotateLeft(copy)), ImageFixtures.pixels(ImageUtils.rotateLeft(view)));
+        assertArrayEquals(ImageFixtures.pixels(ImageUtils.resize(copy, 13, 50, ResizeFilter.BICUBIC)),
+                          ImageFixtures.pixels(ImageUtils.resize(view, 13, 50, ResizeFilter.BICUBIC)));
+        assertArrayEquals(ImageFixtures.pixels(ImageUtils.grayscaleLuminosity(copy)),
+                          ImageFixtures.pixels(ImageUtils.grayscaleLuminosity(view, RowBands.parallel(1))));
+    }
+
+    @Test
+    void testInPlaceOperationOnViewOnlyChangesView() {
+        Image image = ImageFixtures.random(60, 40, 2);
+        int[] original = ImageFixtures.pixels(image);
+        Image view = image.view(7, 5, 31, 22);
+        Image copy = ImageFixtures.copy(image, 7, 5, 31, 22);
+
+        ImageUtilsSE.switchRedGreen(view);
+        ImageUtilsSE.switchRedGreen(copy);
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        assertArrayEquals(original, ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testFullWidthViewOnlyChangesItsRows() {
+        Image image = ImageFixtures.random(60, 40, 3);
+        int[] original = ImageFixtures.pixels(image);
+        Image view = image.view(0, 0, 60, 10);
+        Image copy = ImageFixtures.copy(image, 0, 0, 60, 10);
+
+        ImageUtilsSE.grayscaleLuminosity(view);
+        ImageUtilsSE.grayscaleLuminosity(copy);
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        assertArrayEquals(original, ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testViewDoesNotSeeParentChanges() {
+        Image image = ImageFixtures.random(20, 20, 4);
+        Image view = image.view(5, 5, 10, 10);
+        Image crop = ImageUtils.crop(image, 5, 5, 10, 10);
+        Image copy = ImageFixtures.copy(image, 5, 5, 10, 10);
+
+        image.setRGB(6, 6, 0x123456);
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(crop));
+
+        view.setRGB(0, 0, 0xabcdef);
+        assertEquals(0xabcdef, view.getRGB(0, 0));
+        assertNotEquals(0xabcdef, image.getRGB(5, 5));
+        assertEquals(copy.getRGB(0, 0), crop.getRGB(0, 0));
+    }
+
+    @Test
+    void testViewDoesNotSeeInPlaceRearrangements() {
+        Image image = ImageFixtures.random(30, 20, 6);
+        Image copy = ImageFixtures.copy(image, 3, 2, 17, 11);
+        Image crop = ImageUtils.crop(image, 3, 2, 17, 11);
+        Image view = image.view(3, 2, 17, 11);
+        Image subView = view.view(4, 3, 9, 5);
+
+        ImageUtilsSE.rotateLeft(image);
+        assertEquals(20, image.width());
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(crop));
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        assertArrayEquals(ImageFixtures.pixels(ImageFixtures.copy(copy, 4, 3, 9, 5)), ImageFixtures.pixels(subView));
+
+        // Views taken after the change share the rotated pixels, and are detached by the next one
+        Image rotated = ImageFixtures.copy(image, 0, 0, 20, 30);
+        Image later = ImageUtils.crop(image, 1, 1, 15, 25);
+        ImageUtilsSE.flipHorizontal(image);
+        assertArrayEquals(ImageFixtures.pixels(ImageFixtures.copy(rotated, 1, 1, 15, 25)), ImageFixtures.pixels(later));
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(crop));
+    }
+
+    @Test
+    void testSubViewWriteOnlyChangesSubView() {
+        Image image = ImageFixtures.random(30, 20, 7);
+        int[] original = ImageFixtures.pixels(image);
+        Image view = image.view(3, 2, 17, 11);
+        int[] viewOriginal = ImageFixtures.pixels(view);
+        Image subView = view.view(4, 3, 9, 5);
+
+        subView.setRGB(0, 0, 0xfedcba);
+        assertEquals(0xfedcba, subView.getRGB(0, 0));
+        assertArrayEquals(original, ImageFixtures.pixels(image));
+        assertArrayEquals(viewOriginal, ImageFixtures.pixels(view));
+
+        // A view that copied its pixels is a parent of its own
+        Image later = view.view(0, 0, 5, 5);
+        view.setRGB(1, 1, 0x010101);
+        ImageUtilsSE.switchRedBlue(view);
+        assertEquals(viewOriginal[view.width() + 1], later.getRGB(1, 1));
+        assertArrayEquals(original, ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testOffHeapViewDoesNotSeeParentChanges() {
+        Image heap = ImageFixtures.random(40, 30, 8);
+        Image copy = ImageFixtures.copy(heap, 3, 4, 20, 15);
+        Image view;
+        try (Image offHeap = ImageFixtures.offHeapCopy(heap)) {
+            view = offHeap.view(3, 4, 20, 15);
+            ImageUtilsSE.grayscaleAverage(offHeap);
+            assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        }
+
+        // The copy made for the change to the parent outlives it
+        assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+        view.close();
+    }
+
+    @Test
+    void testOffHeapViewMatchesCopy() {
+        Image heap = ImageFixtures.random(40, 30, 5);
+        try (Image offHeap = Image.allocateOffHeap(40, 30)) {
+            for (int y = 0; y < 30; y++) {
+                for (int x = 0; x < 40; x++) {
+                    offHeap.setRGB(x, y, heap.getRGB(x, y));
+                }
+            }
+            Image view = offHeap.view(3, 4, 20, 15);
+            Image copy = ImageFixtures.copy(heap, 3, 4, 20, 15);
+            assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+
+            ImageUtilsSE.switchRedBlue(view);
+            ImageUtilsSE.switchRedBlue(copy);
+            assertArrayEquals(ImageFixtures.pixels(copy), ImageFixtures.pixels(view));
+            assertArrayEquals(ImageFixtures.pixels(heap), ImageFixtures.pixels(offHeap));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class testImageCoder {
+
+    private static final String KEY = "correct horse battery staple";
+
+    @Test
+    void testParallelEncryptMatchesSequential() {
+        Image sequential = ImageFixtures.random(37, 123, 1);
+        Image parallel = ImageFixtures.random(37, 123, 1);
+        ImageCoder.encrypt(sequential, KEY);
+        ImageCoder.encrypt(parallel, KEY, RowBands.parallel(1));
+        assertArrayEquals(ImageFixtures.pixels(sequential), ImageFixtures.pixels(parallel));
+    }
+
+    @Test
+    void testParallelDecryptMatchesSequential() {
+        Image sequential = ImageFixtures.random(37, 123, 2);
+        Image parallel = ImageFixtures.random(37, 123, 2);
+        ImageCoder.decrypt(sequential, KEY);
+        ImageCoder.decrypt(parallel, KEY, RowBands.parallel(1));
+        assertArrayEquals(ImageFixtures.pixels(sequential), ImageFixtures.pixels(parallel));
+    }
+
+    @Test
+    void testParallelRoundTrip() {
+        Image image = ImageFixtures.random(64, 80, 3);
+        int[] original = ImageFixtures.pixels(image);
+        ImageCoder.encrypt(image, KEY, RowBands.parallel(1));
+        assertFalse(Arrays.equals(original, ImageFixtures.pixels(image)));
+        ImageCoder.decrypt(image, KEY, RowBands.parallel(1));
+        assertArrayEquals(original, ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testStreamingMatchesInMemory(@TempDir Path directory) throws IOException {
+        // Larger than one chunk, with rows that do not line up with the chunks
+        Image image = ImageFixtures.random(151, 131, 4);
+        Path plain = directory.resolve("plain.rast");
+        Path encrypted = directory.resolve("encrypted.rast");
+        Path decrypted = directory.resolve("decrypted.rast");
+        RasterFile.save(image, plain);
+        assertTrue(Files.size(plain) > ImageCoder.CHUNK_SIZE);
+
+        ImageCoder.encrypt(plain, encrypted, KEY);
+        Image expected = ImageFixtures.random(151, 131, 4);
+        ImageCoder.encrypt(expected, KEY);
+        try (Image streamed = RasterFile.open(encrypted, false)) {
+            assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(streamed));
+        }
+
+        ImageCoder.decrypt(encrypted, decrypted, KEY);
+        try (Image streamed = RasterFile.open(decrypted, false)) {
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(streamed));
+        }
+    }
+}
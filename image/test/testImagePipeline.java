@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+public class testImagePipeline {
+
+    @Test
+    void testSingleGeometricOperations() {
+        Image image = ImageFixtures.random(7, 4, 1);
+        assertPipeline(ImageUtils.flipHorizontal(image), new ImagePipeline(image).flipHorizontal());
+        assertPipeline(ImageUtils.flipVirtical(image), new ImagePipeline(image).flipVirtical());
+        assertPipeline(ImageUtils.rotateLeft(image), new ImagePipeline(image).rotateLeft());
+        assertPipeline(ImageUtils.rotateRight(image), new ImagePipeline(image).rotateRight());
+        assertPipeline(ImageUtils.rotateHalf(image), new ImagePipeline(image).rotateHalf());
+        assertPipeline(ImageUtils.crop(image, 2, 1, 3, 2), new ImagePipeline(image).crop(2, 1, 3, 2));
+        assertPipeline(ImageUtils.strechHorizontal(image), new ImagePipeline(image).strechHorizontal());
+        assertPipeline(ImageUtils.strechVertical(image), new ImagePipeline(image).strechVertical());
+    }
+
+    @Test
+    void testRotationsAfterStretch() {
+        Image image = ImageFixtures.random(5, 3, 2);
+        assertPipeline(ImageUtils.rotateLeft(ImageUtils.strechHorizontal(image)),
+                       new ImagePipeline(image).strechHorizontal().rotateLeft());
+        assertPipeline(ImageUtils.strechHorizontal(ImageUtils.rotateRight(ImageUtils.strechVertical(image))),
+                       new ImagePipeline(image).strechVertical().rotateRight().strechHorizontal());
+        assertPipeline(ImageUtils.crop(ImageUtils.flipVirtical(ImageUtils.strechHorizontal(image)), 3, 1, 4, 1),
+                       new ImagePipeline(image).strechHorizontal().flipVirtical().crop(3, 1, 4, 1));
+        assertPipeline(ImageUtils.strechVertical(ImageUtils.rotateHalf(ImageUtils.strechVertical(image))),
+                       new ImagePipeline(image).strechVertical().rotateHalf().strechVertical());
+    }
+
+    @Test
+    void testColorOperationsWithGeometry() {
+        Image image = ImageFixtures.random(9, 5, 3);
+        Image expected = ImageUtils.grayscaleLuminosity(ImageUtils.rotateLeft(ImageUtils.switchRedBlue(image)));
+        assertPipeline(expected, new ImagePipeline(image).switchRedBlue().rotateLeft().grayscaleLuminosity());
+
+        expected = ImageUtils.flipHorizontal(ImageUtils.crop(ImageUtils.switchGreenBlue(image), 1, 1, 6, 3));
+        assertPipeline(expected, new ImagePipeline(image).switchGreenBlue().crop(1, 1, 6, 3).flipHorizontal()
+                                                         .map(rgb -> rgb).map(rgb -> rgb ^ 0x0f0f0f).map(rgb -> rgb ^ 0x0f0f0f));
+    }
+
+    @Test
+    void testRandomChains() {
+        Random random = new Random(4);
+        Image image, expected;
+        ImagePipeline pipeline;
+        int x, y, width, height;
+        for (int chain = 0; chain < 300; chain++) {
+            image = ImageFixtures.random(2 + random.nextInt(9), 2 + random.nextInt(9), chain);
+            expected = image;
+            pipeline = new ImagePipeline(image);
+            for (int step = 0; step < 8; step++) {
+                switch (random.nextInt(11)) {
+                    case 0:
+                        expected = ImageUtils.flipHorizontal(expected);
+                        pipeline.flipHorizontal();
+                        break;
+                    case 1:
+                        expected = ImageUtils.flipVirtical(expected);
+                        pipeline.flipVirtical();
+                        break;
+                    case 2:
+                        expected = ImageUtils.rotateLeft(expected);
+                        pipeline.rotateLeft();
+                        break;
+                    case 3:
+                        expected = ImageUtils.rotateRight(expected);
+                        pipeline.rotateRight();
+                        break;
+                    case 4:
+                        expected = ImageUtils.rotateHalf(expected);
+                        pipeline.rotateHalf();
+                        break;
+                    case 5:
+                    case 6:
+                        // crop requires the region to end before the last row and column
+                        if (expected.width() > 2 && expected.height() > 2) {
+                            x = random.nextInt(expected.width() - 2);
+                            y = random.nextInt(expected.height() - 2);
+                            width = 1 + random.nextInt(expected.width() - x - 2);
+                            height = 1 + random.nextInt(expected.height() - y - 2);
+                            expected = ImageUtils.crop(expected, x, y, width, height);
+                            pipeline.crop(x, y, width, height);
+                        }
+                        break;
+                    case 7:
+                        if (expected.width() < 64) {
+                            expected = ImageUtils.strechHorizontal(expected);
+                            pipeline.strechHorizontal();
+                        }
+                        break;
+                    case 8:
+                        if (expected.height() < 64) {
+                            expected = ImageUtils.strechVertical(expected);
+                            pipeline.strechVertical();
+                        }
+                        break;
+                    case 9:
+                        expected = ImageUtils.switchRedGreen(expected);
+                        pipeline.switchRedGreen();
+                        break;
+                    default:
+                        expected = ImageUtils.grayscaleAverage(expected);
+                        pipeline.grayscaleAverage();
+                        break;
+                }
+                assertEquals(expected.width(), pipeline.width());
+                assertEquals(expected.height(), pipeline.height());
+            }
+            assertPipeline(expected, pipeline);
+        }
+    }
+
+    /**
+     * Checks a pipeline against the result of the chained calls, sequentially and in parallel.
+     */
+    private static void assertPipeline(Image expected, ImagePipeline pipeline) {
+        assertEquals(expected.width(), pipeline.width());
+        assertEquals(expected.height(), pipeline.height());
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(pipeline.toImage()));
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(pipeline.toImage(RowBands.parallel(1))));
+    }
+}
@@ -0,0 +1,181 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class testImageUtils {
+
+    // Odd sizes, single rows and single columns, so that bands end off the grain
+    private static final int[][] SIZES = {{1, 1}, {1, 37}, {37, 1}, {2, 3}, {37, 23}, {65, 64}, {3, 130}};
+
+    // A grain of one row makes every row a band of its own
+    private static final RowBands PARALLEL = RowBands.parallel(1);
+
+    /**
+     * An {@code ImageUtils} operation taking the bands to process the rows with.
+     */
+    private interface Operation {
+        Image apply(Image image, RowBands bands);
+    }
+
+    private static Map<String, Operation> operations() {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("flipHorizontal", ImageUtils::flipHorizontal);
+        operations.put("flipVirtical", ImageUtils::flipVirtical);
+        operations.put("rotateLeft", ImageUtils::rotateLeft);
+        operations.put("rotateLeft(tile 4)", (image, bands) -> ImageUtils.rotateLeft(image, 4, bands));
+        operations.put("rotateRight", ImageUtils::rotateRight);
+        operations.put("rotateRight(tile 4)", (image, bands) -> ImageUtils.rotateRight(image, 4, bands));
+        operations.put("rotateHalf", ImageUtils::rotateHalf);
+        operations.put("strechHorizontal", ImageUtils::strechHorizontal);
+        operations.put("strechVertical", ImageUtils::strechVertical);
+        operations.put("switchRedGreen", ImageUtils::switchRedGreen);
+        operations.put("switchRedBlue", ImageUtils::switchRedBlue);
+        operations.put("switchGreenBlue", ImageUtils::switchGreenBlue);
+        operations.put("grayscaleAverage", ImageUtils::grayscaleAverage);
+        operations.put("grayscaleLightness", ImageUtils::grayscaleLightness);
+        operations.put("grayscaleLuminosity", ImageUtils::grayscaleLuminosity);
+        operations.put("equalize", ImageUtils::equalize);
+        operations.put("autoLevels", ImageUtils::autoLevels);
+        operations.put("gamma", (image, bands) -> ImageUtils.gamma(image, 1.8, bands));
+        operations.put("contrast", (image, bands) -> ImageUtils.contrast(image, 1.3, bands));
+        operations.put("resample", ImageUtils::resample);
+        operations.put("boxBlur", (image, bands) -> ImageUtils.boxBlur(image, 2, bands));
+        operations.put("gaussianBlur", (image, bands) -> ImageUtils.gaussianBlur(image, 1.5, bands));
+        operations.put("sharpen", ImageUtils::sharpen);
+        operations.put("sobel", ImageUtils::sobel);
+        operations.put("resize(down)", (image, bands) -> ImageUtils.resize(image, Math.max(1, image.width() / 3), Math.max(1, image.height() / 2), ResizeFilter.LANCZOS3, bands));
+        operations.put("resize(up)", (image, bands) -> ImageUtils.resize(image, image.width() * 2 + 1, image.height() * 3, ResizeFilter.BICUBIC, bands));
+        return operations;
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        Image image;
+        for (Map.Entry<String, Operation> operation : operations().entrySet()) {
+            for (int[] size : SIZES) {
+                image = ImageFixtures.random(size[0], size[1], size[0] * 31 + size[1]);
+                assertArrayEquals(ImageFixtures.pixels(operation.getValue().apply(image, RowBands.SEQUENTIAL)),
+                                  ImageFixtures.pixels(operation.getValue().apply(image, PARALLEL)),
+                                  operation.getKey() + " " + size[0] + "x" + size[1]);
+            }
+        }
+    }
+
+    @Test
+    void testParallelOffHeapMatchesSequentialHeap() {
+        Image image = ImageFixtures.random(37, 23, 5);
+        Image expected;
+        for (Map.Entry<String, Operation> operation : operations().entrySet()) {
+            expected = operation.getValue().apply(image, RowBands.SEQUENTIAL);
+            try (Image offHeap = ImageFixtures.offHeapCopy(image);
+                 Image result = operation.getValue().apply(offHeap, PARALLEL)) {
+                assertTrue(result.isOffHeap(), operation.getKey());
+                assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(result), operation.getKey());
+            }
+        }
+    }
+
+    @Test
+    void testParallelAverageColorMatchesSequential() {
+        Image image;
+        for (int[] size : SIZES) {
+            image = ImageFixtures.random(size[0], size[1], size[0] * 7 + size[1]);
+            assertEquals(ImageUtils.averageColor(image, RowBands.SEQUENTIAL), ImageUtils.averageColor(image, PARALLEL));
+        }
+    }
+
+    @Test
+    void testResizeKeepsFlatColor() {
+        int[][] resizes = {{37, 23, 5, 7}, {5, 7, 37, 23}, {37, 23, 36, 24}, {4000, 2, 3, 2}, {3, 2, 4000, 2}, {2, 4000, 2, 3}};
+        Image image, result;
+        for (int[] resize : resizes) {
+            image = new Image(resize[0], resize[1], Color.of(0x7f3a01));
+            for (ResizeFilter filter : ResizeFilter.values()) {
+                result = ImageUtils.resize(image, resize[2], resize[3], filter);
+                for (int pixel : ImageFixtures.pixels(result)) {
+                    assertEquals(0x7f3a01, pixel, filter + " " + resize[0] + "x" + resize[1] + " to " + resize[2] + "x" + resize[3]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testResizeNearestAtIntegerRatiosPicksPixels() {
+        Image image = ImageFixtures.random(36, 24, 6);
+        Image result;
+        for (int ratio = 1; ratio <= 4; ratio++) {
+            // Reducing takes the pixel right of and below the center of each block
+            result = ImageUtils.resize(image, 36 / ratio, 24 / ratio, ResizeFilter.NEAREST);
+            for (int y = 0; y < result.height(); y++) {
+                for (int x = 0; x < result.width(); x++) {
+                    assertEquals(image.getRGB(x * ratio + ratio / 2, y * ratio + ratio / 2), result.getRGB(x, y), "reduce " + ratio);
+                }
+            }
+
+            // Enlarging repeats every pixel ratio times along each axis
+            result = ImageUtils.resize(image, 36 * ratio, 24 * ratio, ResizeFilter.NEAREST);
+            for (int y = 0; y < result.height(); y++) {
+                for (int x = 0; x < result.width(); x++) {
+                    assertEquals(image.getRGB(x / ratio, y / ratio), result.getRGB(x, y), "enlarge " + ratio);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testResizeParallelMatchesSequential() {
+        int[][] resizes = {{37, 23, 5, 7}, {5, 7, 37, 23}, {37, 23, 36, 24}, {4000, 3, 3, 3}, {3, 4000, 3, 3}, {3, 3, 4000, 3}, {3, 3, 3, 4000}};
+        Image image;
+        for (int[] resize : resizes) {
+            image = ImageFixtures.random(resize[0], resize[1], resize[0] + resize[1]);
+            for (ResizeFilter filter : ResizeFilter.values()) {
+                assertArrayEquals(ImageFixtures.pixels(ImageUtils.resize(image, resize[2], resize[3], filter, RowBands.SEQUENTIAL)),
+                                  ImageFixtures.pixels(ImageUtils.resize(image, resize[2], resize[3], filter, PARALLEL)),
+                                  filter + " " + resize[0] + "x" + resize[1] + " to " + resize[2] + "x" + resize[3]);
+            }
+        }
+    }
+
+    @Test
+    void testResizeExtremeRatios() {
+        Image image = new Image(4000, 3);
+        Image result;
+        for (int x = 0; x < 4000; x++) {
+            for (int y = 0; y < 3; y++) {
+                image.setRGB(x, y, Color.pack(x * 255 / 3999, 255 - x * 255 / 3999, 0x40));
+            }
+        }
+
+        // The middle third of a ramp averages to the middle of the ramp
+        for (ResizeFilter filter : ResizeFilter.values()) {
+            result = ImageUtils.resize(image, 3, 3, filter);
+            assertTrue(Math.abs(Color.red(result.getRGB(1, 1)) - 127) <= 1, filter + " " + Integer.toHexString(result.getRGB(1, 1)));
+            assertTrue(Math.abs(Color.green(result.getRGB(1, 1)) - 128) <= 1, filter + " " + Integer.toHexString(result.getRGB(1, 1)));
+            assertEquals(0x40, Color.blue(result.getRGB(1, 1)));
+            assertTrue(Color.red(result.getRGB(0, 1)) < Color.red(result.getRGB(1, 1)), filter.toString());
+            assertTrue(Color.red(result.getRGB(1, 1)) < Color.red(result.getRGB(2, 1)), filter.toString());
+        }
+
+        // Enlarging three pixels keeps each of them at the middle of its third
+        image = new Image(3, 3);
+        for (int y = 0; y < 3; y++) {
+            image.setRGB(0, y, 0x000000);
+            image.setRGB(1, y, 0x808080);
+            image.setRGB(2, y, 0xffffff);
+        }
+        for (ResizeFilter filter : ResizeFilter.values()) {
+            result = ImageUtils.resize(image, 4000, 3, filter);
+            assertEquals(0x000000, result.getRGB(0, 1), filter.toString());
+            assertEquals(0x808080, result.getRGB(2000, 1), filter.toString());
+            assertEquals(0xffffff, result.getRGB(3999, 1), filter.toString());
+            // Filters without negative lobes do not overshoot, so the grays only get lighter
+            if (filter == ResizeFilter.NEAREST || filter == ResizeFilter.BILINEAR) {
+                for (int x = 1; x < 4000; x++) {
+                    assertTrue(result.getRGB(x - 1, 1) <= result.getRGB(x, 1), filter + " " + x);
+                }
+            }
+        }
+    }
+}
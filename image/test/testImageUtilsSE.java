@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class testImageUtilsSE {
+
+    @Test
+    void testRotateLeftNonSquare() {
+        Image image = ImageFixtures.random(45, 17, 1);
+        Image expected = ImageUtils.rotateLeft(image);
+        ImageUtilsSE.rotateLeft(image);
+        assertEquals(17, image.width());
+        assertEquals(45, image.height());
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testRotateRightNonSquare() {
+        Image image = ImageFixtures.random(17, 45, 2);
+        Image expected = ImageUtils.rotateRight(image);
+        ImageUtilsSE.rotateRight(image);
+        assertEquals(45, image.width());
+        assertEquals(17, image.height());
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testRotateLeftLargerThanTiles() {
+        Image image = ImageFixtures.random(ImageUtils.DEFAULT_TILE_SIZE * 3 + 5, ImageUtils.DEFAULT_TILE_SIZE + 7, 3);
+        Image expected = ImageUtils.rotateLeft(image);
+        ImageUtilsSE.rotateLeft(image);
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testRotateRightUndoesRotateLeft() {
+        Image image = ImageFixtures.random(30, 11, 4);
+        int[] original = ImageFixtures.pixels(image);
+        ImageUtilsSE.rotateLeft(image);
+        ImageUtilsSE.rotateRight(image);
+        assertEquals(30, image.width());
+        assertEquals(11, image.height());
+        assertArrayEquals(original, ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testRotateOffHeap() {
+        Image heap = ImageFixtures.random(23, 9, 5);
+        try (Image offHeap = ImageFixtures.offHeapCopy(heap)) {
+            ImageUtilsSE.rotateRight(offHeap);
+            assertArrayEquals(ImageFixtures.pixels(ImageUtils.rotateRight(heap)), ImageFixtures.pixels(offHeap));
+        }
+    }
+
+    @Test
+    void testRotateSquare() {
+        Image image = ImageFixtures.random(9, 9, 6);
+        Image expected = ImageUtils.rotateLeft(image);
+        ImageUtilsSE.rotateLeft(image);
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(image));
+        expected = ImageUtils.rotateRight(image);
+        ImageUtilsSE.rotateRight(image);
+        assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(image));
+    }
+
+    @Test
+    void testRotateMappedFileKeepsHeaderInStep(@TempDir Path directory) throws IOException {
+        Image image = ImageFixtures.random(13, 5, 7);
+        Path file = directory.resolve("image.rast");
+        RasterFile.save(image, file);
+        try (Image mapped = RasterFile.open(file, true)) {
+            ImageUtilsSE.rotateLeft(mapped);
+        }
+        try (Image reopened = RasterFile.open(file, false)) {
+            assertEquals(5, reopened.width());
+            assertEquals(13, reopened.height());
+            assertArrayEquals(ImageFixtures.pixels(ImageUtils.rotateLeft(image)), ImageFixtures.pixels(reopened));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+public class testIndexedImage {
+
+    /**
+     * Creates an image using the given number of colors, each in a cell of its own at 5 bits per
+     * channel, with random low bits.
+     */
+    private static Image fewColors(int width, int height, int colors, long seed) {
+        Random random = new Random(seed);
+        boolean[] used = new boolean[1 << 15];
+        int[] palette = new int[colors];
+        int cell;
+        for (int i = 0; i < colors; i++) {
+            do {
+                cell = random.nextInt(1 << 15);
+            } while (used[cell]);
+            used[cell] = true;
+            palette[i] = Color.pack((cell >> 10) << 3 | random.nextInt(8),
+                                    ((cell >> 5) & 31) << 3 | random.nextInt(8),
+                                    (cell & 31) << 3 | random.nextInt(8));
+        }
+        Image image = new Image(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, palette[(x + y * width) < colors ? x + y * width : random.nextInt(colors)]);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    void testFewColorsSurviveExactly() {
+        int[] counts = {1, 2, 17, 100, 255, 256};
+        Image image;
+        IndexedImage indexed;
+        for (int colors : counts) {
+            image = fewColors(37, 23, colors, colors);
+            indexed = IndexedImage.quantize(image);
+            assertEquals(colors, indexed.paletteSize());
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(indexed.toImage()), colors + " colors");
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(indexed.toImage(RowBands.parallel(1))), colors + " colors");
+        }
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        int[][] sizes = {{1, 1}, {1, 37}, {37, 1}, {37, 23}, {65, 64}};
+        Image image;
+        IndexedImage sequential, parallel;
+        for (int[] size : sizes) {
+            image = ImageFixtures.random(size[0], size[1], size[0] * 1000 + size[1]);
+            for (int colors : new int[] {1, 16, 256}) {
+                sequential = IndexedImage.quantize(image, colors, RowBands.SEQUENTIAL);
+                parallel = IndexedImage.quantize(image, colors, RowBands.parallel(1));
+                assertArrayEquals(sequential.palette(), parallel.palette());
+                for (int y = 0; y < size[1]; y++) {
+                    for (int x = 0; x < size[0]; x++) {
+                        assertEquals(sequential.getIndex(x, y), parallel.getIndex(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testOffHeapViewMatchesCopy() {
+        Image image = ImageFixtures.random(40, 30, 3);
+        IndexedImage expected = IndexedImage.quantize(ImageFixtures.copy(image, 3, 4, 20, 15), 64, RowBands.SEQUENTIAL);
+        IndexedImage indexed;
+        try (Image offHeap = ImageFixtures.offHeapCopy(image)) {
+            indexed = IndexedImage.quantize(offHeap.view(3, 4, 20, 15), 64, RowBands.parallel(1));
+        }
+        assertArrayEquals(expected.palette(), indexed.palette());
+        assertArrayEquals(ImageFixtures.pixels(expected.toImage()), ImageFixtures.pixels(indexed.toImage()));
+    }
+
+    @Test
+    void testPaletteSizeIsBounded() {
+        Image image = ImageFixtures.random(64, 64, 4);
+        for (int colors : new int[] {1, 2, 5, 64, 256}) {
+            assertEquals(colors, IndexedImage.quantize(image, colors, RowBands.SEQUENTIAL).paletteSize());
+        }
+    }
+
+    @Test
+    void testSetRGBTakesNearestEntry() {
+        IndexedImage indexed = new IndexedImage(2, 2, new int[] {0x000000, 0xffffff, 0xff0000});
+        indexed.setRGB(0, 0, 0xf01010);
+        indexed.setRGB(1, 0, 0xe0e0e0);
+        indexed.setRGB(0, 1, 0x101010);
+        assertEquals(2, indexed.getIndex(0, 0));
+        assertEquals(1, indexed.getIndex(1, 0));
+        assertEquals(0, indexed.getIndex(0, 1));
+        assertEquals(0xff0000, indexed.getRGB(0, 0));
+        assertEquals(0, indexed.getIndex(1, 1));
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+public class testIntegralImage {
+
+    private static final int[][] SIZES = {{1, 1}, {1, 37}, {37, 1}, {2, 3}, {37, 23}, {64, 65}};
+
+    private static final int[] CHANNELS = {IntegralImage.RED, IntegralImage.GREEN, IntegralImage.BLUE};
+
+    @Test
+    void testResampleMatchesDirect() {
+        for (int[] size : SIZES) {
+            Image image = ImageFixtures.random(size[0], size[1], size[0] * 1000 + size[1]);
+            Image expected = ImageUtils.resample(image);
+            assertArrayEquals(ImageFixtures.pixels(expected),
+                              ImageFixtures.pixels(ImageUtils.resample(new IntegralImage(image), RowBands.SEQUENTIAL)));
+            assertArrayEquals(ImageFixtures.pixels(expected),
+                              ImageFixtures.pixels(ImageUtils.resample(new IntegralImage(image, false, RowBands.parallel(1)), RowBands.parallel(1))));
+        }
+    }
+
+    @Test
+    void testAverageColorMatchesDirect() {
+        for (int[] size : SIZES) {
+            Image image = ImageFixtures.random(size[0], size[1], size[0] * 1000 + size[1]);
+            assertEquals(ImageUtils.averageColor(image), ImageUtils.averageColor(new IntegralImage(image)));
+        }
+    }
+
+    @Test
+    void testBoxBlurOfZeroIsIdentity() {
+        for (int[] size : SIZES) {
+            Image image = ImageFixtures.random(size[0], size[1], size[0] * 1000 + size[1]);
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(ImageUtils.boxBlur(image, 0)));
+        }
+    }
+
+    @Test
+    void testParallelTablesMatchSequential() {
+        Image image = ImageFixtures.random(37, 23, 5);
+        IntegralImage sequential = new IntegralImage(image, true, RowBands.SEQUENTIAL);
+        IntegralImage parallel = new IntegralImage(image, true, RowBands.parallel(1));
+        for (int channel : CHANNELS) {
+            for (int y = 0; y < 23; y++) {
+                for (int x = 0; x < 37; x++) {
+                    assertEquals(sequential.sum(channel, 0, 0, x + 1, y + 1), parallel.sum(channel, 0, 0, x + 1, y + 1));
+                    assertEquals(sequential.variance(channel, x, y, 37 - x, 23 - y),
+                                 parallel.variance(channel, x, y, 37 - x, 23 - y), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testStatisticsMatchBruteForce() {
+        Random random = new Random(6);
+        int width, height, x, y, w, h;
+        for (int[] size : SIZES) {
+            width = size[0];
+            height = size[1];
+            Image image = ImageFixtures.random(width, height, width * 1000 + height);
+            IntegralImage integral = new IntegralImage(image, true, RowBands.SEQUENTIAL);
+            for (int i = 0; i < 200; i++) {
+                // Every fourth rectangle touches the last row and column
+                x = random.nextInt(width);
+                y = random.nextInt(height);
+                w = i % 4 == 0 ? width - x : 1 + random.nextInt(width - x);
+                h = i % 4 == 0 ? height - y : 1 + random.nextInt(height - y);
+                assertStatistics(image, integral, x, y, w, h);
+            }
+            assertStatistics(image, integral, 0, 0, width, height);
+            assertStatistics(image, integral, 0, height - 1, width, 1);
+            assertStatistics(image, integral, width - 1, 0, 1, height);
+        }
+    }
+
+    @Test
+    void testVarianceNeedsSquares() {
+        IntegralImage integral = new IntegralImage(ImageFixtures.random(4, 4, 7));
+        assertFalse(integral.hasSquares());
+        assertThrows(IllegalStateException.class, () -> integral.variance(IntegralImage.RED, 0, 0, 4, 4));
+    }
+
+    private static void assertStatistics(Image image, IntegralImage integral, int x, int y, int width, int height) {
+        long count = (long)width * height;
+        long sum, sumOfSquares;
+        int value;
+        double mean, variance;
+        for (int channel : CHANNELS) {
+            sum = 0;
+            sumOfSquares = 0;
+            for (int j = y; j < y + height; j++) {
+                for (int i = x; i < x + width; i++) {
+                    value = (image.getRGB(i, j) >> (16 - 8 * channel)) & 0xff;
+                    sum = sum + value;
+                    sumOfSquares = sumOfSquares + value * value;
+                }
+            }
+            mean = (double)sum / count;
+            variance = 0.0;
+            for (int j = y; j < y + height; j++) {
+                for (int i = x; i < x + width; i++) {
+                    value = (image.getRGB(i, j) >> (16 - 8 * channel)) & 0xff;
+                    variance = variance + (value - mean) * (value - mean);
+                }
+            }
+            variance = variance / count;
+
+            assertEquals(sum, integral.sum(channel, x, y, width, height));
+            assertEquals(mean, integral.mean(channel, x, y, width, height), 1e-9);
+            assertEquals(variance, integral.variance(channel, x, y, width, height), 1e-6);
+            assertEquals(Math.sqrt(variance), integral.standardDeviation(channel, x, y, width, height), 1e-6);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+public class testPaletteTree {
+
+    private static int distance(int a, int b) {
+        int dr = Color.red(a) - Color.red(b);
+        int dg = Color.green(a) - Color.green(b);
+        int db = Color.blue(a) - Color.blue(b);
+        return dr*dr + dg*dg + db*db;
+    }
+
+    private static void assertNearest(int[] palette, PaletteTree tree, int rgb) {
+        int best = 0;
+        for (int i = 1; i < palette.length; i++) {
+            if (distance(palette[i], rgb) < distance(palette[best], rgb)) {
+                best = i;
+            }
+        }
+        // Entries as close as the best one may be returned instead
+        assertEquals(distance(palette[best], rgb), distance(palette[tree.nearest(rgb)], rgb), Integer.toHexString(rgb));
+    }
+
+    @Test
+    void testNearestMatchesLinearScan() {
+        Random random = new Random(1);
+        int[] sizes = {1, 2, 3, 7, 16, 100, 255, 256};
+        int[] palette;
+        PaletteTree tree;
+        for (int size : sizes) {
+            for (int round = 0; round < 10; round++) {
+                palette = new int[size];
+                for (int i = 0; i < size; i++) {
+                    palette[i] = random.nextInt() & 0xffffff;
+                }
+                tree = new PaletteTree(palette);
+                for (int i = 0; i < 500; i++) {
+                    assertNearest(palette, tree, random.nextInt() & 0xffffff);
+                }
+                for (int color : palette) {
+                    assertEquals(0, distance(color, palette[tree.nearest(color)]));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testNearestWithDuplicatesAndGrays() {
+        Random random = new Random(2);
+        int[] palette = new int[64];
+        for (int i = 0; i < palette.length; i++) {
+            // Few distinct values along each channel, so many entries tie on the splitting planes
+            palette[i] = (random.nextInt(4) * 0x55) * 0x010000 + (random.nextInt(4) * 0x55) * 0x0100 + random.nextInt(2) * 0xff;
+        }
+        PaletteTree tree = new PaletteTree(palette);
+        for (int level = 0; level < 256; level++) {
+            assertNearest(palette, tree, level * 0x010101);
+        }
+        for (int i = 0; i < 2000; i++) {
+            assertNearest(palette, tree, random.nextInt() & 0xffffff);
+        }
+    }
+}
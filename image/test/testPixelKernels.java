@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+public class testPixelKernels {
+
+    // The widest vector is 512 bits, which holds 16 pixels
+    private static final int MAX_LANES = 16;
+
+    private static final int MAX_LENGTH = 3 * MAX_LANES + 1;
+
+    private static Map<String, PixelKernels.Kernel> kernels() {
+        Map<String, PixelKernels.Kernel> kernels = new LinkedHashMap<>();
+        kernels.put("switchRedGreen", PixelKernels::switchRedGreen);
+        kernels.put("switchRedBlue", PixelKernels::switchRedBlue);
+        kernels.put("switchGreenBlue", PixelKernels::switchGreenBlue);
+        kernels.put("grayscaleAverage", PixelKernels::grayscaleAverage);
+        kernels.put("grayscaleLightness", PixelKernels::grayscaleLightness);
+        kernels.put("grayscaleLuminosity", PixelKernels::grayscaleLuminosity);
+        return kernels;
+    }
+
+    private static Map<String, IntUnaryOperator> operations() {
+        Map<String, IntUnaryOperator> operations = new LinkedHashMap<>();
+        operations.put("switchRedGreen", PixelOps::switchRedGreen);
+        operations.put("switchRedBlue", PixelOps::switchRedBlue);
+        operations.put("switchGreenBlue", PixelOps::switchGreenBlue);
+        operations.put("grayscaleAverage", PixelOps::grayscaleAverage);
+        operations.put("grayscaleLightness", PixelOps::grayscaleLightness);
+        operations.put("grayscaleLuminosity", PixelOps::grayscaleLuminosity);
+        return operations;
+    }
+
+    private static int[] randomPixels(int length, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[length];
+        for (int i = 0; i < length; i++) {
+            pixels[i] = random.nextInt() & 0xffffff;
+        }
+        return pixels;
+    }
+
+    @Test
+    void testEveryLengthMatchesPixelOps() {
+        Map<String, IntUnaryOperator> operations = operations();
+        for (Map.Entry<String, PixelKernels.Kernel> kernel : kernels().entrySet()) {
+            IntUnaryOperator operation = operations.get(kernel.getKey());
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                int[] src = randomPixels(length, length);
+                int[] dst = new int[length];
+                kernel.getValue().apply(src, dst, 0, length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(operation.applyAsInt(src[i]), dst[i], kernel.getKey() + " length " + length + " pixel " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRangeLeavesOtherPixelsAlone() {
+        Map<String, IntUnaryOperator> operations = operations();
+        for (Map.Entry<String, PixelKernels.Kernel> kernel : kernels().entrySet()) {
+            IntUnaryOperator operation = operations.get(kernel.getKey());
+            for (int from = 0; from <= MAX_LANES + 1; from++) {
+                for (int to = from; to <= MAX_LENGTH; to += 5) {
+                    int[] src = randomPixels(MAX_LENGTH + 3, from * 100 + to);
+                    int[] dst = new int[src.length];
+                    Arrays.fill(dst, -1);
+                    kernel.getValue().apply(src, dst, from, to);
+                    for (int i = 0; i < dst.length; i++) {
+                        int expected = i >= from && i < to ? operation.applyAsInt(src[i]) : -1;
+                        assertEquals(expected, dst[i], kernel.getKey() + " [" + from + ", " + to + ") pixel " + i);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testInPlaceMatchesPixelOps() {
+        Map<String, IntUnaryOperator> operations = operations();
+        for (Map.Entry<String, PixelKernels.Kernel> kernel : kernels().entrySet()) {
+            IntUnaryOperator operation = operations.get(kernel.getKey());
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                int[] src = randomPixels(length, -length);
+                int[] pixels = src.clone();
+                kernel.getValue().apply(pixels, pixels, 0, length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(operation.applyAsInt(src[i]), pixels[i], kernel.getKey() + " length " + length + " pixel " + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class testResultCache {
+
+    // The bytes of pixels of a 10x10 result, and of the file it is spilled to
+    private static final long RESULT_BYTES = 10 * 10 * Integer.BYTES;
+    private static final long FILE_BYTES = RasterFile.HEADER_SIZE + RESULT_BYTES;
+
+    private static long spilledFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(ResultCache.SPILL_SUFFIX)).count();
+        }
+    }
+
+    @Test
+    void testMemoryHits() {
+        Image image = ImageFixtures.random(10, 10, 1);
+        int[] calls = {0};
+        try (ResultCache cache = new ResultCache(1 << 20)) {
+            Image first = cache.apply(image, "flip", source -> { calls[0]++; return ImageUtils.flipHorizontal(source); });
+            Image second = cache.apply(ImageFixtures.copy(image, 0, 0, 10, 10), "flip",
+                                       source -> { calls[0]++; return ImageUtils.flipHorizontal(source); });
+            assertEquals(1, calls[0]);
+            assertEquals(1, cache.misses());
+            assertEquals(1, cache.hits());
+            assertEquals(0, cache.evictions());
+            assertEquals(RESULT_BYTES, cache.memoryBytes());
+            assertEquals(0.5, cache.hitRate(), 1e-12);
+            assertArrayEquals(ImageFixtures.pixels(ImageUtils.flipHorizontal(image)), ImageFixtures.pixels(first));
+            assertArrayEquals(ImageFixtures.pixels(first), ImageFixtures.pixels(second));
+
+            // Another operation or other pixels are other results
+            cache.apply(image, "flip(v)", ImageUtils::flipVirtical);
+            image.setRGB(0, 0, image.getRGB(0, 0) ^ 1);
+            cache.apply(image, "flip", ImageUtils::flipHorizontal);
+            assertEquals(3, cache.misses());
+            assertEquals(1, cache.hits());
+        }
+    }
+
+    @Test
+    void testSpillAndReadBack(@TempDir Path directory) throws IOException {
+        Image a = ImageFixtures.random(10, 10, 2);
+        Image b = ImageFixtures.random(10, 10, 3);
+        Image expected = ImageUtils.rotateHalf(a);
+        try (ResultCache cache = new ResultCache(RESULT_BYTES, directory, 1 << 20)) {
+            cache.apply(a, "rotateHalf", ImageUtils::rotateHalf);
+            cache.apply(b, "rotateHalf", ImageUtils::rotateHalf);
+            assertEquals(1, cache.evictions());
+            assertEquals(RESULT_BYTES, cache.memoryBytes());
+            assertEquals(FILE_BYTES, cache.diskBytes());
+            assertEquals(1, spilledFiles(directory));
+
+            Image result = cache.apply(a, "rotateHalf", source -> { throw new AssertionError("computed again"); });
+            assertArrayEquals(ImageFixtures.pixels(expected), ImageFixtures.pixels(result));
+            assertEquals(1, cache.diskHits());
+            assertEquals(0, cache.hits());
+            assertEquals(2, cache.misses());
+
+            // Reading a back evicted b to disk in turn
+            assertEquals(2, cache.evictions());
+            cache.apply(b, "rotateHalf", source -> { throw new AssertionError("computed again"); });
+            assertEquals(2, cache.diskHits());
+        }
+        assertEquals(0, spilledFiles(directory));
+    }
+
+    @Test
+    void testResultLargerThanMemoryBudgetIsSpilled(@TempDir Path directory) throws IOException {
+        Image image = ImageFixtures.random(10, 10, 4);
+        try (ResultCache cache = new ResultCache(RESULT_BYTES - 1, directory, 1 << 20)) {
+            cache.apply(image, "gray", ImageUtils::grayscaleAverage);
+            assertEquals(1, cache.evictions());
+            assertEquals(0, cache.memoryBytes());
+            assertEquals(FILE_BYTES, cache.diskBytes());
+
+            cache.apply(image, "gray", source -> { throw new AssertionError("computed again"); });
+            assertEquals(1, cache.diskHits());
+            assertEquals(2, cache.evictions());
+        }
+        try (ResultCache cache = new ResultCache(0)) {
+            cache.apply(image, "gray", ImageUtils::grayscaleAverage);
+            cache.apply(image, "gray", ImageUtils::grayscaleAverage);
+            assertEquals(2, cache.misses());
+            assertEquals(2, cache.evictions());
+        }
+    }
+
+    @Test
+    void testDiskBudgetEvictsLeastRecentlyUsed(@TempDir Path directory) throws IOException {
+        Image[] images = new Image[4];
+        int[] calls = {0};
+        for (int i = 0; i < images.length; i++) {
+            images[i] = ImageFixtures.random(10, 10, 10 + i);
+        }
+        // Memory holds one result and the disk two, so the first of four results is dropped
+        try (ResultCache cache = new ResultCache(RESULT_BYTES, directory, 2 * FILE_BYTES)) {
+            for (Image image : images) {
+                cache.apply(image, "sobel", source -> { calls[0]++; return ImageUtils.sobel(source, RowBands.SEQUENTIAL); });
+            }
+            assertEquals(3, cache.evictions());
+            assertEquals(2 * FILE_BYTES, cache.diskBytes());
+            assertEquals(2, spilledFiles(directory));
+
+            cache.apply(images[0], "sobel", source -> { calls[0]++; return ImageUtils.sobel(source, RowBands.SEQUENTIAL); });
+            assertEquals(5, calls[0]);
+            assertEquals(0, cache.diskHits());
+            assertTrue(cache.diskBytes() <= 2 * FILE_BYTES);
+            assertTrue(spilledFiles(directory) <= 2);
+        }
+    }
+
+    @Test
+    void testChangingResultLeavesCacheIntact(@TempDir Path directory) throws IOException {
+        Image image = ImageFixtures.random(10, 10, 5);
+        int[] expected = ImageFixtures.pixels(ImageUtils.rotateLeft(image));
+        try (ResultCache cache = new ResultCache(1 << 20, directory, 1 << 20)) {
+            // The result of the miss, then of a hit, are changed in place
+            Image result = cache.apply(image, "rotateLeft", ImageUtils::rotateLeft);
+            ImageUtilsSE.switchRedGreen(result);
+            result.setRGB(0, 0, 0x123456);
+            result = cache.apply(image, "rotateLeft", ImageUtils::rotateLeft);
+            assertArrayEquals(expected, ImageFixtures.pixels(result));
+            ImageUtilsSE.rotateRight(result);
+            ImageUtilsSE.grayscaleLuminosity(result);
+
+            assertArrayEquals(expected, ImageFixtures.pixels(cache.apply(image, "rotateLeft", ImageUtils::rotateLeft)));
+            assertEquals(2, cache.hits());
+            assertEquals(1, cache.misses());
+        }
+    }
+
+    @Test
+    void testResultSharingSourceIsCopied() {
+        Image image = ImageFixtures.random(10, 10, 6);
+        int[] original = ImageFixtures.pixels(image);
+        try (ResultCache cache = new ResultCache(1 << 20)) {
+            Image result = cache.apply(image, "identity", source -> source);
+            assertSame(image, result);
+            image.setRGB(0, 0, ~image.getRGB(0, 0) & 0xffffff);
+
+            // The stored copy still holds the pixels the source had
+            Image copy = ImageFixtures.random(10, 10, 6);
+            assertArrayEquals(original, ImageFixtures.pixels(cache.apply(copy, "identity", source -> { throw new AssertionError("computed again"); })));
+        }
+    }
+}
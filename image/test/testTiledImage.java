@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+public class testTiledImage {
+
+    @Test
+    void testFromImageRoundTrip(@TempDir Path dir) throws Exception {
+        Image image = ImageFixtures.random(37, 23, 1);
+        try (TiledImage tiled = TiledImage.fromImage(image, dir.resolve("a.tile"), 8, 3)) {
+            assertEquals(5, tiled.tilesAcross());
+            assertEquals(3, tiled.tilesDown());
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(tiled.region(0, 0, 37, 23)));
+        }
+        try (TiledImage tiled = TiledImage.open(dir.resolve("a.tile"), false, 2)) {
+            assertEquals(37, tiled.width());
+            assertEquals(23, tiled.height());
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(tiled.region(0, 0, 37, 23)));
+        }
+    }
+
+    @Test
+    void testCountersAndLeastRecentlyUsedEviction(@TempDir Path dir) throws Exception {
+        try (TiledImage tiled = TiledImage.create(dir.resolve("a.tile"), 32, 8, 8, 2)) {
+            tiled.getRGB(0, 0);
+            tiled.getRGB(8, 0);
+            assertEquals(0, tiled.cacheHits());
+            assertEquals(2, tiled.cacheMisses());
+            assertEquals(0, tiled.cacheEvictions());
+
+            // Touching tile 0 makes tile 1 the least recently used one
+            tiled.getRGB(1, 1);
+            assertEquals(1, tiled.cacheHits());
+            tiled.getRGB(16, 0);
+            assertEquals(3, tiled.cacheMisses());
+            assertEquals(1, tiled.cacheEvictions());
+
+            // Tile 0 must still be cached, tile 1 must not
+            tiled.getRGB(0, 0);
+            assertEquals(2, tiled.cacheHits());
+            assertEquals(3, tiled.cacheMisses());
+            tiled.getRGB(8, 0);
+            assertEquals(4, tiled.cacheMisses());
+            assertEquals(2, tiled.cacheEvictions());
+
+            // Nothing was changed, so nothing was written
+            assertEquals(0, tiled.cacheWriteBacks());
+        }
+    }
+
+    @Test
+    void testDirtyTileWrittenBackOnEviction(@TempDir Path dir) throws Exception {
+        try (TiledImage tiled = TiledImage.create(dir.resolve("a.tile"), 24, 8, 8, 1)) {
+            tiled.setRGB(3, 4, 0x123456);
+            assertEquals(0, tiled.cacheWriteBacks());
+
+            // Loading another tile evicts the changed one, which must be written first
+            tiled.getRGB(8, 0);
+            assertEquals(1, tiled.cacheEvictions());
+            assertEquals(1, tiled.cacheWriteBacks());
+
+            // The clean tile is evicted without being written
+            tiled.getRGB(16, 0);
+            assertEquals(2, tiled.cacheEvictions());
+            assertEquals(1, tiled.cacheWriteBacks());
+
+            assertEquals(0x123456, tiled.getRGB(3, 4));
+            assertEquals(0, tiled.getRGB(4, 3));
+        }
+    }
+
+    @Test
+    void testFlushWritesWithoutEvicting(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("a.tile");
+        try (TiledImage tiled = TiledImage.create(path, 20, 20, 8, 16)) {
+            tiled.setRGB(19, 19, 0xabcdef);
+            tiled.setRGB(0, 0, 0x010203);
+            tiled.flush();
+            assertEquals(2, tiled.cacheWriteBacks());
+            assertEquals(0, tiled.cacheEvictions());
+
+            // A second flush has nothing left to write
+            tiled.flush();
+            assertEquals(2, tiled.cacheWriteBacks());
+
+            try (TiledImage other = TiledImage.open(path, false, 4)) {
+                assertEquals(0xabcdef, other.getRGB(19, 19));
+                assertEquals(0x010203, other.getRGB(0, 0));
+            }
+            tiled.setRGB(10, 10, 0x0f0f0f);
+        }
+        try (TiledImage tiled = TiledImage.open(path, true, 4)) {
+            assertEquals(0xabcdef, tiled.getRGB(19, 19));
+            assertEquals(0x010203, tiled.getRGB(0, 0));
+            assertEquals(0x0f0f0f, tiled.getRGB(10, 10));
+        }
+    }
+
+    @Test
+    void testReopenAfterClose(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("a.tile");
+        Image image = ImageFixtures.random(19, 13, 2);
+        try (TiledImage tiled = TiledImage.create(path, 19, 13, 4, 2)) {
+            for (int y = 0; y < 13; y++) {
+                for (int x = 0; x < 19; x++) {
+                    tiled.setRGB(x, y, image.getRGB(x, y));
+                }
+            }
+        }
+        try (TiledImage tiled = TiledImage.open(path, false, 3)) {
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(tiled.region(0, 0, 19, 13)));
+            assertThrows(UnsupportedOperationException.class, () -> tiled.setRGB(0, 0, 0));
+        }
+    }
+
+    @Test
+    void testForEachTileMatchesWholeImage(@TempDir Path dir) throws Exception {
+        Image image = ImageFixtures.random(21, 17, 3);
+        try (TiledImage tiled = TiledImage.fromImage(image, dir.resolve("a.tile"), 8, 2)) {
+            tiled.forEachTile(tile -> ImageUtils.grayscaleLuminosity(tile));
+            ImageUtils.grayscaleLuminosity(image);
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(tiled.region(0, 0, 21, 17)));
+        }
+    }
+
+    @Test
+    void testForEachTileRejectsSizeChangeWithoutWriting(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("a.tile");
+        Image image = ImageFixtures.random(10, 6, 4);
+        try (TiledImage tiled = TiledImage.fromImage(image, path, 8, 4)) {
+            tiled.flush();
+
+            // Unsaved changes to the rejected tile are lost with it
+            tiled.setRGB(1, 1, 0x445566);
+            assertThrows(IllegalStateException.class, () -> tiled.forEachTile((tileX, tileY, tile) -> {
+                tile.setRGB(0, 0, 0xffffff);
+                ImageUtilsSE.rotateLeft(tile);
+            }));
+            long writeBacks = tiled.cacheWriteBacks();
+            tiled.flush();
+            assertEquals(writeBacks, tiled.cacheWriteBacks());
+
+            // The rejected tile is read again from the file, without any of its changes
+            assertEquals(image.getRGB(0, 0), tiled.getRGB(0, 0));
+            assertEquals(image.getRGB(1, 1), tiled.getRGB(1, 1));
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(tiled.region(0, 0, 10, 6)));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+
+public class testToneCurve {
+
+    private static final int[] CHANNELS = {Histogram.RED, Histogram.GREEN, Histogram.BLUE};
+
+    private static void assertIdentity(ToneCurve curve) {
+        for (int channel : CHANNELS) {
+            for (int v = 0; v < ToneCurve.SIZE; v++) {
+                assertEquals(v, curve.value(channel, v));
+            }
+        }
+    }
+
+    @Test
+    void testNeutralCurvesAreIdentity() {
+        assertIdentity(ToneCurve.identity());
+        assertIdentity(ToneCurve.gamma(1));
+        assertIdentity(ToneCurve.contrast(1));
+        assertIdentity(ToneCurve.levels(0, 255));
+
+        Image image = ImageFixtures.random(37, 23, 1);
+        assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(ImageUtils.gamma(image, 1)));
+        assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(ImageUtils.contrast(image, 1)));
+    }
+
+    @Test
+    void testThenAppliesBothCurves() {
+        ToneCurve[] curves = {
+            ToneCurve.gamma(2.2), ToneCurve.gamma(0.45), ToneCurve.contrast(1.7), ToneCurve.contrast(0.3),
+            ToneCurve.levels(20, 200), ToneCurve.autoLevels(new Histogram(ImageFixtures.random(20, 20, 2)))
+        };
+        Image image = ImageFixtures.random(37, 23, 3);
+        ToneCurve composed;
+        for (ToneCurve first : curves) {
+            for (ToneCurve second : curves) {
+                composed = first.then(second);
+                for (int channel : CHANNELS) {
+                    for (int v = 0; v < ToneCurve.SIZE; v++) {
+                        assertEquals(second.value(channel, first.value(channel, v)), composed.value(channel, v));
+                    }
+                }
+                assertArrayEquals(ImageFixtures.pixels(ImageUtils.applyCurve(ImageUtils.applyCurve(image, first), second)),
+                                  ImageFixtures.pixels(ImageUtils.applyCurve(image, composed)));
+            }
+        }
+    }
+
+    @Test
+    void testArrayApplyMatchesPixelApply() {
+        ToneCurve curve = ToneCurve.gamma(1.8).then(ToneCurve.contrast(1.3));
+        int[] src = ImageFixtures.pixels(ImageFixtures.random(50, 1, 4));
+        int[] dst = new int[src.length];
+        curve.apply(src, dst, 3, 47);
+        for (int i = 0; i < src.length; i++) {
+            assertEquals(i >= 3 && i < 47 ? curve.apply(src[i]) : 0, dst[i]);
+        }
+    }
+
+    @Test
+    void testSingleValuedImageIsUnchanged() {
+        int[] colors = {0x000000, 0xffffff, 0x808080, 0x336699};
+        Image image;
+        for (int rgb : colors) {
+            image = new Image(13, 7, Color.of(rgb));
+            assertIdentity(ToneCurve.equalize(new Histogram(image)));
+            assertIdentity(ToneCurve.autoLevels(new Histogram(image)));
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(ImageUtils.equalize(image)));
+            assertArrayEquals(ImageFixtures.pixels(image), ImageFixtures.pixels(ImageUtils.autoLevels(image, RowBands.parallel(1))));
+        }
+    }
+
+    @Test
+    void testAutoLevelsStretchesEachChannel() {
+        Image image = new Image(2, 1);
+        image.setRGB(0, 0, 0x102030);
+        image.setRGB(1, 0, 0x80a0c0);
+        Image result = ImageUtils.autoLevels(image);
+        assertEquals(0x000000, result.getRGB(0, 0));
+        assertEquals(0xffffff, result.getRGB(1, 0));
+    }
+
+    @Test
+    void testEqualizeIsMonotonic() {
+        ToneCurve curve = ToneCurve.equalize(new Histogram(ImageFixtures.random(37, 23, 5)));
+        for (int v = 1; v < ToneCurve.SIZE; v++) {
+            assertTrue(curve.value(Histogram.RED, v - 1) <= curve.value(Histogram.RED, v));
+        }
+        assertEquals(255, curve.value(Histogram.RED, 255));
+    }
+}